@@ -1,3 +1,5 @@
+import java.util.ArrayList;
+import java.util.List;
 import java.util.TreeSet;
 
 /**
@@ -6,6 +8,9 @@ import java.util.TreeSet;
 public class PrimeFinder {
 
 	private static WorkQueue tasks;
+
+	/** Most numbers checked by a single task. */
+	private static final int BATCH = 100;
 	
 	/**
 	 * A terrible and naive approach to determining if a number is prime.
@@ -93,36 +98,50 @@ public class PrimeFinder {
 		}
 
 		TreeSet<Integer> primes = new TreeSet<Integer>();
-		PrimeFinder.tasks = new WorkQueue(threads);
-		for (int i = start; i <= end; i++) {
-			tasks.execute(new PrimeFinder.Task(primes, i));
+		// a few tasks per worker are queued at a time, so memory does not grow with the range
+		PrimeFinder.tasks = new WorkQueue(threads, threads * 2);
+		List<Runnable> batch = new ArrayList<>(threads);
+		for (long i = start; i <= end; i += BATCH) {
+			batch.add(new PrimeFinder.Task(primes, (int) i, (int) Math.min(i + BATCH - 1, end)));
+			if (batch.size() == threads) {
+				tasks.executeAll(batch);
+				batch = new ArrayList<>(threads);
+			}
 		}
+		tasks.executeAll(batch);
 		tasks.finish();
 
 		return primes;
 	}
 	
 	private static class Task implements Runnable {
-		private final int num;
+		private final int first;
+		private final int last;
 		private final TreeSet<Integer> primes;
 
 		/**
 		 * 
 		 * @param primes accumulator of primes
-		 * @param number check for prime
+		 * @param first first number to check for prime
+		 * @param last last number to check for prime
 		 */
-		public Task (TreeSet<Integer> primes, int number) {
+		public Task (TreeSet<Integer> primes, int first, int last) {
 			this.primes = primes;
-			this.num = number;
+			this.first = first;
+			this.last = last;
 		}
 
 		@Override
 		public void run() {
-			if (!PrimeFinder.isPrime(num)) {
-				return;
+			// found without holding the lock, then added all at once
+			List<Integer> found = new ArrayList<>();
+			for (long num = first; num <= last; num++) {
+				if (PrimeFinder.isPrime((int) num)) {
+					found.add((int) num);
+				}
 			}
 			synchronized (primes) {
-				primes.add(num);
+				primes.addAll(found);
 			}
 		}
 	}
@@ -1,3 +1,4 @@
+import java.util.Collection;
 import java.util.LinkedList;
 
 /**
@@ -20,9 +21,15 @@ public class WorkQueue {
 	/** Used to signal the queue should be shutdown. */
 	private volatile boolean shutdown;
 
+	/** Most work requests waiting in the queue, or {@link #UNBOUNDED}. */
+	private final int capacity;
+
 	/** The default number of threads to use when not specified. */
 	public static final int DEFAULT = 5;
 
+	/** Capacity of a queue that can hold any amount of work. */
+	public static final int UNBOUNDED = 0;
+
 	/**
 	 * Starts a work queue with the default number of threads.
 	 *
@@ -38,6 +45,18 @@ public class WorkQueue {
 	 * @param threads number of worker threads; should be greater than 1
 	 */
 	public WorkQueue(int threads) {
+		this(threads, UNBOUNDED);
+	}
+
+	/**
+	 * Starts a work queue with the specified number of threads that holds at most the given number
+	 * of work requests. Adding work to a full queue waits until a worker takes some off it.
+	 *
+	 * @param threads number of worker threads; should be greater than 1
+	 * @param capacity most work requests waiting in the queue, or {@link #UNBOUNDED}
+	 */
+	public WorkQueue(int threads, int capacity) {
+		this.capacity = Math.max(capacity, UNBOUNDED);
 		this.queue = new LinkedList<Runnable>();
 		this.workers = new PoolWorker[threads];
 		this.pending = 0;
@@ -52,17 +71,65 @@ public class WorkQueue {
 	}
 	
 	/**
-	 * Adds a work request to the queue. A thread will process this request when available.
+	 * Adds a work request to the queue. A thread will process this request when available. If the
+	 * queue is full, waits until there is room first.
 	 *
 	 * @param r work request (in the form of a {@link Runnable} object)
 	 */
 	public void execute(Runnable r) {
 		synchronized (queue) {
+			waitForRoom();
 			queue.addLast(r);
 			this.pending++;
 			queue.notifyAll();
 		}
-		//incrementPending();
+	}
+
+	/**
+	 * Adds many work requests to the queue at once, locking the queue once and waking the workers
+	 * up once for as many as fit. If the queue fills up, waits for room for the rest.
+	 *
+	 * @param requests work requests (in the form of {@link Runnable} objects)
+	 */
+	public void executeAll(Collection<? extends Runnable> requests) {
+		synchronized (queue) {
+			for (Runnable r : requests) {
+				if (!hasRoom()) {
+					// let the workers start on what was added while waiting for room
+					queue.notifyAll();
+					waitForRoom();
+				}
+				queue.addLast(r);
+				this.pending++;
+			}
+			queue.notifyAll();
+		}
+	}
+
+	/**
+	 * Determines whether there is room for more work. Must be called while synchronized on the
+	 * queue.
+	 *
+	 * @return true if the queue is unbounded or not full
+	 */
+	private boolean hasRoom() {
+		return capacity == UNBOUNDED || queue.size() < capacity;
+	}
+
+	/**
+	 * Waits until there is room in the queue or it is shutdown. Must be called while synchronized on
+	 * the queue.
+	 */
+	private void waitForRoom() {
+		while (!hasRoom() && !shutdown) {
+			try {
+				queue.wait();
+			} catch (InterruptedException ex) {
+				System.err.println("Warning: Work queue interrupted while waiting for room.");
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
 	}
 
 	/**
@@ -144,6 +211,10 @@ public class WorkQueue {
 					if (shutdown) {
 						break;
 					} else {
+						// only a full queue has producers waiting for room
+						if (!hasRoom()) {
+							queue.notifyAll();
+						}
 						r = queue.removeFirst();
 					}
 				}
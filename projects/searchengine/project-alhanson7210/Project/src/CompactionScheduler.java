@@ -0,0 +1,98 @@
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Compacts a thread safe word index on a work queue once enough of its
+ * documents were removed, so the thread that removed the last one does not wait
+ * for the compaction. At most one compaction is scheduled at a time, and the
+ * index compacts a few stems per lock so searches are never held up for long.
+ * Until a work queue is given, the compaction is done by the thread asking for
+ * it, the same as a single threaded index.
+ *
+ * @see WordIndex#compact()
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class CompactionScheduler {
+
+	/** root logger */
+	private static final Logger log = LogManager.getRootLogger();
+
+	/** whether a compaction is scheduled or running */
+	private final AtomicBoolean scheduled;
+
+	/** work queue to compact on, or {@code null} to compact in the calling thread */
+	private volatile WorkQueue tasks;
+
+	/**
+	 * Constructor for a scheduler with nothing scheduled
+	 */
+	public CompactionScheduler() {
+		this.scheduled = new AtomicBoolean(false);
+		this.tasks = null;
+	}
+
+	/**
+	 * Sets the work queue compactions are submitted to
+	 *
+	 * @param tasks work queue to compact on, or {@code null} to compact in the calling thread
+	 */
+	public void setQueue(WorkQueue tasks) {
+		this.tasks = tasks;
+	}
+
+	/**
+	 * Schedules a compaction of the index if it needs one and no compaction is
+	 * scheduled yet
+	 *
+	 * @param index the word index to compact
+	 * @return {@code true} if a compaction was scheduled
+	 */
+	public boolean request(WordIndex index) {
+		if (!index.needsCompaction() || !scheduled.compareAndSet(false, true)) {
+			return false;
+		}
+		WorkQueue queue = tasks;
+		if (queue == null) {
+			compact(index);
+			return true;
+		}
+		try {
+			queue.execute(() -> compact(index));
+		} catch (RejectedExecutionException e) {
+			//the next removal asks again
+			scheduled.set(false);
+			log.debug("The work queue rejected a compaction");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Compacts the index, then schedules another compaction if documents removed
+	 * while it ran need one, since their requests found this one still scheduled
+	 *
+	 * @param index the word index to compact
+	 */
+	private void compact(WordIndex index) {
+		boolean compacted = false;
+		try {
+			long start = System.nanoTime();
+			int purged = index.compact();
+			log.info("Compacted " + purged + " removed documents in " + (System.nanoTime() - start) / 1000000 + " ms");
+			compacted = true;
+		} catch (RuntimeException e) {
+			log.warn("Compaction failed: " + e);
+		} finally {
+			scheduled.set(false);
+		}
+		//a failed compaction is left for the next removal, rather than retried right away
+		if (compacted) {
+			request(index);
+		}
+	}
+}
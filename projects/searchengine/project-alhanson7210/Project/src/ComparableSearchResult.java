@@ -1,10 +1,8 @@
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.PriorityQueue;
 
 /**
  * Create a class that stores a single search result, 
@@ -23,10 +21,10 @@ public class ComparableSearchResult implements Comparable<ComparableSearchResult
 	private final String where;
 	
 	/** total matches */
-	private Integer count;
+	private int count;
 	
 	/** total matches divided by the total words in file(where) */
-	private Double score;
+	private double score;
 	
 	/**
 	 * Constructor for search result
@@ -35,41 +33,12 @@ public class ComparableSearchResult implements Comparable<ComparableSearchResult
 	 * @param count total matches
 	 * @param score total matches divided by the total words in file(where)
 	 */
-	public ComparableSearchResult(String where, Integer count, Double score) {
+	public ComparableSearchResult(String where, int count, double score) {
 		this.where = where;
 		this.count = count;
 		this.score = score;
 	}
 	
-	/**
-	 * Adds a search result to a map of matches
-	 * @param index the word index
-	 * @param queryWord query from list of unique query searches
-	 * @param matches map of matches found in file(s)
-	 * 
-	 */
-	public static void addSearchResults(WordIndex index, String queryWord, HashMap<String, ComparableSearchResult> matches) {
-		//entry set of all indexes in inverted index
-		Map<String, Map<String, Collection<Integer>>> map = index.getUnmodifiableMap();
-		Map<String, Integer> fileCounts = index.getUnmodifiableFileCount();
-		Set<String> filePathKeys = map.get(queryWord).keySet();
-		//loop through the indexes
-		for (String filePathKey : filePathKeys) {
-			//default starting value
-			ComparableSearchResult result = new ComparableSearchResult(filePathKey, 0, 0.0);
-			//create new comparable search result if needed
-			matches.putIfAbsent(filePathKey, result);
-			//add count of file positions for the given
-			result = matches.get(filePathKey);
-			//number of positions in file for a given stem
-			int positions = map.get(queryWord).get(filePathKey).size();
-			//number of words in file
-			int count = fileCounts.getOrDefault(filePathKey, 1);
-			//add positions to result and set new adjusted score
-			result.addCount(positions, count);
-		}
-	}
-	
 	/**
 	 * Helper: Sort collection view of values from a map of comparable search results
 	 * 
@@ -86,12 +55,74 @@ public class ComparableSearchResult implements Comparable<ComparableSearchResult
 		return results;
 	}
 	
+	/**
+	 * Keeps only the best results as a search scores them, using a heap bounded
+	 * to the limit, so a result that cannot make the cut is dropped right away
+	 * and only the results kept are ever sorted
+	 */
+	public static class TopResults {
+		
+		/** number of results to keep, or {@link WordIndex#ALL_RESULTS} to keep every result */
+		private final int limit;
+		
+		/** best results so far, reversed so the head of the heap is the worst result kept */
+		private final PriorityQueue<ComparableSearchResult> heap;
+		
+		/** every result, used instead of the heap when nothing is left out */
+		private final List<ComparableSearchResult> all;
+		
+		/**
+		 * Constructor
+		 * 
+		 * @param limit number of results to keep, or {@link WordIndex#ALL_RESULTS} to keep every result
+		 */
+		public TopResults(int limit) {
+			this.limit = limit;
+			if (limit <= WordIndex.ALL_RESULTS) {
+				this.heap = null;
+				this.all = new ArrayList<>();
+			}
+			else {
+				this.heap = new PriorityQueue<>(Math.min(limit, 1024) + 1, Collections.reverseOrder());
+				this.all = null;
+			}
+		}
+		
+		/**
+		 * Offers a scored result, kept only if it is one of the best so far
+		 * 
+		 * @param result result whose count and score are final
+		 */
+		public void offer(ComparableSearchResult result) {
+			if (heap == null) {
+				all.add(result);
+			}
+			else if (heap.size() < limit) {
+				heap.add(result);
+			}
+			//only replace the worst result kept if this one beats it
+			else if (result.compareTo(heap.peek()) < 0) {
+				heap.poll();
+				heap.add(result);
+			}
+		}
+		
+		/**
+		 * Gets the results kept
+		 * 
+		 * @return the best results, sorted
+		 */
+		public List<ComparableSearchResult> sorted() {
+			return resultSorter(heap == null ? all : heap);
+		}
+	}
+	
 	@Override
 	public int compareTo(ComparableSearchResult o) {
 		//compare results
 		int value;
-		int score = Double.compare(this.score, o.getScore());
-		int count = Integer.compare(this.count, o.getCount());
+		int score = Double.compare(this.score, o.score);
+		int count = Integer.compare(this.count, o.count);
         if (score != 0) {
             //making this less zero achieves the effect making list being sorted in Descending order
             value = compareScore(o);
@@ -114,7 +145,7 @@ public class ComparableSearchResult implements Comparable<ComparableSearchResult
 	 * @return {@code 1} if this score should be prioritized, otherwise -1
 	 */
 	private int compareScore(ComparableSearchResult o) {
-		return Double.compare(this.getScore(), o.getScore()) < 0? 1 : -1;
+		return Double.compare(this.score, o.score) < 0? 1 : -1;
 	}
 	
 	/**
@@ -123,7 +154,7 @@ public class ComparableSearchResult implements Comparable<ComparableSearchResult
 	 * @return {@code 1} if this count should be prioritized, otherwise -1
 	 */
 	private int compareCount(ComparableSearchResult o) {
-		return Integer.compare(this.getCount(), o.getCount()) < 0? 1 : -1;
+		return Integer.compare(this.count, o.count) < 0? 1 : -1;
 	}
 	
 	/**
@@ -184,7 +215,17 @@ public class ComparableSearchResult implements Comparable<ComparableSearchResult
 	 * @param totalWords file count
 	 */
 	public void addCount(Integer positions, Integer totalWords) {
+		addCount(positions.intValue(), totalWords.intValue());
+	}
+	
+	/**
+	 * Adds another value to count without boxing
+	 * 
+	 * @param positions amount of positions in file
+	 * @param totalWords file count
+	 */
+	public void addCount(int positions, int totalWords) {
 		this.count += positions;
-		setScore(Double.valueOf(this.count)/Double.valueOf(totalWords));
+		this.score = (double) this.count / totalWords;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,411 @@
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Keeps a thread safe word index current with the text files under a path. Every
+ * directory under the path is watched with a {@link WatchService}, and the files
+ * events are reported for are collected until things have been quiet for a
+ * moment, so a burst of writes to the same files is only indexed once. The changed
+ * files are then split into batches of re-index tasks on the work queue, which
+ * replace the documents of changed files and remove the documents of deleted ones.
+ * The index is never rebuilt, and searches keep going while the tasks run.
+ *
+ * If the watch service drops events, every text file is compared against when it
+ * was last indexed instead, and only the ones that differ are indexed again.
+ *
+ * @see WordIndex#replace(String, WordIndex)
+ * @see WordIndex#remove(String)
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class DirectoryWatcher {
+
+	/** root logger */
+	private static final Logger log = LogManager.getRootLogger();
+
+	/** how long things have to be quiet before the changed files are indexed, in milliseconds */
+	public static final long DEBOUNCE = 500;
+
+	/** longest a changed file waits while events keep coming, in milliseconds */
+	public static final long MAX_DELAY = 10 * DEBOUNCE;
+
+	/** most files re-indexed by a single task */
+	public static final int BATCH = 16;
+
+	/** file or directory the index was built from */
+	private final Path pathEntry;
+
+	/** whether the index was built from a single file rather than a directory */
+	private final boolean single;
+
+	/** thread safe word index to keep current */
+	private final WordIndex index;
+
+	/** work queue to run the re-index tasks on */
+	private final WorkQueue tasks;
+
+	/** the watch service, closed to stop watching */
+	private final WatchService watcher;
+
+	/** directory of each watch key */
+	private final Map<WatchKey, Path> directories;
+
+	/** every text file in the index, with when it was last modified as it was indexed */
+	private final TreeMap<Path, FileTime> files;
+
+	/** paths reported since the last batch, in sorted order */
+	private final TreeSet<Path> changed;
+
+	/** the re-index tasks of the last batch */
+	private TaskGroup batch;
+
+	/** thread waiting for events */
+	private Thread thread;
+
+	/**
+	 * Starts watching every directory under the path. The index is assumed to be
+	 * built from the files as they are now.
+	 *
+	 * @param pathEntry file or directory the index was built from
+	 * @param index thread safe word index to keep current
+	 * @param tasks work queue to run the re-index tasks on
+	 *
+	 * @throws IOException if the path cannot be watched
+	 */
+	public DirectoryWatcher(Path pathEntry, WordIndex index, WorkQueue tasks) throws IOException {
+		this.pathEntry = pathEntry;
+		this.single = !Files.isDirectory(pathEntry);
+		this.index = index;
+		this.tasks = tasks;
+		this.watcher = pathEntry.getFileSystem().newWatchService();
+		this.directories = new HashMap<>();
+		this.files = new TreeMap<>();
+		this.changed = new TreeSet<>();
+		this.batch = null;
+		this.thread = null;
+		if (single) {
+			//a single file is watched through its directory, and nothing under it
+			Path directory = pathEntry.toAbsolutePath().getParent();
+			directories.put(directory.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), directory);
+		}
+		else {
+			register(pathEntry);
+		}
+		for (Path path : TextFileFinder.list(pathEntry)) {
+			files.put(path, Files.getLastModifiedTime(path));
+		}
+		//removed documents are compacted on the same queue as the re-index tasks
+		index.setCompactionQueue(tasks);
+	}
+
+	/**
+	 * Starts waiting for events on a thread of its own
+	 */
+	public synchronized void start() {
+		if (thread == null) {
+			thread = new Thread(this::watch, "watcher");
+			//never keeps the program running on its own
+			thread.setDaemon(true);
+			thread.start();
+			log.info("Watching " + directories.size() + " directories under " + pathEntry);
+		}
+	}
+
+	/**
+	 * Stops watching and waits for the re-index tasks already started to finish.
+	 * Changes that were still waiting out the debounce are dropped.
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void shutdown() throws InterruptedException {
+		try {
+			watcher.close();
+		} catch (IOException e) {
+			log.warn("Could not close the watch service: " + e.getMessage());
+		}
+		Thread running;
+		synchronized (this) {
+			running = thread;
+		}
+		if (running != null) {
+			running.join();
+		}
+		if (batch != null) {
+			batch.finish();
+		}
+	}
+
+	/**
+	 * Waits for events until the watch service is closed, indexing the changed
+	 * files once things are quiet for {@link #DEBOUNCE} or a file has waited
+	 * {@link #MAX_DELAY}
+	 */
+	private void watch() {
+		long first = 0;
+		long last = 0;
+		try {
+			while (true) {
+				WatchKey key;
+				if (changed.isEmpty()) {
+					key = watcher.take();
+				}
+				else {
+					long now = System.currentTimeMillis();
+					long wait = Math.min(last + DEBOUNCE, first + MAX_DELAY) - now;
+					key = wait > 0 ? watcher.poll(wait, TimeUnit.MILLISECONDS) : null;
+					if (key == null) {
+						reindex();
+						//files the work queue rejected wait out another debounce
+						first = System.currentTimeMillis();
+						last = first;
+						continue;
+					}
+				}
+				if (changed.isEmpty()) {
+					first = System.currentTimeMillis();
+				}
+				collect(key);
+				last = System.currentTimeMillis();
+			}
+		} catch (ClosedWatchServiceException e) {
+			log.info("Stopped watching " + pathEntry);
+		} catch (InterruptedException e) {
+			log.warn("Watching " + pathEntry + " was interrupted");
+		}
+	}
+
+	/**
+	 * Adds the paths of the events of a watch key to the changed paths
+	 *
+	 * @param key the watch key that was signalled
+	 */
+	private void collect(WatchKey key) {
+		Path directory = directories.get(key);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				log.warn("Events under " + pathEntry + " were dropped, comparing every file instead");
+				rescan();
+				continue;
+			}
+			Path path = directory.resolve((Path) event.context());
+			if (single) {
+				if (path.equals(pathEntry.toAbsolutePath())) {
+					changed.add(pathEntry);
+				}
+			}
+			else if (Files.isDirectory(path)) {
+				//a directory is modified whenever its files are, which they report themselves
+				if (event.kind() == ENTRY_CREATE) {
+					register(path);
+					changed.add(path);
+				}
+			}
+			else {
+				changed.add(path);
+			}
+		}
+		//the directory is gone, its files were reported as deleted
+		if (!key.reset()) {
+			directories.remove(key);
+		}
+	}
+
+	/**
+	 * Watches a directory and every directory under it
+	 *
+	 * @param directory the directory to watch
+	 */
+	private void register(Path directory) {
+		List<Path> found;
+		try (Stream<Path> paths = Files.walk(directory, FileVisitOption.FOLLOW_LINKS)) {
+			found = paths.filter(Files::isDirectory).collect(Collectors.toList());
+		} catch (IOException | RuntimeException e) {
+			log.warn("Could not list the directories under " + directory + ": " + e.getMessage());
+			return;
+		}
+		for (Path path : found) {
+			try {
+				directories.put(path.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), path);
+			} catch (IOException e) {
+				log.warn("Could not watch " + path + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Marks every text file that is new, modified or gone since it was indexed as
+	 * changed, for when the watch service could not keep up
+	 */
+	private void rescan() {
+		if (!single) {
+			register(pathEntry);
+		}
+		Set<Path> current = new TreeSet<>();
+		try {
+			for (Path path : TextFileFinder.list(pathEntry)) {
+				current.add(path);
+				if (!Files.getLastModifiedTime(path).equals(files.get(path))) {
+					changed.add(path);
+				}
+			}
+		} catch (IOException e) {
+			log.warn("Could not list the files under " + pathEntry + ": " + e.getMessage());
+			return;
+		}
+		for (Path path : files.keySet()) {
+			if (!current.contains(path)) {
+				changed.add(path);
+			}
+		}
+	}
+
+	/**
+	 * Splits the changed files into batches of re-index tasks. The previous batch
+	 * is finished first, so a file is never indexed by two tasks at once.
+	 *
+	 * @throws InterruptedException if interrupted while waiting for the previous batch
+	 */
+	private void reindex() throws InterruptedException {
+		//files under a directory that was added or removed, and the files themselves
+		TreeSet<Path> paths = new TreeSet<>();
+		for (Path path : changed) {
+			if (Files.isDirectory(path)) {
+				try {
+					paths.addAll(TextFileFinder.list(path));
+				} catch (IOException e) {
+					log.warn("Could not list the files under " + path + ": " + e.getMessage());
+				}
+			}
+			else {
+				paths.add(path);
+				//everything indexed under a directory that is gone
+				paths.addAll(files.tailMap(path, false).keySet().stream()
+						.takeWhile(file -> file.startsWith(path)).collect(Collectors.toList()));
+			}
+		}
+		changed.clear();
+		//files are only marked as indexed once the task indexing them is accepted
+		Map<Path, FileTime> updated = new TreeMap<>();
+		List<Path> removed = new ArrayList<>();
+		for (Path path : paths) {
+			try {
+				if (TextFileFinder.isText.test(path) && Files.isReadable(path)) {
+					updated.put(path, Files.getLastModifiedTime(path));
+				}
+				else if (files.containsKey(path)) {
+					removed.add(path);
+				}
+			} catch (IOException e) {
+				//gone again already, the delete event is on its way
+				log.debug("Could not read " + path + ": " + e.getMessage());
+			}
+		}
+		if (updated.isEmpty() && removed.isEmpty()) {
+			return;
+		}
+		log.info("Re-indexing " + updated.size() + " changed and " + removed.size() + " removed files under " + pathEntry);
+		if (batch != null) {
+			batch.finish();
+		}
+		List<ReindexTask> reindexTasks = new ArrayList<>();
+		List<Path> changedFiles = new ArrayList<>(updated.keySet());
+		for (int i = 0; i < changedFiles.size(); i += BATCH) {
+			reindexTasks.add(new ReindexTask(changedFiles.subList(i, Math.min(i + BATCH, changedFiles.size())), false));
+		}
+		for (int i = 0; i < removed.size(); i += BATCH) {
+			reindexTasks.add(new ReindexTask(removed.subList(i, Math.min(i + BATCH, removed.size())), true));
+		}
+		batch = tasks.newGroup();
+		int rejected = 0;
+		for (ReindexTask task : reindexTasks) {
+			try {
+				batch.execute(task);
+			} catch (RejectedExecutionException e) {
+				//tried again with the next batch, the files still look unindexed
+				changed.addAll(task.paths);
+				rejected += task.paths.size();
+				continue;
+			}
+			for (Path path : task.paths) {
+				if (task.remove) {
+					files.remove(path);
+				}
+				else {
+					files.put(path, updated.get(path));
+				}
+			}
+		}
+		if (rejected > 0) {
+			log.warn("The work queue rejected re-indexing " + rejected + " files under " + pathEntry + ", trying again later");
+		}
+	}
+
+	/**
+	 * Runnable for replacing or removing the documents of a batch of files
+	 */
+	private class ReindexTask implements Runnable {
+		/** files to re-index */
+		private final List<Path> paths;
+
+		/** whether the files were removed rather than changed */
+		private final boolean remove;
+
+		/**
+		 * Constructor
+		 *
+		 * @param paths files to re-index
+		 * @param remove whether the files were removed rather than changed
+		 */
+		private ReindexTask(List<Path> paths, boolean remove) {
+			this.paths = paths;
+			this.remove = remove;
+		}
+
+		@Override
+		public void run() {
+			for (Path path : paths) {
+				String location = TextFileFinder.pathRelativizer.apply(pathEntry, path);
+				if (remove) {
+					index.remove(location);
+					continue;
+				}
+				try {
+					//stemmed into an index of its own so searches never see half a file
+					WordIndex local = new WordIndex();
+					IndexBuilder.parseFile(local, path, location);
+					MergeSummary summary = index.replace(location, local);
+					log.debug(summary);
+				} catch (IOException e) {
+					log.warn("Could not re-index " + path + ": " + e.getMessage());
+				}
+			}
+		}
+	}
+}
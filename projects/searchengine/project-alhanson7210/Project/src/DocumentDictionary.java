@@ -0,0 +1,116 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Assigns every location (file path or url) a dense integer id the first time it
+ * is seen, so the inverted index can key postings and word counts by int instead
+ * of repeating the location string for every stem. The location string is only
+ * needed again when results are rendered.
+ *
+ * A location can be released so it gets a new id the next time it is seen, which
+ * is how a document that was removed or replaced keeps its old id out of the way.
+ * The old id still maps back to the location.
+ *
+ * Warning: This class is not thread-safe. If multiple threads access this class
+ * concurrently, access must be synchronized externally.
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class DocumentDictionary {
+
+	/** starting capacity for the location array */
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/** returned when a location has not been assigned an id */
+	public static final int MISSING = -1;
+
+	/** location to assigned id */
+	private final HashMap<String, Integer> ids;
+
+	/** assigned id to location */
+	private String[] locations;
+
+	/** number of ids handed out */
+	private int size;
+
+	/**
+	 * Creates an empty document dictionary
+	 */
+	public DocumentDictionary() {
+		ids = new HashMap<>();
+		locations = new String[DEFAULT_CAPACITY];
+		size = 0;
+	}
+
+	/**
+	 * Gets the id for a location, assigning the next id if the location is new
+	 *
+	 * @param location file path or url
+	 * @return the id of the location
+	 * @throws NullPointerException location was null
+	 */
+	public int getId(String location) throws NullPointerException {
+		Integer id = ids.get(location);
+		if (id != null) {
+			return id;
+		}
+		if (location == null) {
+			throw new NullPointerException("location was null");
+		}
+		//assign the next id
+		if (size == locations.length) {
+			locations = Arrays.copyOf(locations, size * 2);
+		}
+		locations[size] = location;
+		ids.put(location, size);
+		return size++;
+	}
+
+	/**
+	 * Finds the id of a location without assigning one
+	 *
+	 * @param location file path or url
+	 * @return the id of the location or {@link #MISSING} if it has none
+	 */
+	public int findId(String location) {
+		Integer id = location != null ? ids.get(location) : null;
+		return id != null ? id : MISSING;
+	}
+
+	/**
+	 * Stops handing out the id of a location, so the next call to
+	 * {@link #getId(String)} assigns it a new one. The old id still maps back to
+	 * the location.
+	 *
+	 * @param location file path or url
+	 * @return the id the location had or {@link #MISSING} if it had none
+	 */
+	public int release(String location) {
+		Integer id = location != null ? ids.remove(location) : null;
+		return id != null ? id : MISSING;
+	}
+
+	/**
+	 * Gets the location for an id
+	 *
+	 * @param id id handed out by this dictionary
+	 * @return the location for the id
+	 * @throws IndexOutOfBoundsException the id was never handed out
+	 */
+	public String getLocation(int id) throws IndexOutOfBoundsException {
+		if (id < 0 || id >= size) {
+			throw new IndexOutOfBoundsException("No location for id " + id);
+		}
+		return locations[id];
+	}
+
+	/**
+	 * Returns the number of locations with an id
+	 *
+	 * @return number of locations
+	 */
+	public int size() {
+		return size;
+	}
+}
@@ -5,6 +5,8 @@ import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -51,6 +53,24 @@ public class Driver {
 	private static final String queryFlag = "-query";
 	/** exact flag */
 	private static final String exactFlag = "-exact";
+	/** top flag */
+	private static final String topFlag = "-top";
+	/** shards flag */
+	private static final String shardsFlag = "-shards";
+	/** reduce flag */
+	private static final String reduceFlag = "-reduce";
+	/** steal flag */
+	private static final String stealFlag = "-steal";
+	/** fetchers flag */
+	private static final String fetchersFlag = "-fetchers";
+	/** capacity flag */
+	private static final String capacityFlag = "-capacity";
+	/** overflow flag */
+	private static final String overflowFlag = "-overflow";
+	/** incremental flag */
+	private static final String incrementalFlag = "-incremental";
+	/** watch flag */
+	private static final String watchFlag = "-watch";
 	/** index file */
 	private static final String defaultIndexJsonFile = "index.json";
 	/** counts file */
@@ -61,6 +81,8 @@ public class Driver {
 	private static int PORT;
 	/**thread count */
 	private static boolean validThreadCount;
+	/**number of results to keep for each query */
+	private static int top;
 	/**default output */
 	private static String outputFile;
 	/**if able, create json output file */
@@ -79,8 +101,16 @@ public class Driver {
 	private static WordIndex wordIndex;
 	/**pool thread work queue */
 	private static WorkQueue tasks;
+	/**work queue for fetching web pages, the same as tasks unless given its own size */
+	private static WorkQueue fetchers;
 	/** web crawler */
 	private static WebCrawler crawler;
+	/** manifest of the files in an incrementally built index, saved after the index */
+	private static FileManifest manifest;
+	/** keeps the index current with the path while the server runs */
+	private static DirectoryWatcher watcher;
+	/** lock statistics of the thread safe index, copied out before it was frozen */
+	private static Map<String, List<LockStatistics>> liveLocks = new LinkedHashMap<>();
 	/**
 	 * Initializes the classes necessary based on the provided command-line arguments. This includes
 	 * (but is not limited to) how to build or search an inverted index.
@@ -96,7 +126,7 @@ public class Driver {
 			Driver.setDefaults();
 			boolean hasIndex = Driver.buildIndex();
 			if (hasIndex) {
-				Driver.writeIndexJson();
+				Driver.writeManifest(Driver.writeIndexJson());
 				Driver.writeFileCountJson();
 				Driver.searchIndex();
 				Driver.writeResultsJson();
@@ -104,7 +134,11 @@ public class Driver {
 				Driver.usage();
 			}
 			if (validThreadCount) {
+				Driver.logStatistics();
 				Driver.tasks.shutdown();
+				if (Driver.fetchers != Driver.tasks) {
+					Driver.fetchers.shutdown();
+				}
 			}
 		} else {
 			Driver.usage();
@@ -124,8 +158,16 @@ public class Driver {
 			+ "If  '-counts' flag does not have a path or is an invalid path, then it will default to 'counts.json'\n"
 			+ "If  '-results' flag does not have a path or is an invalid path, then it will default to 'results.json'\n"
 			+ "The '-exact' flag given as the flag itself\n"
+			+ "The '-top' flag optionally limits each query to that many results, otherwise every result is kept\n"
+			+ "The '-shards' flag builds with a sharded index when threading, with the given number of shards or 16\n"
+			+ "The '-reduce' flag builds a word index for each thread and combines them once every file is done\n"
+			+ "The '-steal' flag gives each thread its own queue of work to take from and lets idle threads steal from the others\n"
+			+ "The '-fetchers' flag fetches web pages on that many threads, or 64, while '-threads' still caps the parsing\n"
+			+ "The '-capacity' flag bounds how much work can wait in the work queue, and '-overflow' picks block, caller-runs or reject for work that does not fit\n"
+			+ "The '-incremental' flag reuses the index saved by '-index' for files that have not changed since, keeping a manifest next to it\n"
+			+ "The '-watch' flag keeps the index built from '-path' current with its text files while the '-port' server runs\n"
 			+ "Invalid arguments given with no flags will not be ran\n"
-			+ "Supported flags:\n\t'path' 'index' 'query' 'counts' 'results' 'exact'\n"
+			+ "Supported flags:\n\t'path' 'index' 'query' 'counts' 'results' 'exact' 'top' 'shards' 'reduce' 'steal' 'fetchers' 'capacity' 'overflow' 'incremental' 'watch'\n"
 			+ "This programs arguments should be oriented as such:\n"
 			+ "\t-path path -index path -query path -counts path -results path -exact\n"
 			+ "\totherwise, it will be the given path to output the json to\n"
@@ -173,7 +215,92 @@ public class Driver {
 			//get thread count
 			validThreadCount = true;
 			checkNewAssignment();
-			tasks = new WorkQueue(threads);
+			tasks = parser.hasFlag(stealFlag)? new WorkStealingQueue(threads) : new WorkQueue(threads, capacity(), overflowPolicy());
+			fetchers = tasks;
+			if (parser.hasFlag(fetchersFlag)) {
+				//fetches mostly wait, so they get many more threads than the cpu work
+				String fetcherCount = parser.getString(fetchersFlag);
+				fetchers = new WorkQueue(TextParser.validNumber(fetcherCount)? Integer.valueOf(fetcherCount) : WebCrawler.DEFAULT_FETCHERS);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the work queues in use by the name to report them under
+	 * @return the tasks queue, and the fetchers queue if it is a separate one
+	 */
+	private static Map<String, WorkQueue> queues() {
+		Map<String, WorkQueue> queues = new LinkedHashMap<>();
+		queues.put("tasks", tasks);
+		if (fetchers != tasks) {
+			queues.put("fetchers", fetchers);
+		}
+		return queues;
+	}
+	
+	/**
+	 * Log how busy each work queue has been during the run
+	 */
+	private static void logStatistics() {
+		for (Map.Entry<String, WorkQueue> queue : queues().entrySet()) {
+			log.info("Work queue " + queue.getKey() + ": " + queue.getValue().statistics());
+		}
+		for (Map.Entry<String, List<LockStatistics>> lock : lockStatistics().entrySet()) {
+			for (LockStatistics mode : lock.getValue()) {
+				log.info("Lock " + lock.getKey() + " " + mode);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the lock statistics of the index, starting with those of the thread safe
+	 * index it was built or crawled in if it has been frozen since
+	 * @return the read and write statistics of each lock by its name
+	 */
+	private static Map<String, List<LockStatistics>> lockStatistics() {
+		Map<String, List<LockStatistics>> locks = new LinkedHashMap<>(crawler != null? crawler.lockStatistics() : liveLocks);
+		WordIndex index = wordIndex;
+		if (index != null) {
+			//the frozen index has a query lock of its own
+			String prefix = locks.isEmpty()? "" : "frozen.";
+			for (Map.Entry<String, List<LockStatistics>> lock : index.lockStatistics().entrySet()) {
+				locks.put(prefix + lock.getKey(), lock.getValue());
+			}
+		}
+		return locks;
+	}
+	
+	/**
+	 * Freezes the index, keeping the lock statistics of the thread safe index
+	 * since they are gone once it is
+	 */
+	private static void freezeIndex() {
+		if (!(wordIndex instanceof FrozenWordIndex)) {
+			liveLocks = wordIndex.lockStatistics();
+		}
+		wordIndex = wordIndex.freeze();
+	}
+	
+	/**
+	 * Gets the capacity of the work queue
+	 * @return the given capacity or an unbounded queue
+	 */
+	private static int capacity() {
+		String capacity = parser.getString(capacityFlag);
+		return TextParser.validNumber(capacity)? Integer.valueOf(capacity) : WorkQueue.UNBOUNDED;
+	}
+	
+	/**
+	 * Gets what a full work queue does with more work
+	 * @return the given overflow policy or blocking
+	 */
+	private static WorkQueue.OverflowPolicy overflowPolicy() {
+		String policy = parser.getString(overflowFlag);
+		try {
+			return policy != null? WorkQueue.OverflowPolicy.valueOf(policy.toUpperCase().replace('-', '_')) : WorkQueue.OverflowPolicy.BLOCK;
+		} catch (IllegalArgumentException e) {
+			log.info("Unknown overflow policy " + policy + ", blocking instead");
+			return WorkQueue.OverflowPolicy.BLOCK;
 		}
 	}
 	
@@ -194,6 +321,9 @@ public class Driver {
 	 */
 	private static void setDefaults() {
 		countValidation();
+		//number of results to keep for each query
+		String topCount = parser.getString(topFlag);
+		top = TextParser.validNumber(topCount)? Integer.valueOf(topCount) : WordIndex.ALL_RESULTS;
 		//default output
 		outputFile = parser.defaultGenertor.apply(indexFlag, defaultIndexJsonFile);
 		//if able, create json output file
@@ -253,20 +383,56 @@ public class Driver {
 			hasNotFailed = build(originalPath);
 		} else if (validFlagPair(urlFlag)) {
 			String seed = parser.getString(urlFlag);
-			crawler = new WebCrawler(tasks, seed, limit);
+			crawler = new WebCrawler(tasks, fetchers, seed, limit);
 			wordIndex = crawler.crawlFromSeedUrl();
 			hasNotFailed = true;
 		}
 
 //		-url "https://www.amazon.com/" -limit 50 -port 8080
 		if (parser.hasFlag(portFlag)) {
+			startWatching();
 			startWebServlet();
+			stopWatching();
+			//nothing writes once the server is done, so what gets written out is exact rather than a snapshot
+			if (wordIndex != null) {
+				freezeIndex();
+			}
 			hasNotFailed = true;
 		}
 		
 		return hasNotFailed;
 	}
 	
+	/**
+	 * Determines whether the index should be kept current with the path
+	 * @return {@code true} if watching was asked for and a server will be searching the index
+	 */
+	private static boolean isWatching() {
+		return parser.hasFlag(watchFlag) && parser.hasFlag(portFlag) && validThreadCount;
+	}
+	
+	/**
+	 * Start watching the path the index was built from, if asked to
+	 */
+	private static void startWatching() {
+		if (watcher != null) {
+			watcher.start();
+		}
+	}
+	
+	/**
+	 * Stop watching once the server is done, waiting for files being re-indexed
+	 */
+	private static void stopWatching() {
+		if (watcher != null) {
+			try {
+				watcher.shutdown();
+			} catch (InterruptedException e) {
+				log.warn("Interrupted while waiting for files to be re-indexed");
+			}
+		}
+	}
+	
 	/**
 	 * Start a server and its respective servlets
 	 */
@@ -284,16 +450,17 @@ public class Driver {
 			resourceHandler.setDirectoriesListed(true);
 			resourceHandler.setResourceBase("web");
 			//create servlets
-			MultithreadedWordIndex index = (MultithreadedWordIndex) wordIndex;
 			ServletHolder home = new ServletHolder(new HomeServlet(crawler));
-			ServletHolder invertedIndex = new ServletHolder(new IndexServlet(index));
-			ServletHolder location = new ServletHolder(new LocationServlet(index));
+			ServletHolder invertedIndex = new ServletHolder(new IndexServlet(wordIndex));
+			ServletHolder location = new ServletHolder(new LocationServlet(wordIndex));
 			ServletHolder shutdown = new ServletHolder(new ShutdownServlet(server, handlers));
+			ServletHolder stats = new ServletHolder(new StatsServlet(queues(), Driver::lockStatistics));
 			//add servlets
 			handler.addServletWithMapping(home, "/home");
 			handler.addServletWithMapping(invertedIndex, "/index");
 			handler.addServletWithMapping(location, "/location");
 			handler.addServletWithMapping(shutdown, "/shutdown");
+			handler.addServletWithMapping(stats, "/stats");
 			//set server handler and start the server
 			server.setHandler(handlers);
 			server.start();
@@ -318,27 +485,90 @@ public class Driver {
 		boolean hasNotFailed = false;
 		if (Files.isReadable(originalPath)) {
 			log.info("Processing word index...");
-			wordIndex = validThreadCount? MultithreadedIndexBuilder.build(tasks, originalPath) : IndexBuilder.build(originalPath);
+			if (parser.hasFlag(incrementalFlag) && indexJsonPath != null) {
+				//only new and changed files are stemmed, the rest is read back from the saved index
+				wordIndex = validThreadCount? threadSafeIndex() : new WordIndex();
+				manifest = IncrementalIndexBuilder.build(originalPath, indexJsonPath, validThreadCount? tasks : null, wordIndex);
+			}
+			else if (validThreadCount && parser.hasFlag(reduceFlag) && !isWatching()) {
+				wordIndex = MultithreadedIndexBuilder.buildReduced(tasks, originalPath);
+			}
+			else {
+				wordIndex = validThreadCount? MultithreadedIndexBuilder.build(tasks, originalPath, threadSafeIndex()) : IndexBuilder.build(originalPath);
+			}
 			log.info("Word index has been processed");
+			if (isWatching()) {
+				//changed files are applied to the live index, so it is never frozen
+				watcher = new DirectoryWatcher(originalPath, wordIndex, tasks);
+			}
+			else {
+				if (parser.hasFlag(watchFlag)) {
+					log.info("The '-watch' flag only keeps the index current while the '-port' server runs");
+				}
+				//nothing is added after building from a path, so switch to the read only layout
+				freezeIndex();
+				log.info("Word index has been frozen");
+			}
 			hasNotFailed = true;
 		}
 		return hasNotFailed;
 	}
 	
+	/**
+	 * Creates the thread safe index to build, sharded if the shards flag was given
+	 * @return an empty thread safe index
+	 */
+	private static WordIndex threadSafeIndex() {
+		if (parser.hasFlag(shardsFlag)) {
+			String shardCount = parser.getString(shardsFlag);
+			return new ShardedWordIndex(TextParser.validNumber(shardCount)? Integer.valueOf(shardCount) : ShardedWordIndex.DEFAULT_SHARDS);
+		}
+		return new MultithreadedWordIndex();
+	}
+	
 	/**
 	 * Write the index results found to a json file
+	 * @return if the index was written to the file
 	 */
-	private static void writeIndexJson() {
+	private static boolean writeIndexJson() {
 		try {
 			//convert wordIndex into Json //readability checking
 			if (indexJsonPath != null && Files.isReadable(indexJsonPath)) {
 				log.info("Writing word index to json...");
-				SimpleJsonWriter.wordIndexToSimpleJson(wordIndex.getUnmodifiableElements(), indexJsonPath);
+				//a snapshot does not change while it is written out
+				SimpleJsonWriter.wordIndexToSimpleJson(wordIndex.snapshot(), indexJsonPath);
 				log.info("Word index finished written to file");
+				return true;
 			}
 		} catch (NullPointerException | IOException e) {
 			log.info("Failed to write index to file");
 		}
+		return false;
+	}
+	
+	/**
+	 * Write the manifest of an incrementally built index next to it, only once the
+	 * index itself is saved so the manifest never describes files it is missing.
+	 * If the index was not saved, an older manifest left next to it is removed so
+	 * the next incremental build starts over instead of trusting it.
+	 * @param indexWritten if the index was written to its file
+	 */
+	private static void writeManifest(boolean indexWritten) {
+		if (manifest == null || indexJsonPath == null) {
+			return;
+		}
+		Path manifestPath = FileManifest.pathOf(indexJsonPath);
+		try {
+			if (indexWritten) {
+				manifest.write(manifestPath);
+				log.info("Manifest of " + manifest.size() + " files written next to the word index");
+			}
+			else if (Files.deleteIfExists(manifestPath)) {
+				log.info("Removed the manifest of the word index that failed to be written");
+			}
+		} catch (IOException e) {
+			log.info("Failed to write the manifest to file");
+		}
 	}
 	
 	/**
@@ -347,7 +577,7 @@ public class Driver {
 	private static void writeFileCountJson() {
 		try {
 			//get map of counts
-			Map<String, Integer> counts =  wordIndex.getUnmodifiableFileCount();
+			Map<String, Integer> counts =  wordIndex.snapshot().getUnmodifiableFileCount();
 			//check for null value
 			if (countsJsonPath != null && counts != null && Files.isReadable(countsJsonPath)) {
 				log.info("Counts json file: " + countsJsonPath + " construction...");
@@ -438,11 +668,10 @@ public class Driver {
 		//readability checking
 		if (Files.isReadable(queryPath)) {
 			log.info("Conducting searches..."); 
-			if (validThreadCount && wordIndex instanceof MultithreadedWordIndex) {
-				MultithreadedWordIndex index = (MultithreadedWordIndex) wordIndex;
-				MultithreadedQueryGenerator.generateQueries(index, tasks, queryPath, exactSearchFlag);
+			if (validThreadCount) {
+				MultithreadedQueryGenerator.generateQueries(wordIndex, tasks, queryPath, exactSearchFlag, top);
 			} else {
-				QueryGenerator.generateQueries(wordIndex, queryPath, exactSearchFlag);
+				QueryGenerator.generateQueries(wordIndex, queryPath, exactSearchFlag, top);
 			}
 			log.info("Searches conducted");
 		}
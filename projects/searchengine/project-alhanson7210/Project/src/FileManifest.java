@@ -0,0 +1,276 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Describes every file a saved word index was built from: its size, when it was
+ * last modified, a hash of its contents and how many words it has. Comparing a
+ * file against its entry tells whether the postings saved for it can be reused.
+ *
+ * The manifest is saved next to the index as plain text, one file per line with
+ * its fields separated by tabs and the location last.
+ *
+ * Warning: This class is not thread-safe. If multiple threads access this class
+ * concurrently, access must be synchronized externally.
+ *
+ * @see IncrementalIndexBuilder
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class FileManifest {
+
+	/** added to the file name of the index to get the file name of its manifest */
+	public static final String SUFFIX = ".manifest";
+
+	/** algorithm used to hash the contents of files */
+	private static final String HASH = "SHA-256";
+
+	/** entries by the location used in the index */
+	private final TreeMap<String, Entry> entries;
+
+	/**
+	 * Constructor for an empty manifest
+	 */
+	public FileManifest() {
+		this.entries = new TreeMap<>();
+	}
+
+	/**
+	 * Gets the path of the manifest saved next to an index
+	 *
+	 * @param indexPath path of the saved index
+	 * @return path of its manifest
+	 */
+	public static Path pathOf(Path indexPath) {
+		return indexPath.resolveSibling(indexPath.getFileName() + SUFFIX);
+	}
+
+	/**
+	 * Reads a manifest, or gives an empty one if there is no manifest to read
+	 *
+	 * @param path path of the manifest
+	 * @return the manifest read
+	 *
+	 * @throws IOException if an IO error occurs or a line is malformed
+	 */
+	public static FileManifest read(Path path) throws IOException {
+		FileManifest manifest = new FileManifest();
+		if (!Files.isRegularFile(path)) {
+			return manifest;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			String line = null;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", 5);
+				if (fields.length != 5) {
+					throw new IOException("Malformed manifest line: " + line);
+				}
+				try {
+					manifest.put(fields[4], new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[0], Integer.parseInt(fields[3])));
+				} catch (NumberFormatException e) {
+					throw new IOException("Malformed manifest line: " + line);
+				}
+			}
+		}
+		return manifest;
+	}
+
+	/**
+	 * Writes the manifest
+	 *
+	 * @param path path of the manifest
+	 *
+	 * @throws IOException if an IO error occurs
+	 */
+	public void write(Path path) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			for (String location : entries.keySet()) {
+				Entry file = entries.get(location);
+				writer.write(file.hash + "\t" + file.size + "\t" + file.modified + "\t" + file.words + "\t" + location);
+				writer.newLine();
+			}
+		}
+	}
+
+	/**
+	 * Gets the entry of a location
+	 *
+	 * @param location location used in the index
+	 * @return the entry or {@code null} if the location is not in the manifest
+	 */
+	public Entry get(String location) {
+		return entries.get(location);
+	}
+
+	/**
+	 * Adds or replaces the entry of a location
+	 *
+	 * @param location location used in the index
+	 * @param entry description of the file
+	 */
+	public void put(String location, Entry entry) {
+		entries.put(location, entry);
+	}
+
+	/**
+	 * Gets every location in the manifest
+	 *
+	 * @return an unmodifiable view of the locations in sorted order
+	 */
+	public Set<String> locations() {
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+
+	/**
+	 * Gets the number of files in the manifest
+	 *
+	 * @return the number of entries
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Hashes the contents of a file
+	 *
+	 * @param file the file to hash
+	 * @return the hash as lowercase hexadecimal
+	 *
+	 * @throws IOException if an IO error occurs
+	 */
+	public static String hash(Path file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(HASH);
+		} catch (NoSuchAlgorithmException e) {
+			//every java platform is required to support it
+			throw new IllegalStateException(HASH + " is not available", e);
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer bytes = ByteBuffer.allocate(1 << 16);
+			while (channel.read(bytes) != -1) {
+				bytes.flip();
+				digest.update(bytes);
+				bytes.clear();
+			}
+		}
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * The description of a single file
+	 */
+	public static class Entry {
+		/** size of the file in bytes */
+		private final long size;
+
+		/** when the file was last modified in milliseconds since the epoch */
+		private final long modified;
+
+		/** hash of the contents of the file */
+		private final String hash;
+
+		/** number of words in the file */
+		private final int words;
+
+		/**
+		 * Constructor
+		 *
+		 * @param size size of the file in bytes
+		 * @param modified when the file was last modified in milliseconds since the epoch
+		 * @param hash hash of the contents of the file
+		 * @param words number of words in the file
+		 */
+		public Entry(long size, long modified, String hash, int words) {
+			this.size = size;
+			this.modified = modified;
+			this.hash = hash;
+			this.words = words;
+		}
+
+		/**
+		 * Describes a file as it is now
+		 *
+		 * @param file the file to describe
+		 * @param attributes attributes of the file already read
+		 * @param words number of words in the file
+		 * @return a new entry
+		 *
+		 * @throws IOException if an IO error occurs
+		 */
+		public static Entry of(Path file, BasicFileAttributes attributes, int words) throws IOException {
+			return new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), hash(file), words);
+		}
+
+		/**
+		 * Determines whether a file is the same as described without reading it. A
+		 * file with the same size that was modified since might still be the same.
+		 *
+		 * @param attributes attributes of the file
+		 * @return true if the size and modification time are the same
+		 */
+		public boolean isUnmodified(BasicFileAttributes attributes) {
+			return size == attributes.size() && modified == attributes.lastModifiedTime().toMillis();
+		}
+
+		/**
+		 * Determines whether a file has the same contents as described, reading it
+		 * only if the size is the same but it was modified since
+		 *
+		 * @param file the file to compare
+		 * @param attributes attributes of the file
+		 * @return true if the contents are the same
+		 *
+		 * @throws IOException if an IO error occurs
+		 */
+		public boolean isSame(Path file, BasicFileAttributes attributes) throws IOException {
+			if (isUnmodified(attributes)) {
+				return true;
+			}
+			return size == attributes.size() && hash.equals(hash(file));
+		}
+
+		/**
+		 * Gets the same description with a new modification time
+		 *
+		 * @param attributes attributes of the file
+		 * @return an entry with the modification time of the attributes
+		 */
+		public Entry touch(BasicFileAttributes attributes) {
+			return new Entry(size, attributes.lastModifiedTime().toMillis(), hash, words);
+		}
+
+		/**
+		 * get words
+		 * @return the number of words in the file
+		 */
+		public int getWords() {
+			return words;
+		}
+
+		/**
+		 * get hash
+		 * @return the hash of the contents of the file
+		 */
+		public String getHash() {
+			return hash;
+		}
+	}
+}
@@ -0,0 +1,653 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * A read-only {@link WordIndex} built once the index is done being added to. The
+ * stems are kept front-coded in a sorted {@link TermDictionary}, and the postings
+ * of every stem are stored back to back in flat arrays where stem {@code i} owns
+ * the postings from {@code offsets[i]} up to {@code offsets[i + 1]}. Nothing is ever written after
+ * construction, so searching needs no locking. Only the query listings can still
+ * change, and those are guarded by their own lock.
+ *
+ * @see WordIndex#freeze()
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class FrozenWordIndex extends WordIndex {
+
+	/** sorted stems, front-coded */
+	private final TermDictionary terms;
+
+	/** where the postings of each stem start, with one extra entry for the end */
+	private final int[] offsets;
+
+	/** document id of every posting */
+	private final int[] postingDocuments;
+
+	/** number of positions of every posting */
+	private final int[] postingFrequencies;
+
+	/** number of positions of each stem over every document */
+	private final int[] termFrequencies;
+
+	/** positions of every posting */
+	private final PositionList[] postingPositions;
+
+	/** ids for every file path or url, in the same order as the source index */
+	private final DocumentDictionary documents;
+
+	/** word count for each document id */
+	private final int[] wordCount;
+
+	/** lock for the query listings, the only part that can change */
+	private final ReadWriteLock queryLock;
+
+	/**
+	 * Copies a word index into the frozen layout. The position lists are shared
+	 * with the source index rather than copied, so the source should not be added
+	 * to afterwards.
+	 *
+	 * @param source the word index to copy
+	 */
+	public FrozenWordIndex(WordIndex source) {
+		this(source, false);
+	}
+
+	/**
+	 * Copies a word index into the frozen layout. The postings of removed
+	 * documents are left out, so a frozen index never has tombstones, and so are
+	 * those of documents still being added.
+	 *
+	 * @param source the word index to copy
+	 * @param copyOnWrite whether to mark the position lists as shared, which is
+	 *        needed if the source is still added to afterwards so it copies a list
+	 *        before changing it
+	 */
+	public FrozenWordIndex(WordIndex source, boolean copyOnWrite) {
+		super();
+		queryLock = new ReadWriteLock();
+		//documents keep their ids
+		documents = new DocumentDictionary();
+		int numDocuments = source.numDocuments();
+		BitSet removed = source.hiddenDocuments();
+		wordCount = new int[numDocuments];
+		for (int document = 0; document < numDocuments; document++) {
+			String location = source.getLocation(document);
+			documents.getId(location);
+			//the location of a removed document belongs to a later id, or to none yet
+			if (removed.get(document)) {
+				documents.release(location);
+			}
+			wordCount[document] = source.getFileCount(document);
+		}
+		//stems come out of the source in sorted order
+		Collection<String> stems = source.getElements();
+		terms = new TermDictionary(stems);
+		PostingList[] sourcePostings = new PostingList[terms.size()];
+		termFrequencies = new int[terms.size()];
+		offsets = new int[terms.size() + 1];
+		int total = 0;
+		int term = 0;
+		for (String stem : stems) {
+			sourcePostings[term] = source.getPostings(stem);
+			offsets[term] = total;
+			for (int j = 0; j < sourcePostings[term].size(); j++) {
+				if (!removed.get(sourcePostings[term].getDocument(j))) {
+					termFrequencies[term] += sourcePostings[term].getFrequency(j);
+					total++;
+				}
+			}
+			term++;
+		}
+		offsets[terms.size()] = total;
+		//flatten the postings
+		postingDocuments = new int[total];
+		postingFrequencies = new int[total];
+		postingPositions = new PositionList[total];
+		for (int i = 0; i < sourcePostings.length; i++) {
+			PostingList postings = sourcePostings[i];
+			int posting = offsets[i];
+			for (int j = 0; j < postings.size(); j++) {
+				if (!removed.get(postings.getDocument(j))) {
+					postingDocuments[posting] = postings.getDocument(j);
+					postingFrequencies[posting] = postings.getFrequency(j);
+					PositionList positions = postings.getPositions(j);
+					postingPositions[posting++] = copyOnWrite ? positions.share() : positions;
+				}
+			}
+		}
+		//carry over any searches already done
+		for (Entry<String, List<ComparableSearchResult>> entry : source.getUnmodifiableQueryElements()) {
+			super.addQueryListing(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Finds all exact matches and generates a list of only the best search results
+	 *
+	 * @param queryWords list of unique query searches
+	 * @param limit number of results to keep, or {@link #ALL_RESULTS} to keep every result
+	 *
+	 * @return a sorted list of at most limit comparable search results
+	 */
+	@Override
+	public List<ComparableSearchResult> exactSearch(List<String> queryWords, int limit) {
+		//matches are scored one document at a time
+		PostingsMerger matches = new PostingsMerger(this);
+		//loop through query words
+		for (String queryWord : queryWords) {
+			int term = indexOf(queryWord);
+			//exact match was found
+			if (term >= 0) {
+				matches.add(new FlatCursor(term));
+			}
+		}
+		//return the best results sorted
+		return matches.results(limit);
+	}
+
+	/**
+	 * Finds all partial matches and generates a list of only the best search results
+	 *
+	 * @param queryWords list of unique query searches
+	 * @param limit number of results to keep, or {@link #ALL_RESULTS} to keep every result
+	 *
+	 * @return a sorted list of at most limit comparable search results
+	 */
+	@Override
+	public List<ComparableSearchResult> partialSearch(List<String> queryWords, int limit) {
+		//matches are scored one document at a time
+		PostingsMerger matches = new PostingsMerger(this);
+		//a stem is counted once for every query word it starts with
+		for (String queryWord : queryWords) {
+			//first stem that could start with the query word
+			int term = terms.lowerBound(queryWord);
+			Iterator<String> stems = terms.iterator(term);
+			while (stems.hasNext() && stems.next().startsWith(queryWord)) {
+				matches.add(new FlatCursor(term++));
+			}
+		}
+		//return the best results sorted
+		return matches.results(limit);
+	}
+
+	/**
+	 * Finds a stem in the sorted stem array
+	 *
+	 * @param stem the element to lookup
+	 * @return index of the stem, or {@code -(insertion point) - 1} if it is missing
+	 */
+	private int indexOf(String stem) {
+		return terms.indexOf(stem);
+	}
+
+	/**
+	 * Finds the posting of a stem and file path
+	 *
+	 * @param stem the element to lookup
+	 * @param filePath where element was found
+	 * @return index of the posting or -1 if there is none
+	 */
+	private int postingOf(String stem, String filePath) {
+		int term = indexOf(stem);
+		int document = documents.findId(filePath);
+		if (term < 0 || document == DocumentDictionary.MISSING) {
+			return -1;
+		}
+		//postings of a stem are sorted by document id
+		int posting = Arrays.binarySearch(postingDocuments, offsets[term], offsets[term + 1], document);
+		return posting >= 0 ? posting : -1;
+	}
+
+	/**
+	 * Frozen indexes cannot be added to.
+	 *
+	 * @param stem the element found
+	 * @param filePath where element was found
+	 * @param position the position the element was found
+	 * @return never returns
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public boolean add(String stem, String filePath, int position) throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("A frozen word index cannot be added to");
+	}
+
+	/**
+	 * Frozen indexes cannot be added to.
+	 *
+	 * @param stem the element found
+	 * @param filePath file path to which the stem was found in
+	 * @param positions list of the positions found for a stem
+	 * @return never returns
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public boolean addAll(String stem, String filePath, Collection<Integer> positions) throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("A frozen word index cannot be added to");
+	}
+
+	/**
+	 * Frozen indexes cannot be added to.
+	 *
+	 * @param local another inverted index
+	 * @param correctedFilePath file path to add stems to in the inverted index
+	 * @return never returns
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public boolean addAll(WordIndex local, String correctedFilePath) throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("A frozen word index cannot be added to");
+	}
+
+	/**
+	 * Frozen indexes cannot be added to.
+	 *
+	 * @param local word index with the stems of a single document
+	 * @return never returns
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public MergeSummary merge(WordIndex local) throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("A frozen word index cannot be added to");
+	}
+
+	/**
+	 * Frozen indexes cannot be added to.
+	 *
+	 * @param other ignored
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void combine(WordIndex other) throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("A frozen word index cannot be added to");
+	}
+
+	/**
+	 * Frozen indexes cannot be added to.
+	 *
+	 * @param correctedPath file path to add fileCount to if needed
+	 * @param count number of words in file
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void addFileCount(String correctedPath, int count) throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("A frozen word index cannot be added to");
+	}
+
+	/**
+	 * Frozen indexes cannot be removed from.
+	 *
+	 * @param location file path or url of the document
+	 * @return never returns
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public boolean remove(String location) throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("A frozen word index cannot be removed from");
+	}
+
+	/**
+	 * Frozen indexes cannot be removed from.
+	 *
+	 * @param location file path or url of the document
+	 * @param local ignored
+	 * @return never returns
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public MergeSummary replace(String location, WordIndex local) throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("A frozen word index cannot be removed from");
+	}
+
+	/**
+	 * Frozen indexes never have tombstones to purge.
+	 *
+	 * @return never returns
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public int compact() throws UnsupportedOperationException {
+		throw new UnsupportedOperationException("A frozen word index has nothing to compact");
+	}
+
+	/**
+	 * Add query listing to queries map
+	 * @param queryString words to be found in the word index
+	 * @param queryResults list of search results found
+	 */
+	@Override
+	public void addQueryListing(String queryString, List<ComparableSearchResult> queryResults) {
+		queryLock.writeLock().lock();
+		try {
+			super.addQueryListing(queryString, queryResults);
+		} finally {
+			queryLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Query elements found in search
+	 * @return Unmodifiable Query Elements
+	 */
+	@Override
+	public Collection<Entry<String, List<ComparableSearchResult>>> getUnmodifiableQueryElements() {
+		queryLock.readLock().lock();
+		try {
+			return super.getUnmodifiableQueryElements();
+		} finally {
+			queryLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the file count of a correctedPath
+	 *
+	 * @param correctedPath file path to add fileCount to if needed
+	 * @return file count if word count contains the the path or 0
+	 */
+	@Override
+	public int getFileCount(String correctedPath) {
+		return getFileCount(documents.findId(correctedPath));
+	}
+
+	/**
+	 * Gets the file count of a document id
+	 *
+	 * @param document id from the document dictionary
+	 * @return file count if word count contains the document or 0
+	 */
+	@Override
+	public int getFileCount(int document) {
+		return document >= 0 && document < wordCount.length ? wordCount[document] : 0;
+	}
+
+	/**
+	 * Gets the file path or url of a document id
+	 *
+	 * @param document id from the document dictionary
+	 * @return the file path or url
+	 */
+	@Override
+	public String getLocation(int document) {
+		return documents.getLocation(document);
+	}
+
+	/**
+	 * Gets a copy of the postings of a stem. Searching reads the flat arrays
+	 * directly, this is only here for callers expecting a {@link PostingList}.
+	 *
+	 * @param stem the element to lookup
+	 * @return the postings of the stem or {@code null} if it is not in the index
+	 */
+	@Override
+	public PostingList getPostings(String stem) {
+		int term = indexOf(stem);
+		if (term < 0) {
+			return null;
+		}
+		PostingList postings = new PostingList();
+		for (int i = offsets[term]; i < offsets[term + 1]; i++) {
+			postings.putIfAbsent(postingDocuments[i], postingPositions[i]);
+		}
+		return postings;
+	}
+
+	/**
+	 * Gets a cursor reading the postings of a stem straight from the flat arrays
+	 *
+	 * @param stem the element to lookup
+	 * @return a cursor over the postings, with no postings if the stem is not in the index
+	 */
+	@Override
+	public PostingsCursor postings(String stem) {
+		int term = indexOf(stem);
+		return term >= 0 ? new FlatCursor(term) : PostingsCursor.EMPTY;
+	}
+
+	/**
+	 * Determines whether the element is stored in the index.
+	 *
+	 * @param stem the element to lookup
+	 *
+	 * @return {@true} if the element is stored in the index
+	 */
+	@Override
+	public boolean contains(String stem) {
+		return indexOf(stem) >= 0;
+	}
+
+	/**
+	 * Determines whether the stem and filePath is stored in the index.
+	 *
+	 * @param stem     word stem from a file
+	 * @param filePath path to which the stem came from
+	 *
+	 * @return true if the word index contains the filePath
+	 */
+	@Override
+	public boolean contains(String stem, String filePath) {
+		return postingOf(stem, filePath) >= 0;
+	}
+
+	/**
+	 * Determines whether the element is stored in the index and the position is
+	 * stored for that element.
+	 *
+	 * @param stem     the element to lookup
+	 * @param filePath where element was found
+	 * @param position the position of that element to lookup
+	 *
+	 * @return {@true} if the element and position is stored in the index
+	 */
+	@Override
+	public boolean contains(String stem, String filePath, int position) {
+		int posting = postingOf(stem, filePath);
+		return posting >= 0 ? postingPositions[posting].containsPosition(position) : false;
+	}
+
+	/**
+	 * Returns an unmodifiable view of the stems stored in the index.
+	 *
+	 * @return an unmodifiable view of the stems stored in the index
+	 */
+	@Override
+	public Collection<String> getElements() {
+		//the term dictionary cannot be modified
+		return terms;
+	}
+
+	/**
+	 * Map of file paths to positions for a given stem, sorted by file path.
+	 *
+	 * @param stem the element found
+	 * @return an unmodifiable map of file paths to positions for a stem
+	 */
+	@Override
+	public Map<String, PositionList> getLocations(String stem) {
+		int term = indexOf(stem);
+		if (term < 0) {
+			return Collections.emptyMap();
+		}
+		TreeMap<String, PositionList> locations = new TreeMap<>();
+		for (int i = offsets[term]; i < offsets[term + 1]; i++) {
+			locations.put(documents.getLocation(postingDocuments[i]), postingPositions[i]);
+		}
+		return Collections.unmodifiableMap(locations);
+	}
+
+	/**
+	 * Returns the primitive positions stored in the index for the provided element
+	 * and file path. The list should be treated as read only.
+	 *
+	 * @param stem the element to lookup
+	 * @param filePath where element was found
+	 *
+	 * @return the positions stored for the element, or {@code null} if there are none
+	 */
+	@Override
+	public PositionList getPositionList(String stem, String filePath) {
+		int posting = postingOf(stem, filePath);
+		return posting >= 0 ? postingPositions[posting] : null;
+	}
+
+	/**
+	 * Unmodifiable file count map, built from the document ids that have a count
+	 * @return an unmodifiable file count map to to write as json later
+	 */
+	@Override
+	public Map<String, Integer> getUnmodifiableFileCount() {
+		TreeMap<String, Integer> counts = new TreeMap<>();
+		for (int document = 0; document < wordCount.length; document++) {
+			if (wordCount[document] > 0) {
+				counts.put(documents.getLocation(document), wordCount[document]);
+			}
+		}
+		return Collections.unmodifiableMap(counts);
+	}
+
+	/**
+	 * Returns the number of file paths or urls that have an id in the index.
+	 *
+	 * @return the number of documents, every id is less than this
+	 */
+	@Override
+	public int numDocuments() {
+		return wordCount.length;
+	}
+
+	/**
+	 * Copies out how much the query lock has been used, the only lock there is
+	 *
+	 * @return the read and write statistics of the query lock
+	 */
+	@Override
+	public Map<String, List<LockStatistics>> lockStatistics() {
+		Map<String, List<LockStatistics>> statistics = super.lockStatistics();
+		addLockStatistics(statistics, "queryLock", queryLock);
+		return statistics;
+	}
+
+	/**
+	 * Already frozen, so there is nothing to copy.
+	 *
+	 * @return this index
+	 */
+	@Override
+	public FrozenWordIndex freeze() {
+		return this;
+	}
+
+	/**
+	 * Never changes, so it is its own snapshot.
+	 *
+	 * @return this index
+	 */
+	@Override
+	public FrozenWordIndex snapshot() {
+		return this;
+	}
+
+	/**
+	 * Returns the number of stems stored in the index.
+	 *
+	 * @return 0 if the index is empty, otherwise the number of element in the index
+	 */
+	@Override
+	public int numElements() {
+		return terms.size();
+	}
+
+	/**
+	 * Returns the number of positions stored for the given element.
+	 *
+	 * @param stem the element to lookup
+	 *
+	 * @return 0 if the element is not in the index or has no positions, otherwise
+	 *         the number of positions stored for that element
+	 */
+	@Override
+	public int numPositions(String stem) {
+		int term = indexOf(stem);
+		return term >= 0 ? termFrequencies[term] : 0;
+	}
+
+	/**
+	 * Returns the number of documents a stem was found in
+	 *
+	 * @param stem the element to lookup
+	 *
+	 * @return 0 if the element is not in the index, otherwise the number of
+	 *         documents with positions for that element
+	 */
+	@Override
+	public int documentFrequency(String stem) {
+		int term = indexOf(stem);
+		return term >= 0 ? offsets[term + 1] - offsets[term] : 0;
+	}
+
+	/**
+	 * Returns the number of positions for a file path and given stem
+	 *
+	 * @param stem the element to lookup
+	 * @param filePath where element was found
+	 *
+	 * @return 0 if the element is not in the index or has no positions, otherwise
+	 *         the number of positions stored for that element
+	 */
+	@Override
+	public int numPositions(String stem, String filePath) {
+		int posting = postingOf(stem, filePath);
+		return posting >= 0 ? postingFrequencies[posting] : 0;
+	}
+
+	/**
+	 * Cursor over the postings of one stem in the flat arrays
+	 */
+	private class FlatCursor implements PostingsCursor {
+
+		/** index of the current posting */
+		private int posting;
+
+		/** index just past the last posting of the stem */
+		private final int end;
+
+		/**
+		 * Starts before the first posting of a stem
+		 *
+		 * @param term index of the stem
+		 */
+		private FlatCursor(int term) {
+			posting = offsets[term] - 1;
+			end = offsets[term + 1];
+		}
+
+		@Override
+		public boolean next() {
+			return ++posting < end;
+		}
+
+		@Override
+		public int docId() {
+			return postingDocuments[posting];
+		}
+
+		@Override
+		public int termFrequency() {
+			return postingFrequencies[posting];
+		}
+
+		@Override
+		public int docLength() {
+			return wordCount[postingDocuments[posting]];
+		}
+	}
+}
@@ -172,9 +172,6 @@ public class HomeServlet extends HttpServlet {
 		out.printf("	<section class=\"section\">%n");
 		out.printf("		<div class=\"container\">%n");
 		out.printf("			<h2 class=\"title\">Query Search</h2>%n");
-		out.printf("			<form method=\"%s\" action=\"%s\">%n", "POST", request.getServletPath());
-		out.printf("			    <button class=\"button\" name=\"lucky\" type=\"%s\" value=\"%s\">I'm Feeling Lucky!</button>%n", "submit", "clicked");
-		out.printf("			</form>%n<br>%n");
 		//search history
 		synchronized(searchHistory) {
 			if (searchHistory.isEmpty()) {
@@ -237,6 +234,8 @@ public class HomeServlet extends HttpServlet {
 		out.printf("						&nbsp;%n");
 		out.printf("						Search%n");
 		out.printf("					</button>%n");
+		//lucky searches the same query, so it is submitted with this form
+		out.printf("			        <button class=\"button\" name=\"lucky\" type=\"%s\" value=\"%s\">I'm Feeling Lucky!</button>%n", "submit", "clicked");
 		out.printf("			    </div>%n");
 		out.printf("			</form>%n");
 		out.printf("		</div>%n");
@@ -342,15 +341,8 @@ public class HomeServlet extends HttpServlet {
 		String clear = request.getParameter("clear");
 		clear = clear == null? "" : clear;
 		clear = StringEscapeUtils.escapeHtml4(clear);
-		//re-routing checking
-		if (lucky.equals("clicked")) {
-			synchronized(statistics) {
-				if (statistics.size() != 0) {
-					response.sendRedirect(statistics.get(0).getWhere());
-					return;
-				}
-			}
-		} else if (clear.equals("clear")) {
+		//clear search history
+		if (clear.equals("clear")) {
 			synchronized(searchHistory) {
 				searchHistory.clear();
 			}
@@ -364,6 +356,18 @@ public class HomeServlet extends HttpServlet {
 		String exact = request.getParameter("exact");
 		exact = exact == null? "" : exact;
 		exact = StringEscapeUtils.escapeHtml4(exact);
+		boolean exactBool = !exact.isEmpty() && !exact.isBlank() && exact.equals("exact");
+		//re-routing to the best result of the current query
+		if (lucky.equals("clicked") && !search.isBlank() && !search.isEmpty()) {
+			List<ComparableSearchResult> best = crawler.searchQuery(search, exactBool, 1);
+			if (!best.isEmpty()) {
+				response.sendRedirect(best.get(0).getWhere());
+				return;
+			}
+		}
+		//optional number of results to show, every result by default
+		String limitParameter = request.getParameter("limit");
+		int limit = parseLimit(limitParameter);
 		
 		List<ComparableSearchResult> results = new ArrayList<>();
 		if (!search.isBlank() && !search.isEmpty()) {
@@ -379,7 +383,7 @@ public class HomeServlet extends HttpServlet {
 				}
 			}
 			
-			results = !exact.isEmpty() && !exact.isBlank() && exact.equals("exact")? crawler.searchQuery(search, true) : crawler.searchQuery(search);
+			results = crawler.searchQuery(search, exactBool, limit);
 			
 			synchronized(webResults) {
 				webResults.clear();
@@ -404,6 +408,25 @@ public class HomeServlet extends HttpServlet {
 		response.sendRedirect(request.getServletPath());
 	}
 
+	/**
+	 * Parses the optional limit parameter once, falling back to every result
+	 * when it is missing, not a positive number, or too large for an int
+	 * @param limitParameter value of the limit request parameter, may be null
+	 * @return number of results to show, or {@link WordIndex#ALL_RESULTS}
+	 */
+	private static int parseLimit(String limitParameter) {
+		if (limitParameter == null) {
+			return WordIndex.ALL_RESULTS;
+		}
+		try {
+			int limit = Integer.parseInt(limitParameter.strip());
+			return limit > 0? limit : WordIndex.ALL_RESULTS;
+		} catch (NumberFormatException e) {
+			log.debug("Ignoring invalid limit parameter");
+			return WordIndex.ALL_RESULTS;
+		}
+	}
+
 	/**
 	 * Returns the date and time in a long format. For example: "12:00 am on
 	 * Saturday, January 01 2000".
@@ -0,0 +1,138 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Builds a word index by reusing a word index saved by an earlier run. The
+ * {@link FileManifest} saved next to the index says what each file looked like
+ * when it was indexed. Files that are still the same have their postings read
+ * back from the saved index, files that are new or changed are stemmed again,
+ * and files that were deleted are left out.
+ *
+ * If the saved index or its manifest cannot be read, every file is stemmed again.
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class IncrementalIndexBuilder {
+
+	/** root logger */
+	private static final Logger log = LogManager.getRootLogger();
+
+	/**
+	 * Builds a word index from a path, reusing what it can of the index saved at
+	 * the given path. The manifest returned describes the new index and should be
+	 * written with {@link FileManifest#write(Path)} once the index itself has
+	 * been saved.
+	 *
+	 * @param pathEntry file path to build the inverted index from
+	 * @param indexPath path the index was saved to by the last run
+	 * @param tasks work queue to stem changed files with, or {@code null} to stem them in this thread
+	 * @param index empty word index to build, which must be thread safe if a work queue is given
+	 * @return the manifest of the files in the built index
+	 *
+	 * @throws IOException issues while reading file or attempting to open file
+	 * @throws InterruptedException the work queue was interrupted
+	 */
+	public static FileManifest build(Path pathEntry, Path indexPath, WorkQueue tasks, WordIndex index) throws IOException, InterruptedException {
+		FileManifest saved = readManifest(indexPath);
+		//every readable text file by its location in the index
+		Map<String, Path> files = new TreeMap<>();
+		Map<String, BasicFileAttributes> attributes = new HashMap<>();
+		for (Path path : TextFileFinder.list(pathEntry)) {
+			if (Files.isReadable(path)) {
+				String location = TextFileFinder.pathRelativizer.apply(pathEntry, path);
+				files.put(location, path);
+				attributes.put(location, Files.readAttributes(path, BasicFileAttributes.class));
+			}
+		}
+		//files that are the same as when the index was saved
+		FileManifest manifest = new FileManifest();
+		for (Map.Entry<String, Path> file : files.entrySet()) {
+			BasicFileAttributes current = attributes.get(file.getKey());
+			FileManifest.Entry entry = saved.get(file.getKey());
+			if (entry != null && entry.isSame(file.getValue(), current)) {
+				manifest.put(file.getKey(), entry.isUnmodified(current) ? entry : entry.touch(current));
+			}
+		}
+		long deleted = saved.locations().stream().filter(location -> !files.containsKey(location)).count();
+		log.info(manifest.size() + " files unchanged, " + (files.size() - manifest.size()) + " new or changed, " + deleted + " deleted");
+		if (!load(indexPath, manifest, index)) {
+			//nothing could be reused, so stem everything again
+			manifest = new FileManifest();
+		}
+		List<Path> changed = new ArrayList<>();
+		for (Map.Entry<String, Path> file : files.entrySet()) {
+			if (manifest.get(file.getKey()) == null) {
+				changed.add(file.getValue());
+			}
+		}
+		if (tasks != null) {
+			MultithreadedIndexBuilder.build(tasks, pathEntry, changed, index);
+		}
+		else {
+			for (Path path : changed) {
+				IndexBuilder.parseFile(index, path, TextFileFinder.pathRelativizer.apply(pathEntry, path));
+			}
+			index.compressPositions();
+		}
+		//describe the stemmed files as they were read
+		for (Path path : changed) {
+			String location = TextFileFinder.pathRelativizer.apply(pathEntry, path);
+			manifest.put(location, FileManifest.Entry.of(path, attributes.get(location), index.getFileCount(location)));
+		}
+		return manifest;
+	}
+
+	/**
+	 * Reads the manifest saved next to an index
+	 *
+	 * @param indexPath path of the saved index
+	 * @return the manifest, or an empty one if it is missing or cannot be read
+	 */
+	private static FileManifest readManifest(Path indexPath) {
+		try {
+			return FileManifest.read(FileManifest.pathOf(indexPath));
+		} catch (IOException e) {
+			log.warn("Could not read the manifest of " + indexPath + ", every file will be stemmed again");
+			return new FileManifest();
+		}
+	}
+
+	/**
+	 * Reads the postings and word counts of the unchanged files back from the
+	 * saved index into the index being built
+	 *
+	 * @param indexPath path of the saved index
+	 * @param unchanged manifest of the files that are the same as when the index was saved
+	 * @param index word index to add the postings to
+	 * @return true if the postings were read, false if the saved index could not be read
+	 */
+	private static boolean load(Path indexPath, FileManifest unchanged, WordIndex index) {
+		if (unchanged.size() == 0) {
+			return true;
+		}
+		//read into a word index of its own so a failure leaves nothing behind
+		WordIndex loaded = new WordIndex();
+		try {
+			SimpleJsonReader.readWordIndex(indexPath, loaded, location -> unchanged.get(location) != null);
+		} catch (IOException e) {
+			log.warn("Could not read the saved index " + indexPath + ", every file will be stemmed again: " + e.getMessage());
+			return false;
+		}
+		for (String location : unchanged.locations()) {
+			loaded.addFileCount(location, unchanged.get(location).getWords());
+		}
+		index.combine(loaded);
+		return true;
+	}
+}
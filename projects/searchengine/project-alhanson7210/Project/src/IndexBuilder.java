@@ -1,10 +1,7 @@
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.Collection;
 import java.util.List;
-import java.util.TreeMap;
-import java.util.TreeSet;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -42,11 +39,14 @@ public class IndexBuilder {
 			//parse file and add file count if necessary
 			parseFile(invertedIndex, path, correctedFilePath);
 		}
+		//stems were added one position at a time
+		invertedIndex.compressPositions();
 		return invertedIndex;
 	}
 	
 	/**
-	 * Parse file and add file count
+	 * Parse file and add file count. The file is streamed straight into the index
+	 * one stem at a time, so no collection of the stems of the whole file is built.
 	 * @param invertedIndex accumulating, inverted index
 	 * @param path file path from a stream of all text files
 	 * @param correctedFilePath formatted file path
@@ -56,17 +56,8 @@ public class IndexBuilder {
 	 * @throws IOException issues while reading file or attempting to open file
 	 */
 	public static void parseFile(WordIndex invertedIndex, Path path, String correctedFilePath) throws NullPointerException, FileNotFoundException, UnsupportedOperationException, IOException {
-		TreeMap<String, TreeSet<Integer>> fileStems = TextFileStemmer.generateStemPositionMap(path);
-		//initialize file count
-		int fileCount = 0;
-		// loop through the file stem entries
-		for (String filePath : fileStems.keySet()) {
-			//add all positions for stem
-			Collection<Integer> stemPositions = fileStems.get(filePath);
-			invertedIndex.addAll(filePath, correctedFilePath, stemPositions);
-			//add file count
-			fileCount += stemPositions.size();
-		}
+		//add each stem as soon as it is read
+		int fileCount = MappedTextStemmer.stemFile(path, (stem, position) -> invertedIndex.add(stem, correctedFilePath, position));
 		//set file path word count
 		invertedIndex.addFileCount(correctedFilePath, fileCount);
 	}
@@ -1,6 +1,5 @@
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.Collection;
 import java.util.Map;
 
 import javax.servlet.ServletException;
@@ -28,13 +27,13 @@ public class IndexServlet extends HttpServlet {
 	private static Logger log = Log.getRootLogger();
 	
 	/** the word index */
-	private MultithreadedWordIndex index;
+	private WordIndex index;
 
 	/**
 	 * Constructor
 	 * @param index thread safe index to print results from
 	 */
-	public IndexServlet(MultithreadedWordIndex index) {
+	public IndexServlet(WordIndex index) {
 		super();
 		this.index = index;
 	}
@@ -105,12 +104,13 @@ public class IndexServlet extends HttpServlet {
 		out.printf("	<section class=\"section\">%n");
 		out.printf("		<div class=\"container\">%n");
 		out.printf("			<h2 class=\"title\">Locations</h2>%n");
-		Map<String, Map<String, Collection<Integer>>> map = index.getUnmodifiableMap();
-		for (String stem : map.keySet()) {
-			Map<String, Collection<Integer>> count = map.get(stem);
+		//one snapshot for the whole page, so the crawler can keep writing
+		WordIndex snapshot = index.snapshot();
+		for (String stem : snapshot.getElements()) {
+			Map<String, PositionList> count = snapshot.getLocations(stem);
 			out.printf("            <h3>Word Stem: %s</h3>", stem);
 			out.printf("            <div style=\"height:210px;overflow:scroll;border:dashed black;padding:10px;\">");
-			for (Map.Entry<String, Collection<Integer>> entry : count.entrySet()) {
+			for (Map.Entry<String, PositionList> entry : count.entrySet()) {
 				out.printf("            <div class=\"box\" style=\"background-color:#2f4c8a;color:black;overflow:hidden;\">%n");
 				out.printf("                <a href=\"%s\" class\"control\" style=\"color:white;\">%s</a>%n", entry.getKey(), entry.getKey());
 				out.printf("                <p>The list of positions for this url is: %s</p>%n", entry.getValue().toString());
@@ -26,13 +26,13 @@ public class LocationServlet extends HttpServlet {
 	private static Logger log = Log.getRootLogger();
 	
 	/** the word index */
-	private MultithreadedWordIndex index;
+	private WordIndex index;
 
 	/**
 	 * Constructor
 	 * @param index thread safe index to print results from
 	 */
-	public LocationServlet(MultithreadedWordIndex index) {
+	public LocationServlet(WordIndex index) {
 		super();
 		this.index = index;
 	}
@@ -103,7 +103,8 @@ public class LocationServlet extends HttpServlet {
 		out.printf("	<section class=\"section\">%n");
 		out.printf("		<div class=\"container\">%n");
 		out.printf("			<h2 class=\"title\">Locations</h2>%n");
-		Map<String, Integer> map = index.getUnmodifiableFileCount();
+		//one snapshot for the whole page, so the crawler can keep writing
+		Map<String, Integer> map = index.snapshot().getUnmodifiableFileCount();
 		for (Map.Entry<String, Integer> count : map.entrySet()) {
 			out.printf("	    <div class=\"box\" style=\"background-color:#2f4c8a;overflow:hidden;\">%n");
 			out.printf("             <a href=\"%s\" class\"control\" style=\"color:white;\">%s</a>%n", count.getKey(), count.getKey());
@@ -0,0 +1,118 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How much one mode of a {@link ReadWriteLock} has been used and fought over,
+ * copied out at a single point in time. Waiting is measured from the call to
+ * lock until the lock was given, and a hold from the outermost lock of a thread
+ * until its matching unlock.
+ *
+ * @see ReadWriteLock#readStatistics()
+ * @see ReadWriteLock#writeStatistics()
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class LockStatistics {
+
+	/** name of the lock mode */
+	private final String mode;
+
+	/** number of times the lock was given */
+	private final long acquisitions;
+
+	/** number of timed attempts that gave up */
+	private final long timeouts;
+
+	/** total time spent waiting for the lock in nanoseconds */
+	private final long waitNanos;
+
+	/** longest time the lock was held by one thread in nanoseconds */
+	private final long longestHoldNanos;
+
+	/**
+	 * Constructor for lock statistics
+	 *
+	 * @param mode name of the lock mode
+	 * @param acquisitions number of times the lock was given
+	 * @param timeouts number of timed attempts that gave up
+	 * @param waitNanos total time spent waiting for the lock in nanoseconds
+	 * @param longestHoldNanos longest time the lock was held by one thread in nanoseconds
+	 */
+	public LockStatistics(String mode, long acquisitions, long timeouts, long waitNanos, long longestHoldNanos) {
+		this.mode = mode;
+		this.acquisitions = acquisitions;
+		this.timeouts = timeouts;
+		this.waitNanos = waitNanos;
+		this.longestHoldNanos = longestHoldNanos;
+	}
+
+	/**
+	 * get mode
+	 * @return the name of the lock mode
+	 */
+	public String getMode() {
+		return mode;
+	}
+
+	/**
+	 * get acquisitions
+	 * @return the number of times the lock was given
+	 */
+	public long getAcquisitions() {
+		return acquisitions;
+	}
+
+	/**
+	 * get timeouts
+	 * @return the number of timed attempts that gave up
+	 */
+	public long getTimeouts() {
+		return timeouts;
+	}
+
+	/**
+	 * get wait time
+	 * @param unit unit to return the time in
+	 * @return the total time spent waiting for the lock
+	 */
+	public long getWaitTime(TimeUnit unit) {
+		return unit.convert(waitNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * get longest hold
+	 * @param unit unit to return the time in
+	 * @return the longest time the lock was held by one thread
+	 */
+	public long getLongestHold(TimeUnit unit) {
+		return unit.convert(longestHoldNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Gets the average time spent waiting for each acquisition
+	 *
+	 * @param unit unit to return the time in
+	 * @return the average wait or 0 if the lock was never given
+	 */
+	public long getAverageWait(TimeUnit unit) {
+		return acquisitions > 0 ? unit.convert(waitNanos / acquisitions, TimeUnit.NANOSECONDS) : 0;
+	}
+
+	/**
+	 * Adds up the statistics of the same mode of two locks used the same way,
+	 * such as the locks of every shard, keeping the longest hold of either
+	 *
+	 * @param other statistics of the same mode of another lock
+	 * @return the combined statistics
+	 */
+	public LockStatistics plus(LockStatistics other) {
+		return new LockStatistics(mode, acquisitions + other.acquisitions, timeouts + other.timeouts,
+				waitNanos + other.waitNanos, Math.max(longestHoldNanos, other.longestHoldNanos));
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: %d acquisitions, %d timeouts, %.3f ms waiting, %.3f ms longest hold",
+				mode, acquisitions, timeouts, waitNanos / 1e6, longestHoldNanos / 1e6);
+	}
+}
@@ -0,0 +1,322 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * Utility class for stemming text files without reading them into memory first.
+ * The file is memory mapped a window at a time, decoded as UTF-8 into a small
+ * buffer of characters, and every stem is handed to a consumer along with its
+ * position as soon as the whitespace after its word is seen. Only the word being
+ * read is ever held, so a file of any size needs about the same amount of heap.
+ *
+ * Words are found, cleaned and stemmed the same way as
+ * {@link TextFileStemmer#listStems(Path)}, so the stems and positions are the
+ * same as those of the line by line parsers.
+ *
+ * A large file can also be {@link #split(Path, long) split} into chunks that
+ * start and end between words, and each chunk stemmed on its own with positions
+ * counted from the start of the chunk.
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ *
+ * @see TextParser
+ */
+public class MappedTextStemmer {
+
+	/** Largest part of a file mapped into memory at once. */
+	public static final int WINDOW = 1 << 26;
+
+	/** Number of characters decoded at a time. */
+	private static final int CHARACTERS = 1 << 13;
+
+	/**
+	 * Stems a file, handing each stem and its position to the consumer in order.
+	 * Positions start at 1.
+	 *
+	 * @param inputFile the text file to stem
+	 * @param consumer accepts each stem and its position
+	 * @return the number of stems found
+	 *
+	 * @throws IOException if unable to read the file
+	 *
+	 * @see #stemFile(Path, Stemmer, ObjIntConsumer)
+	 */
+	public static int stemFile(Path inputFile, ObjIntConsumer<String> consumer) throws IOException {
+		return stemFile(inputFile, new SnowballStemmer(TextFileStemmer.DEFAULT), consumer);
+	}
+
+	/**
+	 * Stems a file, handing each stem and its position to the consumer in order.
+	 * Positions start at 1.
+	 *
+	 * @param inputFile the text file to stem
+	 * @param stemmer the stemmer to use
+	 * @param consumer accepts each stem and its position
+	 * @return the number of stems found
+	 *
+	 * @throws IOException if unable to read the file
+	 */
+	public static int stemFile(Path inputFile, Stemmer stemmer, ObjIntConsumer<String> consumer) throws IOException {
+		try (FileChannel channel = FileChannel.open(inputFile, StandardOpenOption.READ)) {
+			return stemRange(channel, 0, channel.size(), stemmer, consumer);
+		}
+	}
+
+	/**
+	 * Stems a chunk of a file, handing each stem and its position to the consumer
+	 * in order. Positions start at 1 for the first stem of the chunk.
+	 *
+	 * @param inputFile the text file to stem
+	 * @param start offset of the first byte of the chunk
+	 * @param end offset after the last byte of the chunk
+	 * @param stemmer the stemmer to use
+	 * @param consumer accepts each stem and its position
+	 * @return the number of stems found in the chunk
+	 *
+	 * @throws IOException if unable to read the file
+	 *
+	 * @see #split(Path, long)
+	 */
+	public static int stemChunk(Path inputFile, long start, long end, Stemmer stemmer, ObjIntConsumer<String> consumer) throws IOException {
+		try (FileChannel channel = FileChannel.open(inputFile, StandardOpenOption.READ)) {
+			return stemRange(channel, start, Math.min(end, channel.size()), stemmer, consumer);
+		}
+	}
+
+	/**
+	 * Finds where to split a file into chunks of about the given size. Each chunk
+	 * after the first starts right after an ascii white space byte, which is never
+	 * part of a longer UTF-8 character, so no word or character is cut in two.
+	 * Stretches without any such byte stay in a single chunk.
+	 *
+	 * @param inputFile the text file to split
+	 * @param chunkSize the size of each chunk to aim for in bytes
+	 * @return the offset each chunk starts at, followed by the size of the file
+	 *
+	 * @throws IOException if unable to read the file
+	 */
+	public static long[] split(Path inputFile, long chunkSize) throws IOException {
+		try (FileChannel channel = FileChannel.open(inputFile, StandardOpenOption.READ)) {
+			long size = channel.size();
+			List<Long> offsets = new ArrayList<>();
+			offsets.add(0L);
+			ByteBuffer bytes = ByteBuffer.allocate(CHARACTERS);
+			long offset = Math.max(1, chunkSize);
+			while (offset < size) {
+				//look for the first space at or after the offset
+				long found = -1;
+				bytes.clear();
+				for (long read = offset; found < 0 && channel.read(bytes, read) > 0; read += bytes.position(), bytes.clear()) {
+					bytes.flip();
+					while (found < 0 && bytes.hasRemaining()) {
+						if (isAsciiSpace(bytes.get())) {
+							found = read + bytes.position();
+						}
+					}
+				}
+				if (found < 0 || found >= size) {
+					break;
+				}
+				offsets.add(found);
+				offset = found + Math.max(1, chunkSize);
+			}
+			long[] chunks = new long[offsets.size() + 1];
+			for (int i = 0; i < offsets.size(); i++) {
+				chunks[i] = offsets.get(i);
+			}
+			chunks[offsets.size()] = size;
+			return chunks;
+		}
+	}
+
+	/**
+	 * Stems part of an open file a window at a time
+	 *
+	 * @param channel the open file
+	 * @param start offset of the first byte to stem
+	 * @param end offset after the last byte to stem
+	 * @param stemmer the stemmer to use
+	 * @param consumer accepts each stem and its position
+	 * @return the number of stems found
+	 *
+	 * @throws IOException if unable to read the file
+	 */
+	private static int stemRange(FileChannel channel, long start, long end, Stemmer stemmer, ObjIntConsumer<String> consumer) throws IOException {
+		Tokenizer tokenizer = new Tokenizer(stemmer, consumer);
+		do {
+			long length = Math.max(0, Math.min(WINDOW, end - start));
+			MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+			tokenizer.decode(window, start + length >= end);
+			//bytes of a character cut off by the window are mapped again with the next one
+			start += window.position();
+		} while (start < end);
+		return tokenizer.finish();
+	}
+
+	/**
+	 * Determines whether a byte is ascii white space
+	 *
+	 * @param b the byte to check
+	 * @return true if the byte is a space, tab or line break
+	 */
+	private static boolean isAsciiSpace(byte b) {
+		return b == ' ' || (b >= '\t' && b <= '\r');
+	}
+
+	/**
+	 * Determines whether a character separates words, the same characters matched
+	 * by {@link TextParser#SPLIT_REGEX}
+	 *
+	 * @param c the character to check
+	 * @return true if the character is unicode white space
+	 */
+	private static boolean isSpace(char c) {
+		return (c >= '\t' && c <= '\r') || c == '\u0085' || Character.isSpaceChar(c);
+	}
+
+	/**
+	 * Decodes bytes into characters and splits them into words, carrying a
+	 * character or word cut off at the end of one buffer over to the next.
+	 */
+	private static class Tokenizer {
+		/** decoder replacing malformed input the same way a reader does */
+		private final CharsetDecoder decoder;
+
+		/** characters decoded but not split yet */
+		private final CharBuffer characters;
+
+		/** characters of the word being read */
+		private final StringBuilder word;
+
+		/** whether the word being read is only ascii */
+		private boolean ascii;
+
+		/** stemmer to use */
+		private final Stemmer stemmer;
+
+		/** accepts each stem and its position */
+		private final ObjIntConsumer<String> consumer;
+
+		/** number of stems found so far */
+		private int count;
+
+		/**
+		 * Constructor
+		 *
+		 * @param stemmer stemmer to use
+		 * @param consumer accepts each stem and its position
+		 */
+		private Tokenizer(Stemmer stemmer, ObjIntConsumer<String> consumer) {
+			this.decoder = StandardCharsets.UTF_8.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			this.characters = CharBuffer.allocate(CHARACTERS);
+			this.word = new StringBuilder();
+			this.ascii = true;
+			this.stemmer = stemmer;
+			this.consumer = consumer;
+			this.count = 0;
+		}
+
+		/**
+		 * Decodes and splits as much of the bytes as possible. Unless it is the end of
+		 * the input, the bytes of a character cut off at the end are left in the buffer.
+		 *
+		 * @param bytes bytes to decode
+		 * @param endOfInput whether no more bytes follow these
+		 */
+		private void decode(ByteBuffer bytes, boolean endOfInput) {
+			CoderResult result;
+			do {
+				result = decoder.decode(bytes, characters, endOfInput);
+				split();
+			} while (result.isOverflow());
+		}
+
+		/**
+		 * Flushes the decoder and ends the last word
+		 *
+		 * @return the number of stems found
+		 */
+		private int finish() {
+			decoder.decode(ByteBuffer.allocate(0), characters, true);
+			decoder.flush(characters);
+			split();
+			endWord();
+			return count;
+		}
+
+		/**
+		 * Splits the decoded characters into words, ending a word at each space
+		 */
+		private void split() {
+			characters.flip();
+			while (characters.hasRemaining()) {
+				char c = characters.get();
+				if (isSpace(c)) {
+					endWord();
+				}
+				else {
+					word.append(c);
+					ascii &= c < 0x80;
+				}
+			}
+			characters.clear();
+		}
+
+		/**
+		 * Cleans and stems the word being read, if there is one. Words of plain ascii
+		 * only need their letters kept, anything else is cleaned by {@link TextParser}.
+		 */
+		private void endWord() {
+			if (word.length() == 0) {
+				return;
+			}
+			if (ascii) {
+				int letters = 0;
+				for (int i = 0; i < word.length(); i++) {
+					char c = word.charAt(i);
+					if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+						word.setCharAt(letters++, c);
+					}
+				}
+				word.setLength(letters);
+				if (letters > 0) {
+					stem(word.toString().toLowerCase());
+				}
+			}
+			else {
+				//cleaning can leave several words, or none
+				for (String cleaned : TextParser.parse(word.toString())) {
+					stem(cleaned);
+				}
+			}
+			word.setLength(0);
+			ascii = true;
+		}
+
+		/**
+		 * Stems a cleaned word and hands it to the consumer at the next position
+		 *
+		 * @param cleaned the cleaned word
+		 */
+		private void stem(String cleaned) {
+			consumer.accept(stemmer.stem(cleaned).toString(), ++count);
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/**
+ * What happened when a single document word index was merged into a shared one.
+ * Nothing stops a merge early, so the summary says how much was moved over
+ * instead of only whether everything was. The counts are filled in by the index
+ * while it merges, one stem at a time.
+ *
+ * @see WordIndex#merge(WordIndex)
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class MergeSummary {
+
+	/** location of the document merged */
+	private final String location;
+
+	/** stems that were not in the shared index before */
+	private int newStems;
+
+	/** position lists moved over as a whole */
+	private int movedPostings;
+
+	/** position lists added to positions the shared index already had */
+	private int mergedPostings;
+
+	/** positions in the shared index for the document afterwards */
+	private int positions;
+
+	/** word count of the document */
+	private int wordCount;
+
+	/**
+	 * Constructor for an empty merge summary
+	 *
+	 * @param location location of the document merged, or {@code null} if the local index was empty
+	 */
+	public MergeSummary(String location) {
+		this.location = location;
+		this.newStems = 0;
+		this.movedPostings = 0;
+		this.mergedPostings = 0;
+		this.positions = 0;
+		this.wordCount = 0;
+	}
+
+	/**
+	 * Counts one stem of the merge
+	 *
+	 * @param newStem whether the stem was not in the shared index before
+	 * @param moved whether the position list was moved over as a whole
+	 * @param positions positions in the shared index for the document afterwards
+	 */
+	void addStem(boolean newStem, boolean moved, int positions) {
+		if (newStem) {
+			this.newStems++;
+		}
+		if (moved) {
+			this.movedPostings++;
+		}
+		else {
+			this.mergedPostings++;
+		}
+		this.positions += positions;
+	}
+
+	/**
+	 * Set word count
+	 *
+	 * @param wordCount word count of the document
+	 */
+	void setWordCount(int wordCount) {
+		this.wordCount = wordCount;
+	}
+
+	/**
+	 * get location
+	 * @return the location of the document merged, or {@code null} if the local index was empty
+	 */
+	public String getLocation() {
+		return location;
+	}
+
+	/**
+	 * get new stems
+	 * @return the number of stems that were not in the shared index before
+	 */
+	public int getNewStems() {
+		return newStems;
+	}
+
+	/**
+	 * get moved postings
+	 * @return the number of position lists moved over as a whole
+	 */
+	public int getMovedPostings() {
+		return movedPostings;
+	}
+
+	/**
+	 * get merged postings
+	 * @return the number of position lists added to positions the shared index already had
+	 */
+	public int getMergedPostings() {
+		return mergedPostings;
+	}
+
+	/**
+	 * get positions
+	 * @return the number of positions in the shared index for the document afterwards
+	 */
+	public int getPositions() {
+		return positions;
+	}
+
+	/**
+	 * get word count
+	 * @return the word count of the document
+	 */
+	public int getWordCount() {
+		return wordCount;
+	}
+
+	/**
+	 * Determines whether every position list was moved over without having to
+	 * merge it with positions the shared index already had for the document
+	 *
+	 * @return {@code true} if nothing had to be merged position by position
+	 */
+	public boolean isClean() {
+		return mergedPostings == 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: %d new stems, %d moved, %d merged, %d positions, %d words",
+				location, newStems, movedPostings, mergedPostings, positions, wordCount);
+	}
+}
@@ -2,11 +2,20 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
 /**
  * 
  * @author UxDeveloperxU
@@ -18,6 +27,9 @@ public class MultithreadedIndexBuilder {
 	/** logger */
 	private static final Logger log = LogManager.getRootLogger();
 	
+	/** files larger than this many bytes are split into chunks of about this size and stemmed in parallel */
+	public static final long CHUNK_SIZE = 1 << 24;
+	
 	/**
 	 * Build the Multithreading index from found tasks
 	 * @param tasks work queue to provide tasks to
@@ -27,32 +39,180 @@ public class MultithreadedIndexBuilder {
 	 * @throws InterruptedException the work queue was interrupted
 	 */
 	public static WordIndex build(WorkQueue tasks, Path pathEntry) throws IOException, InterruptedException {
-		MultithreadedWordIndex index = new MultithreadedWordIndex();
-		MultithreadedIndexBuilder.findTasks(index, tasks, pathEntry);
-		tasks.finish();
+		return build(tasks, pathEntry, new MultithreadedWordIndex());
+	}
+	
+	/**
+	 * Build a thread safe index from found tasks
+	 * @param tasks work queue to provide tasks to
+	 * @param pathEntry file path to build the inverted index from
+	 * @param index thread safe word index to build, such as a {@link MultithreadedWordIndex} or {@link ShardedWordIndex}
+	 * @return completed word index
+	 * @throws IOException issues while reading file or attempting to open file
+	 * @throws InterruptedException the work queue was interrupted
+	 */
+	public static WordIndex build(WorkQueue tasks, Path pathEntry, WordIndex index) throws IOException, InterruptedException {
+		return build(tasks, pathEntry, TextFileFinder.list(pathEntry), index);
+	}
+	
+	/**
+	 * Build a thread safe index from some of the files found from a path
+	 * @param tasks work queue to provide tasks to
+	 * @param pathEntry file path the files were found from, used to relativize them
+	 * @param paths files to add to the index
+	 * @param index thread safe word index to build, such as a {@link MultithreadedWordIndex} or {@link ShardedWordIndex}
+	 * @return completed word index
+	 * @throws InterruptedException the work queue was interrupted
+	 */
+	public static WordIndex build(WorkQueue tasks, Path pathEntry, Collection<Path> paths, WordIndex index) throws InterruptedException {
+		//only wait for this build, not everything else in the queue
+		TaskGroup build = tasks.newGroup();
+		MultithreadedIndexBuilder.findTasks(index, build, paths, pathEntry);
+		build.finish();
 		return index;
 	}
 	
 	/**
-	 * A recursive call that creates a runnable for each file and
-	 * recurses on a directory to keep looking for files to create 
-	 * a runnable for
+	 * Build a word index without sharing anything while files are processed. Each
+	 * worker of the work queue adds every file it processes into its own word
+	 * index, so there is no locking while building. Once every file is done the
+	 * worker indexes are combined pairwise in parallel.
+	 * @param tasks work queue to provide tasks to
+	 * @param pathEntry file path to build the inverted index from
+	 * @return completed word index, which is not thread safe
+	 * @throws IOException issues while reading file or attempting to open file
+	 * @throws InterruptedException the work queue was interrupted
+	 */
+	public static WordIndex buildReduced(WorkQueue tasks, Path pathEntry) throws IOException, InterruptedException {
+		//one word index for each worker thread
+		Map<Thread, WordIndex> partials = new ConcurrentHashMap<>();
+		TaskGroup build = tasks.newGroup();
+		for (Path path: TextFileFinder.list(pathEntry)) {
+			if (Files.exists(path) && Files.isReadable(path) && TextFileFinder.isText.test(path)) {
+				build.executeOrRun(new MultithreadedIndexBuilder.WorkerTask(partials, path, pathEntry));
+			}
+		}
+		build.finish();
+		List<WordIndex> indexes = new ArrayList<>(partials.values());
+		if (indexes.isEmpty()) {
+			return new WordIndex();
+		}
+		log.debug("Combining " + indexes.size() + " worker indexes");
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, tasks.size()));
+		try {
+			return pool.invoke(new Reduction(indexes, 0, indexes.size()));
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Creates a runnable for each readable text file
 	 * @param index the word index
-	 * @param tasks given work queue to use
-	 * @param path file or directory to recurse on
+	 * @param tasks group of work for this build
+	 * @param paths files found from the path entry
 	 * @param pathEntry directory of paths or a single path object
-	 * @throws IOException issues while reading file or attempting to open file
 	 */
-	private static void findTasks(MultithreadedWordIndex index, WorkQueue tasks, Path pathEntry) throws IOException {
-		List<Path> paths = TextFileFinder.list(pathEntry);
+	private static void findTasks(WordIndex index, TaskGroup tasks, Collection<Path> paths, Path pathEntry) {
 		for (Path path: paths) {
 			if (Files.exists(path) && Files.isReadable(path) && TextFileFinder.isText.test(path)) {
-				Runnable processorTask = new MultithreadedIndexBuilder.ProcessorTask(index, path, pathEntry);
-				tasks.execute(processorTask);
+				Runnable processorTask = new MultithreadedIndexBuilder.ProcessorTask(index, tasks, path, pathEntry);
+				tasks.executeOrRun(processorTask);
 			}
 		}
 	}
 	
+	/**
+	 * Runnable for processing a given path into the word index of the worker
+	 * thread that runs it
+	 * @author Alex L Hanson
+	 */
+	public static class WorkerTask implements Runnable {
+		/** word index of each worker thread */
+		private final Map<Thread, WordIndex> partials;
+		/** path to find stems */
+		private final Path path;
+		/** path file or directory to relativize */
+		private final Path pathEntry;
+		/**
+		 * Constructor 
+		 * @param partials word index of each worker thread
+		 * @param path path to find stem
+		 * @param pathEntry path file or directory to relativize
+		 */
+		public WorkerTask(Map<Thread, WordIndex> partials, Path path, Path pathEntry) {
+			this.partials = partials;
+			this.path = path;
+			this.pathEntry = pathEntry;
+		}
+		
+		@Override
+		public void run() {
+			try {
+				//only this thread ever adds to its own word index
+				WordIndex local = partials.computeIfAbsent(Thread.currentThread(), thread -> new WordIndex());
+				//formatted file path
+				String correctedFilePath = TextFileFinder.pathRelativizer.apply(pathEntry, path);
+				IndexBuilder.parseFile(local, path, correctedFilePath);
+			} catch (NullPointerException e) {
+				log.warn("Either one of the paths given was null or the index could be null");
+			} catch (FileNotFoundException e) {
+				log.warn("file path was not found");
+			} catch (UnsupportedOperationException e) {
+				log.warn("Couldn't convert path to a file");
+			} catch (IOException e) {
+				log.warn("Error occurred creating tree map");
+			}
+		}
+	}
+	
+	/**
+	 * Combines a range of worker indexes by splitting it in half, combining both
+	 * halves in parallel and then moving the smaller result into the larger one
+	 */
+	private static class Reduction extends RecursiveTask<WordIndex> {
+		/** serial version */
+		private static final long serialVersionUID = 1L;
+		/** worker indexes to combine */
+		private final List<WordIndex> indexes;
+		/** first index of the range */
+		private final int start;
+		/** index after the range */
+		private final int end;
+		/**
+		 * Constructor
+		 * @param indexes worker indexes to combine
+		 * @param start first index of the range
+		 * @param end index after the range
+		 */
+		private Reduction(List<WordIndex> indexes, int start, int end) {
+			this.indexes = indexes;
+			this.start = start;
+			this.end = end;
+		}
+		
+		@Override
+		protected WordIndex compute() {
+			if (end - start == 1) {
+				WordIndex index = indexes.get(start);
+				index.compressPositions();
+				return index;
+			}
+			int middle = (start + end) >>> 1;
+			Reduction left = new Reduction(indexes, start, middle);
+			left.fork();
+			WordIndex right = new Reduction(indexes, middle, end).compute();
+			WordIndex combined = left.join();
+			//fewer postings to move when the smaller one is moved
+			if (combined.numElements() < right.numElements()) {
+				right.combine(combined);
+				return right;
+			}
+			combined.combine(right);
+			return combined;
+		}
+	}
+	
 	/**
 	 * Runnable for processing the word index for a given path
 	 * Note: could be a separate class but I would rather
@@ -60,8 +220,10 @@ public class MultithreadedIndexBuilder {
 	 * @author Alex L Hanson
 	 */
 	public static class ProcessorTask implements Runnable {
-		/** word index to add stems to */
-		private final MultithreadedWordIndex index;
+		/** thread safe word index to add stems to */
+		private final WordIndex index;
+		/** group to add the chunks of a large file to, or {@code null} to never split files */
+		private final TaskGroup tasks;
 		/** path to find stems */
 		private final Path path;
 		/** path file or directory to relativize */
@@ -72,8 +234,19 @@ public class MultithreadedIndexBuilder {
 		 * @param path path to find stem
 		 * @param pathEntry path file or directory to relativize
 		 */
-		public ProcessorTask(MultithreadedWordIndex index, Path path, Path pathEntry) {
+		public ProcessorTask(WordIndex index, Path path, Path pathEntry) {
+			this(index, null, path, pathEntry);
+		}
+		/**
+		 * Constructor for a task that splits a large file into chunks stemmed in parallel
+		 * @param index the word index
+		 * @param tasks group of work to add the chunks to
+		 * @param path path to find stem
+		 * @param pathEntry path file or directory to relativize
+		 */
+		public ProcessorTask(WordIndex index, TaskGroup tasks, Path path, Path pathEntry) {
 			this.index = index;
+			this.tasks = tasks;
 			this.path = path;
 			this.pathEntry = pathEntry;
 		}
@@ -82,16 +255,26 @@ public class MultithreadedIndexBuilder {
 		public void run() {
 			// get the unique stems and their positions for a given text file
 			try {
+				//large files are stemmed a chunk at a time by any of the workers
+				if (tasks != null && Files.size(path) > CHUNK_SIZE) {
+					long[] chunks = MappedTextStemmer.split(path, CHUNK_SIZE);
+					if (chunks.length > 2) {
+						ChunkedFile file = new ChunkedFile(index, TextFileFinder.pathRelativizer.apply(pathEntry, path), chunks.length - 1);
+						for (int chunk = 0; chunk < chunks.length - 1; chunk++) {
+							tasks.executeOrRun(new ChunkTask(file, path, chunk, chunks[chunk], chunks[chunk + 1]));
+						}
+						return;
+					}
+				}
 				//using a map is faster than using a WordIndex //but using a word index is more readable //so it is better to return the code to incorporate this initially
 				WordIndex local = new WordIndex();
 				//formatted file path
 				String correctedFilePath = TextFileFinder.pathRelativizer.apply(pathEntry, path);
 				//initialize file count //parsed file 
 				IndexBuilder.parseFile(local, path, correctedFilePath);
-				//add map to word index
-				index.addAll(local, correctedFilePath);
-				//add file count if necessary
-				index.addFileCount(correctedFilePath, local.getFileCount(correctedFilePath));
+				//move the stems and file count over to the word index
+				MergeSummary summary = index.merge(local);
+				log.debug(summary);
 			} catch (NullPointerException e) {
 				log.warn("Either one of the paths given was null or the index could be null");
 			} catch (FileNotFoundException e) {
@@ -103,4 +286,134 @@ public class MultithreadedIndexBuilder {
 			}
 		}
 	}
+	
+	/**
+	 * The chunks of a large file being stemmed in parallel. Each chunk is stemmed
+	 * into its own word index with positions counted from the start of the chunk.
+	 * Once the last one is done, the positions of each chunk are shifted by the
+	 * number of stems in all the chunks before it, so they are numbered the same as
+	 * if the whole file was stemmed in order, and the file is merged into the index.
+	 * @author Alex L Hanson
+	 */
+	private static class ChunkedFile {
+		/** thread safe word index to add stems to */
+		private final WordIndex index;
+		/** formatted file path */
+		private final String location;
+		/** word index of each chunk */
+		private final WordIndex[] parts;
+		/** number of stems in each chunk */
+		private final int[] counts;
+		/** number of chunks not done yet */
+		private final AtomicInteger remaining;
+		/** set once any chunk could not be read */
+		private volatile boolean failed;
+		/**
+		 * Constructor
+		 * @param index thread safe word index to add stems to
+		 * @param location formatted file path
+		 * @param chunks number of chunks
+		 */
+		private ChunkedFile(WordIndex index, String location, int chunks) {
+			this.index = index;
+			this.location = location;
+			this.parts = new WordIndex[chunks];
+			this.counts = new int[chunks];
+			this.remaining = new AtomicInteger(chunks);
+			this.failed = false;
+		}
+		
+		/**
+		 * Records a chunk as done, finishing the file if it was the last one
+		 * @param chunk which chunk is done
+		 * @param part word index of the chunk, or {@code null} if it failed
+		 * @param count number of stems in the chunk
+		 */
+		private void done(int chunk, WordIndex part, int count) {
+			parts[chunk] = part;
+			counts[chunk] = count;
+			//only ever set, since reading it back could lose another chunk's failure
+			if (part == null) {
+				failed = true;
+			}
+			//every earlier write is visible to the thread that counts down last
+			if (remaining.decrementAndGet() == 0) {
+				finish();
+			}
+		}
+		
+		/**
+		 * Shifts the positions of every chunk past the stems of the chunks before it
+		 * and merges the whole file into the index
+		 */
+		private void finish() {
+			if (failed) {
+				log.warn("Skipped " + location + " since a chunk of it could not be read");
+				return;
+			}
+			WordIndex local = new WordIndex();
+			int offset = 0;
+			for (int chunk = 0; chunk < parts.length; chunk++) {
+				WordIndex part = parts[chunk];
+				int shift = offset;
+				for (String stem : part.getElements()) {
+					part.getPositionList(stem, location).forEachPosition(position -> local.add(stem, location, position + shift));
+				}
+				parts[chunk] = null;
+				offset += counts[chunk];
+			}
+			local.addFileCount(location, offset);
+			MergeSummary summary = index.merge(local);
+			log.debug(summary);
+		}
+	}
+	
+	/**
+	 * Runnable for stemming one chunk of a large file
+	 * @author Alex L Hanson
+	 */
+	private static class ChunkTask implements Runnable {
+		/** the file the chunk belongs to */
+		private final ChunkedFile file;
+		/** path to find stems */
+		private final Path path;
+		/** which chunk of the file */
+		private final int chunk;
+		/** offset of the first byte of the chunk */
+		private final long start;
+		/** offset after the last byte of the chunk */
+		private final long end;
+		/**
+		 * Constructor
+		 * @param file the file the chunk belongs to
+		 * @param path path to find stems
+		 * @param chunk which chunk of the file
+		 * @param start offset of the first byte of the chunk
+		 * @param end offset after the last byte of the chunk
+		 */
+		private ChunkTask(ChunkedFile file, Path path, int chunk, long start, long end) {
+			this.file = file;
+			this.path = path;
+			this.chunk = chunk;
+			this.start = start;
+			this.end = end;
+		}
+		
+		@Override
+		public void run() {
+			WordIndex part = new WordIndex();
+			int count = 0;
+			boolean read = false;
+			try {
+				count = MappedTextStemmer.stemChunk(path, start, end, new SnowballStemmer(TextFileStemmer.DEFAULT),
+						(stem, position) -> part.add(stem, file.location, position));
+				read = true;
+			} catch (IOException e) {
+				log.warn("Error occurred reading a chunk of " + path);
+			} finally {
+				//the file is finished by whichever chunk is done last, even if this one failed
+				file.done(chunk, read ? part : null, count);
+			}
+		}
+	}
 }
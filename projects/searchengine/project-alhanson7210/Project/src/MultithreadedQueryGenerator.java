@@ -1,3 +1,4 @@
+import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -17,6 +18,8 @@ import org.apache.logging.log4j.Logger;
 public class MultithreadedQueryGenerator {
 	/** logger */
 	private static final Logger log = LogManager.getRootLogger();
+	/** number of query tasks handed to the work queue at once */
+	public static final int BATCH_SIZE = 64;
 	
 	/**
 	 * Generate queries from the index and those results to the inverted index
@@ -30,20 +33,46 @@ public class MultithreadedQueryGenerator {
 	 * @throws NullPointerException an argument was given as null
 	 * @throws InterruptedException the work queue was interrupted
 	 */
-	public static void generateQueries(MultithreadedWordIndex index, WorkQueue tasks, Path queryPath, boolean exactSearchFlag) 
+	public static void generateQueries(WordIndex index, WorkQueue tasks, Path queryPath, boolean exactSearchFlag) 
 			throws NullPointerException, FileNotFoundException, UnsupportedOperationException, IOException, InterruptedException {
-		//grab all the lines from a query path
-        List<String> lines = Files.readAllLines(queryPath, StandardCharsets.UTF_8);
-        log.info("Read all lines");
-        //loop through lines from the file of query strings to search for in word index
-        for (String line : lines) {
-            //make runnable
-        	if (QueryGenerator.lineIsValid(line)) {
-        		Runnable queryTask = new MultithreadedQueryGenerator.QueryTask(line, exactSearchFlag, index);
-        		tasks.execute(queryTask);
+		generateQueries(index, tasks, queryPath, exactSearchFlag, WordIndex.ALL_RESULTS);
+	}
+	
+	/**
+	 * Generate queries from the index and those results to the inverted index
+	 * @param index accumulating, thread safe index for query results
+	 * @param tasks work queue to provide tasks to
+	 * @param queryPath path used to generate query words from
+	 * @param exactSearchFlag delegate for deciding which search to use
+	 * @param limit number of results to keep for each query, or {@link WordIndex#ALL_RESULTS} to keep every result
+	 * @throws IOException issues while reading file or attempting to open file
+	 * @throws UnsupportedOperationException user error related to invalid object use
+	 * @throws FileNotFoundException invalid path or file doesn't exist on the file system
+	 * @throws NullPointerException an argument was given as null
+	 * @throws InterruptedException the work queue was interrupted
+	 */
+	public static void generateQueries(WordIndex index, WorkQueue tasks, Path queryPath, boolean exactSearchFlag, int limit) 
+			throws NullPointerException, FileNotFoundException, UnsupportedOperationException, IOException, InterruptedException {
+        //only wait for this batch, not everything else in the queue
+        TaskGroup batch = tasks.newGroup();
+        //read the lines as the queue takes them, a bounded queue holds the reading back
+        try (BufferedReader reader = Files.newBufferedReader(queryPath, StandardCharsets.UTF_8)) {
+        	List<Runnable> queryTasks = new ArrayList<>(BATCH_SIZE);
+        	String line;
+        	while ((line = reader.readLine()) != null) {
+        		//make runnable
+        		if (QueryGenerator.lineIsValid(line)) {
+        			queryTasks.add(new MultithreadedQueryGenerator.QueryTask(line, exactSearchFlag, limit, index));
+        		}
+        		if (queryTasks.size() == BATCH_SIZE) {
+        			batch.executeAllOrRun(queryTasks);
+        			queryTasks = new ArrayList<>(BATCH_SIZE);
+        		}
         	}
+        	batch.executeAllOrRun(queryTasks);
         }
-        tasks.finish();
+        log.info("Read all lines");
+        batch.finish();
         log.info("Queries...");
 	}
 	
@@ -52,12 +81,13 @@ public class MultithreadedQueryGenerator {
 	 * @param index accumulating, thread safe index for query results
 	 * @param line line from the file of query strings to search for in word index
 	 * @param exactSearchFlag delegate for deciding which search to use
+	 * @param limit number of results to keep, or {@link WordIndex#ALL_RESULTS} to keep every result
 	 * @throws NullPointerException an argument was given as null
 	 * @throws FileNotFoundException invalid path or file doesn't exist on the file system
 	 * @throws UnsupportedOperationException user error related to invalid object use
 	 * @throws IOException issues while reading file or attempting to open file
 	 */
-	public static void parseLine(MultithreadedWordIndex index, String line, boolean exactSearchFlag) throws NullPointerException, FileNotFoundException, UnsupportedOperationException, IOException {
+	public static void parseLine(WordIndex index, String line, boolean exactSearchFlag, int limit) throws NullPointerException, FileNotFoundException, UnsupportedOperationException, IOException {
 		//create a list //add all unique stems from the line
 		List<String> query = new ArrayList<>(TextFileStemmer.uniqueStems(line));
 		//sort stems
@@ -67,7 +97,7 @@ public class MultithreadedQueryGenerator {
 		//check for valid query string 
 		if (QueryGenerator.lineIsValid(queryString)) {
 			//reference for list of results //find exact or partial searches and get the results
-			List<ComparableSearchResult> queryResults = exactSearchFlag? index.exactSearch(query) : index.partialSearch(query);
+			List<ComparableSearchResult> queryResults = exactSearchFlag? index.exactSearch(query, limit) : index.partialSearch(query, limit);
 			//add exact or partial search to queries found
 			index.addQueryListing(queryString, queryResults);
 		}
@@ -84,18 +114,22 @@ public class MultithreadedQueryGenerator {
 		private final String line;
 		/** search flag for exact or partial search */
 		private final boolean exactSearchFlag;
+		/** number of results to keep */
+		private final int limit;
 		/** word index to add stems to */
-		private final MultithreadedWordIndex index;
+		private final WordIndex index;
 
 		/**
 		 * Constructor
 		 * @param line line from query file to parse
 		 * @param exactSearchFlag search flag for exact or partial search
-		 * @param index word index map from the given MultithreadedWordIndex
+		 * @param limit number of results to keep, or {@link WordIndex#ALL_RESULTS} to keep every result
+		 * @param index thread safe word index, either a MultithreadedWordIndex or a FrozenWordIndex
 		 */
-		public QueryTask (String line, boolean exactSearchFlag, MultithreadedWordIndex index) {
+		public QueryTask (String line, boolean exactSearchFlag, int limit, WordIndex index) {
 			this.line = line;
 			this.exactSearchFlag = exactSearchFlag;
+			this.limit = limit;
 			this.index = index;
 		}
 
@@ -103,7 +137,7 @@ public class MultithreadedQueryGenerator {
 		public void run() {
 			try {
 				//check line
-				parseLine(index, line, exactSearchFlag);
+				parseLine(index, line, exactSearchFlag, limit);
 			} catch (NullPointerException e) {
 				log.warn("Either the path given was null, the query line, or the index could be null");
 			} catch (FileNotFoundException e) {
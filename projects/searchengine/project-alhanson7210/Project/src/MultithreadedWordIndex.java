@@ -1,13 +1,22 @@
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
+import java.util.function.Supplier;
 
 /**
  * A special type of {@link WordIndex} that indexes the locations from a file to the
- * stems found in a multithreaded fashion.
+ * stems found in a multithreaded fashion. Searches read the latest snapshot
+ * with no locks at all while its version shows nothing changed since it was
+ * frozen. Otherwise they take the read locks, as lookups do, since a writer can
+ * be rebalancing the trees and growing the arrays they walk, so only the
+ * constant time getters read the live index optimistically. Readers that walk
+ * the whole index should use {@link #snapshot()} instead.
+ * Removed documents are compacted away on the work queue given to
+ * {@link #setCompactionQueue(WorkQueue)}, a batch of stems per write lock.
  *
  * @author CS 212 Software Development
  * @author University of San Francisco
@@ -22,6 +31,12 @@ public class MultithreadedWordIndex extends WordIndex {
 	public ReadWriteLock countLock;
 	/** lock for wordIndex that stores all collected stems */
 	public ReadWriteLock queryLock;
+	/** latest frozen copy for readers that walk the whole index */
+	private final SnapshotCache snapshots;
+	/** compacts removed documents in the background */
+	private final CompactionScheduler compactions;
+	/** most stems purged while holding the write lock once */
+	public static final int COMPACTION_BATCH = 1 << 10;
 	/** multithreading default */
 	public static final int MULTITHREAD_DEFAULT = 5;
 	/** single thread default */
@@ -31,42 +46,73 @@ public class MultithreadedWordIndex extends WordIndex {
 	 */
 	public MultithreadedWordIndex() {
 		super();
-		this.indexLock = new ReadWriteLock();
-		this.countLock = new ReadWriteLock();
-		this.queryLock = new ReadWriteLock();
-		
+		//fair, so a steady stream of searches cannot keep merges out
+		this.indexLock = new ReadWriteLock(true);
+		this.countLock = new ReadWriteLock(true);
+		this.queryLock = new ReadWriteLock(true);
+		this.snapshots = new SnapshotCache();
+		this.compactions = new CompactionScheduler();
 	}
 	
 	/*
-	 * Finds all exact matches and generates a list of search results
+	 * Finds all exact matches and generates a list of only the best search results
 	 * 
 	 * @param queryWords list of unique query searches
+	 * @param limit number of results to keep, or {@link #ALL_RESULTS} to keep every result
 	 * 
-	 * @return a sorted list of comparable search results
+	 * @return a sorted list of at most limit comparable search results
 	 */
 	@Override
-	public List<ComparableSearchResult> exactSearch(List<String> queryWords) {
-		indexLock.readLock().lock();
-		try {
-			return super.exactSearch(queryWords);
-		} finally {
-			indexLock.readLock().unlock();
+	public List<ComparableSearchResult> exactSearch(List<String> queryWords, int limit) {
+		FrozenWordIndex frozen = currentSnapshot();
+		if (frozen != null) {
+			return frozen.exactSearch(queryWords, limit);
 		}
+		return readIndexAndCounts(() -> super.exactSearch(queryWords, limit));
 	}
 	
 	/**
-	 * Finds all partial matches and generates a list of search results
+	 * Finds all partial matches and generates a list of only the best search results
 	 * 
 	 * @param queryWords list of unique query searches
+	 * @param limit number of results to keep, or {@link #ALL_RESULTS} to keep every result
 	 * 
-	 * @return a sorted list of comparable search results
+	 * @return a sorted list of at most limit comparable search results
 	 */
 	@Override
-	public List<ComparableSearchResult> partialSearch(List<String> queryWords) {
+	public List<ComparableSearchResult> partialSearch(List<String> queryWords, int limit) {
+		FrozenWordIndex frozen = currentSnapshot();
+		if (frozen != null) {
+			return frozen.partialSearch(queryWords, limit);
+		}
+		return readIndexAndCounts(() -> super.partialSearch(queryWords, limit));
+	}
+	
+	/**
+	 * Gets the latest snapshot if it still holds exactly what this index does,
+	 * freezing one if nothing changed for a while
+	 * 
+	 * @return a frozen copy searches can read without locking, or {@code null} if they have to lock
+	 */
+	private FrozenWordIndex currentSnapshot() {
+		return snapshots.current(() -> freezeLocked(this::freezeCopy));
+	}
+	
+	/**
+	 * Reads from both the index and the word counts holding both read locks,
+	 * taken in the usual order so it cannot deadlock with a writer
+	 * 
+	 * @param <T> the type of value read
+	 * @param reader what to read
+	 * @return the value read
+	 */
+	private <T> T readIndexAndCounts(Supplier<T> reader) {
 		indexLock.readLock().lock();
+		countLock.readLock().lock();
 		try {
-			return super.partialSearch(queryWords);
+			return reader.get();
 		} finally {
+			countLock.readLock().unlock();
 			indexLock.readLock().unlock();
 		}
 	}
@@ -87,6 +133,26 @@ public class MultithreadedWordIndex extends WordIndex {
 		try {
 			return super.add(stem, filePath, position);
 		} finally {
+			snapshots.advance();
+			indexLock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Attempts to add all positions of a stem from a given file path
+	 * 
+	 * @param stem the element found
+	 * @param filePath file path to which the stem was found in
+	 * @param positions list of the positions found for a stem
+	 * @return boolean if all were added
+	 */
+	@Override
+	public boolean addAll(String stem, String filePath, Collection<Integer> positions) {
+		indexLock.writeLock().lock();
+		try {
+			return super.addAll(stem, filePath, positions);
+		} finally {
+			snapshots.advance();
 			indexLock.writeLock().unlock();
 		}
 	}
@@ -102,8 +168,203 @@ public class MultithreadedWordIndex extends WordIndex {
 		try {
 			return super.addAll(local, correctedFilePath);
 		} finally {
+			snapshots.advance();
+			indexLock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Moves everything from a word index built for a single document into this
+	 * one. The local position lists are compressed before the locks are taken, so
+	 * only the moving is done while every other thread waits.
+	 * 
+	 * @param local word index with the stems of a single document
+	 * @return a summary of what was moved over
+	 * @throws IllegalArgumentException the local index has more than one document
+	 */
+	@Override
+	public MergeSummary merge(WordIndex local) throws IllegalArgumentException {
+		//local to the calling thread, so no lock is needed
+		local.compressPositions();
+		indexLock.writeLock().lock();
+		countLock.writeLock().lock();
+		try {
+			return super.merge(local);
+		} finally {
+			snapshots.advance();
+			countLock.writeLock().unlock();
+			indexLock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Moves everything from another word index into this one. The other position
+	 * lists are compressed before the locks are taken.
+	 * 
+	 * @param other word index to move everything from
+	 */
+	@Override
+	public void combine(WordIndex other) {
+		//not shared with other threads, so no lock is needed
+		other.compressPositions();
+		indexLock.writeLock().lock();
+		countLock.writeLock().lock();
+		try {
+			super.combine(other);
+		} finally {
+			snapshots.advance();
+			countLock.writeLock().unlock();
+			indexLock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Removes a document from the index, compacting in the background once
+	 * enough documents were removed
+	 * 
+	 * @param location file path or url of the document
+	 * @return {@code true} if the document was in the index
+	 */
+	@Override
+	public boolean remove(String location) {
+		boolean found;
+		indexLock.writeLock().lock();
+		countLock.writeLock().lock();
+		try {
+			found = tombstone(location);
+		} finally {
+			snapshots.advance();
+			countLock.writeLock().unlock();
+			indexLock.writeLock().unlock();
+		}
+		compactions.request(this);
+		return found;
+	}
+	
+	/**
+	 * Replaces a document with the stems of a word index built for it alone.
+	 * Readers see either the old document or the new one, never both or neither.
+	 * 
+	 * @param location file path or url of the document
+	 * @param local word index with the new stems of the document, or no document if it has none
+	 * @return a summary of what was moved over
+	 * @throws IllegalArgumentException the local index has another document
+	 */
+	@Override
+	public MergeSummary replace(String location, WordIndex local) throws IllegalArgumentException {
+		checkReplacement(location, local);
+		//local to the calling thread, so no lock is needed
+		local.compressPositions();
+		MergeSummary summary;
+		indexLock.writeLock().lock();
+		countLock.writeLock().lock();
+		try {
+			tombstone(location);
+			summary = super.merge(local);
+		} finally {
+			snapshots.advance();
+			countLock.writeLock().unlock();
 			indexLock.writeLock().unlock();
 		}
+		compactions.request(this);
+		return summary;
+	}
+	
+	/**
+	 * Copies out how much the index, count and query locks have been used
+	 * 
+	 * @return the read and write statistics of each lock by its name
+	 */
+	@Override
+	public Map<String, List<LockStatistics>> lockStatistics() {
+		Map<String, List<LockStatistics>> statistics = super.lockStatistics();
+		addLockStatistics(statistics, "indexLock", indexLock);
+		addLockStatistics(statistics, "countLock", countLock);
+		addLockStatistics(statistics, "queryLock", queryLock);
+		return statistics;
+	}
+	
+	/**
+	 * Sets the work queue compactions are run on, so a removal never waits for one
+	 * 
+	 * @param tasks work queue to compact on, or {@code null} to compact in the removing thread
+	 */
+	@Override
+	public void setCompactionQueue(WorkQueue tasks) {
+		compactions.setQueue(tasks);
+	}
+	
+	/**
+	 * Purges the postings of removed documents a batch of stems at a time, only
+	 * holding the write lock for one batch so searches can get in between. The
+	 * tombstones are still consulted until every batch is done, so readers never
+	 * see a removed document in the meantime.
+	 * 
+	 * @return the number of removed documents purged
+	 */
+	@Override
+	public int compact() {
+		//one compaction at a time, so each tombstone is only counted as purged once
+		synchronized (compactions) {
+			BitSet dead;
+			int pending;
+			indexLock.readLock().lock();
+			try {
+				dead = removedDocuments();
+				pending = super.numRemoved();
+			} finally {
+				indexLock.readLock().unlock();
+			}
+			String next = "";
+			while (pending > 0 && next != null) {
+				indexLock.writeLock().lock();
+				try {
+					next = purge(next, COMPACTION_BATCH, dead);
+				} finally {
+					indexLock.writeLock().unlock();
+				}
+			}
+			indexLock.writeLock().lock();
+			countLock.writeLock().lock();
+			try {
+				compacted(pending);
+			} finally {
+				countLock.writeLock().unlock();
+				indexLock.writeLock().unlock();
+			}
+			return pending;
+		}
+	}
+	
+	/**
+	 * Determines whether a document id was removed
+	 * 
+	 * @param document id from the document dictionary
+	 * @return {@code true} if the document was removed or replaced
+	 */
+	@Override
+	public boolean isRemoved(int document) {
+		return indexLock.optimisticRead(() -> super.isRemoved(document));
+	}
+	
+	/**
+	 * Returns the number of removed documents whose postings are still stored
+	 * 
+	 * @return the number of tombstones
+	 */
+	@Override
+	public int numRemoved() {
+		return indexLock.optimisticRead(() -> super.numRemoved());
+	}
+	
+	/**
+	 * Returns the share of the documents with stored postings that are tombstones
+	 * 
+	 * @return a ratio from 0 to 1
+	 */
+	@Override
+	public double tombstoneRatio() {
+		return indexLock.optimisticRead(() -> super.tombstoneRatio());
 	}
 	
 	/**
@@ -114,12 +375,15 @@ public class MultithreadedWordIndex extends WordIndex {
 	 */
 	@Override
 	public final void addFileCount(String correctedPath, int count) {
-		//Adds the completed file count
+		//Adds the completed file count //the document id lives with the index
+		indexLock.writeLock().lock();
 		countLock.writeLock().lock();
 		try {
 			super.addFileCount(correctedPath, count);
 		} finally {
+			snapshots.advance();
 			countLock.writeLock().unlock();
+			indexLock.writeLock().unlock();
 		}
 	}
 	
@@ -134,6 +398,7 @@ public class MultithreadedWordIndex extends WordIndex {
 		try {
 			super.addQueryListing(queryString, queryResults);
 		} finally {
+			snapshots.advance();
 			queryLock.writeLock().unlock();
 		}
 	}
@@ -216,11 +481,79 @@ public class MultithreadedWordIndex extends WordIndex {
 	 * @return file count if word count contains the the path or 0
 	 */
 	public int getFileCount(String correctedPath) {
+		return readIndexAndCounts(() -> super.getFileCount(correctedPath));
+	}
+	
+	/**
+	 * Gets the file count of a document id
+	 *
+	 * @param document id from the document dictionary
+	 * @return file count if word count contains the document or 0
+	 */
+	@Override
+	public int getFileCount(int document) {
+		return countLock.optimisticRead(() -> super.getFileCount(document));
+	}
+	
+	/**
+	 * Gets the file path or url of a document id
+	 *
+	 * @param document id from the document dictionary
+	 * @return the file path or url
+	 */
+	@Override
+	public String getLocation(int document) {
+		return indexLock.optimisticRead(() -> super.getLocation(document));
+	}
+	
+	/**
+	 * Gets the postings of a stem, which should be treated as read only
+	 *
+	 * @param stem the element to lookup
+	 * @return the postings of the stem or {@code null} if it is not in the index
+	 */
+	@Override
+	public PostingList getPostings(String stem) {
+		indexLock.readLock().lock();
+		try {
+			return super.getPostings(stem);
+		} finally {
+			indexLock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Gets a cursor over a copy of the postings of a stem, since the index can
+	 * change once the locks are released.
+	 *
+	 * @param stem the element to lookup
+	 * @return a cursor over the postings, with no postings if the stem is not in the index
+	 */
+	@Override
+	public PostingsCursor postings(String stem) {
+		indexLock.readLock().lock();
 		countLock.readLock().lock();
 		try {
-			return super.getFileCount(correctedPath);
+			return PostingsCursor.copyOf(super.postings(stem));
 		} finally {
 			countLock.readLock().unlock();
+			indexLock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Map of file paths to positions for a given stem, sorted by file path.
+	 *
+	 * @param stem the element found
+	 * @return an unmodifiable map of file paths to positions for a stem
+	 */
+	@Override
+	public Map<String, PositionList> getLocations(String stem) {
+		indexLock.readLock().lock();
+		try {
+			return super.getLocations(stem);
+		} finally {
+			indexLock.readLock().unlock();
 		}
 	}
 	
@@ -230,7 +563,7 @@ public class MultithreadedWordIndex extends WordIndex {
 	 * @return a set of file path entries for a stem
 	 */
 	@Override
-	public Set<Map.Entry<String,Collection<Integer>>> getFilePathEntries(String stem) {
+	public Set<Map.Entry<String, PositionList>> getFilePathEntries(String stem) {
 		indexLock.readLock().lock();
 		try {
 			return super.getFilePathEntries(stem);
@@ -256,64 +589,108 @@ public class MultithreadedWordIndex extends WordIndex {
 			indexLock.readLock().unlock();
 		}
 	}
-
+	
 	/**
-	 * Something to see how to handle the word index better in the driver
+	 * Returns the primitive positions stored in the index for the provided element
+	 * and file path. The list should be treated as read only.
+	 *
+	 * @param stem the element to lookup
+	 * @param filePath where element was found
 	 * 
-	 * @return wordIndex as a collection of entries
+	 * @return the positions stored for the element, or {@code null} if there are none
 	 */
 	@Override
-	public Collection<Entry<String, Map<String, Collection<Integer>>>> getUnmodifiableElements() {
+	public PositionList getPositionList(String stem, String filePath) {
 		indexLock.readLock().lock();
 		try {
-			return super.getUnmodifiableElements();
+			return super.getPositionList(stem, filePath);
 		} finally {
 			indexLock.readLock().unlock();
 		}
 	}
-	
+
 	/**
 	 * unmodifiable file count map
 	 * @return an unmodifiable file count map to write as json later
 	 */
 	@Override
 	public Map<String, Integer> getUnmodifiableFileCount() {
+		indexLock.readLock().lock();
 		countLock.readLock().lock();
 		try {
 			return super.getUnmodifiableFileCount();
 		} finally {
 			countLock.readLock().unlock();
+			indexLock.readLock().unlock();
 		}
 	}
 	
 	/**
-	 * Unmodifiable file count map
-	 * @return an unmodifiable file count map to to write as json later
+	 * Query elements found in search
+	 * @return Unmodifiable Query Elements
 	 */
 	@Override
-	public Map<String, Map<String, Collection<Integer>>> getUnmodifiableMap() {
-		indexLock.readLock().lock();
+	public Collection<Entry<String, List<ComparableSearchResult>>> getUnmodifiableQueryElements() {
+		queryLock.readLock().lock();
 		try {
-			return super.getUnmodifiableMap();
+			return super.getUnmodifiableQueryElements();
 		} finally {
-			indexLock.readLock().unlock();
+			queryLock.readLock().unlock();
 		}
 	}
+
+	/**
+	 * Returns the number of file paths or urls that have an id in the index.
+	 *
+	 * @return the number of documents, every id is less than this
+	 */
+	@Override
+	public int numDocuments() {
+		return indexLock.optimisticRead(() -> super.numDocuments());
+	}
 	
 	/**
-	 * Query elements found in search
-	 * @return Unmodifiable Query Elements
+	 * Copies this index into a read-optimized layout that can no longer be added
+	 * to. Meant to be called once building is done.
+	 * 
+	 * @return a frozen copy of this index
 	 */
 	@Override
-	public Collection<Entry<String, List<ComparableSearchResult>>> getUnmodifiableQueryElements() {
+	public FrozenWordIndex freeze() {
+		return freezeLocked(super::freeze);
+	}
+	
+	/**
+	 * Freezes this index holding every read lock
+	 * 
+	 * @param freezer copies this index into the frozen layout
+	 * @return a frozen copy of this index
+	 */
+	private FrozenWordIndex freezeLocked(Supplier<FrozenWordIndex> freezer) {
+		indexLock.readLock().lock();
+		countLock.readLock().lock();
 		queryLock.readLock().lock();
 		try {
-			return super.getUnmodifiableQueryElements();
+			return freezer.get();
 		} finally {
 			queryLock.readLock().unlock();
+			countLock.readLock().unlock();
+			indexLock.readLock().unlock();
 		}
 	}
-
+	
+	/**
+	 * Gets a frozen copy of this index, only freezing again if a writer changed
+	 * something since the last one and it is old enough. The position lists are
+	 * shared with the copy, since writers copy a shared list before adding to it.
+	 * 
+	 * @return a frozen copy that can be iterated without locking
+	 */
+	@Override
+	public FrozenWordIndex snapshot() {
+		return snapshots.get(() -> freezeLocked(this::freezeCopy));
+	}
+	
 	/**
 	 * Returns the number of stems stored in the index.
 	 *
@@ -347,6 +724,24 @@ public class MultithreadedWordIndex extends WordIndex {
 		}
 	}
 	
+	/**
+	 * Returns the number of documents a stem was found in
+	 *
+	 * @param stem the element to lookup
+	 *
+	 * @return 0 if the element is not in the index, otherwise the number of
+	 *         documents with positions for that element
+	 */
+	@Override
+	public int documentFrequency(String stem) {
+		indexLock.readLock().lock();
+		try {
+			return super.documentFrequency(stem);
+		} finally {
+			indexLock.readLock().unlock();
+		}
+	}
+	
 	/**
 	 * Returns the number of positions for a file path and given stem
 	 * 
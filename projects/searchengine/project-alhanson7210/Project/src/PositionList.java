@@ -0,0 +1,475 @@
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * A sorted, duplicate free list of word positions backed by a growable int array.
+ * Positions are expected to arrive in increasing order while a file is being parsed,
+ * so adding is an append in the common case. The list is still a {@link java.util.Collection}
+ * of {@link Integer} so it can be handed to code expecting boxed positions, but the
+ * primitive accessors should be preferred to avoid boxing every position.
+ *
+ * Once a file is done the list can be {@link #compress() compressed}: positions are
+ * stored as the gap from the previous position using variable length bytes (7 bits
+ * per byte, high bit set when more bytes follow). The size and last position are
+ * kept as a header so counting never decodes, and positions are only decoded when
+ * they are actually iterated or looked up.
+ *
+ * A list can be {@link #share() shared} with a frozen snapshot of a word index
+ * that is still being written to. A shared list is never changed again, so the
+ * snapshot can read it with no locks, and its owner copies it before adding to it.
+ *
+ * Warning: This class is not thread-safe. If multiple threads access this class
+ * concurrently, access must be synchronized externally.
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class PositionList extends AbstractCollection<Integer> {
+
+	/** starting capacity, most stems only appear a few times in a file */
+	private static final int DEFAULT_CAPACITY = 4;
+
+	/** bits of a position stored in each encoded byte */
+	private static final int VARINT_BITS = 7;
+
+	/** set on an encoded byte when more bytes of the same gap follow */
+	private static final int VARINT_MORE = 0x80;
+
+	/** positions stored in increasing order, or {@code null} once compressed */
+	private int[] positions;
+
+	/** gaps between positions as variable length bytes, or {@code null} until compressed */
+	private byte[] encoded;
+
+	/** number of bytes used in the encoded array */
+	private int encodedLength;
+
+	/** number of positions in the list */
+	private int size;
+
+	/** largest position in the list, kept so appends never decode */
+	private int last;
+
+	/** whether a frozen snapshot shares this list, after which it never changes */
+	private boolean shared;
+
+	/**
+	 * Creates an empty position list
+	 */
+	public PositionList() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty position list with room for a number of positions
+	 *
+	 * @param capacity initial number of positions to make room for
+	 */
+	public PositionList(int capacity) {
+		positions = new int[Math.max(capacity, 1)];
+		encoded = null;
+		encodedLength = 0;
+		size = 0;
+		last = 0;
+	}
+
+	/**
+	 * Creates a copy of another position list, in the same encoding and with no
+	 * unused capacity
+	 *
+	 * @param other the positions to copy
+	 */
+	public PositionList(PositionList other) {
+		positions = other.positions != null ? Arrays.copyOf(other.positions, Math.max(other.size, 1)) : null;
+		encoded = other.encoded != null ? Arrays.copyOf(other.encoded, Math.max(other.encodedLength, 1)) : null;
+		encodedLength = other.encodedLength;
+		size = other.size;
+		last = other.last;
+	}
+
+	/**
+	 * Adds a position to the list, keeping the list sorted and free of duplicates.
+	 * Appending a position larger than the last one does not need to search.
+	 *
+	 * @param position the position to add
+	 * @return {@code true} if the list changed as a result of the call
+	 */
+	public boolean add(int position) {
+		checkWritable();
+		//common case where positions arrive in order
+		if (size == 0 || position > last) {
+			if (encoded != null) {
+				appendGap(position - last);
+			}
+			else {
+				grow(size + 1);
+				positions[size] = position;
+			}
+			size++;
+			last = position;
+			return true;
+		}
+		if (position == last) {
+			return false;
+		}
+		//out of order positions need the plain array
+		inflate();
+		//out of order positions are inserted where they belong
+		int index = Arrays.binarySearch(positions, 0, size, position);
+		if (index >= 0) {
+			return false;
+		}
+		int insertion = -(index + 1);
+		grow(size + 1);
+		System.arraycopy(positions, insertion, positions, insertion + 1, size - insertion);
+		positions[insertion] = position;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Makes sure a list shared with a snapshot is not changed in place
+	 *
+	 * @throws IllegalStateException the list is shared
+	 */
+	private void checkWritable() throws IllegalStateException {
+		if (shared) {
+			throw new IllegalStateException("A shared position list has to be copied before it is changed");
+		}
+	}
+
+	/**
+	 * Adds a boxed position to the list
+	 *
+	 * @param position the position to add
+	 * @return {@code true} if the list changed as a result of the call
+	 * @throws NullPointerException position was null
+	 *
+	 * @see #add(int)
+	 */
+	@Override
+	public boolean add(Integer position) throws NullPointerException {
+		return add(position.intValue());
+	}
+
+	/**
+	 * Adds all positions from another position list
+	 *
+	 * @param other the positions to add
+	 * @return {@code true} if the list changed as a result of the call
+	 */
+	public boolean addAll(PositionList other) {
+		//nothing to add
+		if (other == null || other.size == 0) {
+			return false;
+		}
+		checkWritable();
+		//every position comes after this list so copy the whole array over
+		if (encoded == null && other.encoded == null && (size == 0 || other.positions[0] > last)) {
+			grow(size + other.size);
+			System.arraycopy(other.positions, 0, positions, size, other.size);
+			size += other.size;
+			last = other.last;
+			return true;
+		}
+		//otherwise fall back to adding one at a time
+		boolean changed = false;
+		PrimitiveIterator.OfInt iterator = other.iterator();
+		while (iterator.hasNext()) {
+			changed |= add(iterator.nextInt());
+		}
+		return changed;
+	}
+
+	/**
+	 * Gets the position stored at an index of the list
+	 *
+	 * @param index index within the list
+	 * @return the position at that index
+	 * @throws IndexOutOfBoundsException index is negative or not less than the size
+	 */
+	public int getPosition(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+		}
+		if (encoded == null) {
+			return positions[index];
+		}
+		//compressed positions have to be decoded up to the index
+		PrimitiveIterator.OfInt iterator = iterator();
+		for (int i = 0; i < index; i++) {
+			iterator.nextInt();
+		}
+		return iterator.nextInt();
+	}
+
+	/**
+	 * Gets the first (smallest) position
+	 *
+	 * @return the first position
+	 * @throws NoSuchElementException the list is empty
+	 */
+	public int first() throws NoSuchElementException {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return encoded == null ? positions[0] : iterator().nextInt();
+	}
+
+	/**
+	 * Gets the last (largest) position
+	 *
+	 * @return the last position
+	 * @throws NoSuchElementException the list is empty
+	 */
+	public int last() throws NoSuchElementException {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return last;
+	}
+
+	/**
+	 * Determines whether the position is stored in the list
+	 *
+	 * @param position the position to lookup
+	 * @return {@code true} if the position is stored in the list
+	 */
+	public boolean containsPosition(int position) {
+		if (size == 0 || position > last) {
+			return false;
+		}
+		if (encoded == null) {
+			return Arrays.binarySearch(positions, 0, size, position) >= 0;
+		}
+		//positions are sorted so decoding can stop once it passes the position
+		PrimitiveIterator.OfInt iterator = iterator();
+		while (iterator.hasNext()) {
+			int next = iterator.nextInt();
+			if (next >= position) {
+				return next == position;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determines whether a boxed position is stored in the list
+	 *
+	 * @param o the position to lookup
+	 * @return {@code true} if the position is stored in the list
+	 */
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof Integer ? containsPosition((Integer) o) : false;
+	}
+
+	/**
+	 * Copies the positions into a new array
+	 *
+	 * @return the positions in increasing order
+	 */
+	public int[] toIntArray() {
+		if (encoded == null) {
+			return Arrays.copyOf(positions, size);
+		}
+		int[] decoded = new int[size];
+		PrimitiveIterator.OfInt iterator = iterator();
+		for (int i = 0; i < size; i++) {
+			decoded[i] = iterator.nextInt();
+		}
+		return decoded;
+	}
+
+	/**
+	 * Performs an action on every position in increasing order without boxing
+	 *
+	 * @param action the action to perform
+	 */
+	public void forEachPosition(IntConsumer action) {
+		if (encoded == null) {
+			for (int i = 0; i < size; i++) {
+				action.accept(positions[i]);
+			}
+		}
+		else {
+			iterator().forEachRemaining(action);
+		}
+	}
+
+	/**
+	 * Switches the list to the compressed gap encoding. Positions can still be
+	 * appended afterwards, but adding a position out of order switches the list
+	 * back to a plain array.
+	 */
+	public void compress() {
+		if (encoded != null) {
+			return;
+		}
+		checkWritable();
+		//worst case is 5 bytes per position, trimmed once encoded
+		encoded = new byte[Math.max(size, 1)];
+		encodedLength = 0;
+		int previous = 0;
+		for (int i = 0; i < size; i++) {
+			appendGap(positions[i] - previous);
+			previous = positions[i];
+		}
+		positions = null;
+		trimToSize();
+	}
+
+	/**
+	 * Determines whether the list is stored with the compressed gap encoding
+	 *
+	 * @return {@code true} if the list is compressed
+	 */
+	public boolean isCompressed() {
+		return encoded != null;
+	}
+
+	/**
+	 * Marks the list as shared with a frozen snapshot. The unused capacity is let
+	 * go of first, since the list can no longer grow.
+	 *
+	 * @return this list
+	 */
+	public PositionList share() {
+		if (!shared) {
+			trimToSize();
+			shared = true;
+		}
+		return this;
+	}
+
+	/**
+	 * Determines whether a frozen snapshot shares the list, in which case it has
+	 * to be copied before it is changed
+	 *
+	 * @return {@code true} if the list is shared
+	 */
+	public boolean isShared() {
+		return shared;
+	}
+
+	/**
+	 * Releases any unused capacity once no more positions will be added
+	 */
+	public void trimToSize() {
+		checkWritable();
+		if (encoded != null) {
+			if (encoded.length > encodedLength) {
+				encoded = Arrays.copyOf(encoded, Math.max(encodedLength, 1));
+			}
+		}
+		else if (positions.length > size) {
+			positions = Arrays.copyOf(positions, Math.max(size, 1));
+		}
+	}
+
+	@Override
+	public PrimitiveIterator.OfInt iterator() {
+		if (encoded != null) {
+			return new PrimitiveIterator.OfInt() {
+				/** number of positions decoded so far */
+				private int next = 0;
+
+				/** offset of the next encoded byte */
+				private int offset = 0;
+
+				/** last position decoded */
+				private int previous = 0;
+
+				@Override
+				public boolean hasNext() {
+					return next < size;
+				}
+
+				@Override
+				public int nextInt() {
+					if (next >= size) {
+						throw new NoSuchElementException();
+					}
+					//read one gap, 7 bits at a time
+					int gap = 0;
+					int shift = 0;
+					byte current;
+					do {
+						current = encoded[offset++];
+						gap |= (current & (VARINT_MORE - 1)) << shift;
+						shift += VARINT_BITS;
+					} while ((current & VARINT_MORE) != 0);
+					next++;
+					previous += gap;
+					return previous;
+				}
+			};
+		}
+		return new PrimitiveIterator.OfInt() {
+			/** index of the next position */
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			@Override
+			public int nextInt() {
+				if (next >= size) {
+					throw new NoSuchElementException();
+				}
+				return positions[next++];
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Writes the gap to the next position as variable length bytes
+	 *
+	 * @param gap difference from the previous position
+	 */
+	private void appendGap(int gap) {
+		if (encodedLength + 5 > encoded.length) {
+			encoded = Arrays.copyOf(encoded, Math.max(encodedLength + 5, encoded.length * 2));
+		}
+		while ((gap & ~(VARINT_MORE - 1)) != 0) {
+			encoded[encodedLength++] = (byte) ((gap & (VARINT_MORE - 1)) | VARINT_MORE);
+			gap >>>= VARINT_BITS;
+		}
+		encoded[encodedLength++] = (byte) gap;
+	}
+
+	/**
+	 * Switches a compressed list back to a plain array of positions
+	 */
+	private void inflate() {
+		if (encoded != null) {
+			positions = toIntArray();
+			if (positions.length == 0) {
+				positions = new int[DEFAULT_CAPACITY];
+			}
+			encoded = null;
+			encodedLength = 0;
+		}
+	}
+
+	/**
+	 * Makes sure the array can hold a number of positions
+	 *
+	 * @param capacity number of positions needed
+	 */
+	private void grow(int capacity) {
+		if (capacity > positions.length) {
+			positions = Arrays.copyOf(positions, Math.max(capacity, positions.length * 2));
+		}
+	}
+}
@@ -0,0 +1,297 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The postings of a single stem: the document ids the stem was found in, each
+ * paired with the {@link PositionList} of where it was found. Document ids are
+ * kept in increasing order so lookups are a binary search, and a new document
+ * with the largest id so far is a plain append. The number of positions for each
+ * document and for the stem as a whole are kept as counts while positions are
+ * added, so they never have to be counted from the position lists.
+ *
+ * Warning: This class is not thread-safe. If multiple threads access this class
+ * concurrently, access must be synchronized externally.
+ *
+ * @see DocumentDictionary
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class PostingList {
+
+	/** starting capacity, most stems are only found in a few documents */
+	private static final int DEFAULT_CAPACITY = 2;
+
+	/** document ids in increasing order */
+	private int[] documents;
+
+	/** positions for the document id at the same index */
+	private PositionList[] positions;
+
+	/** number of positions for the document id at the same index */
+	private int[] frequencies;
+
+	/** number of positions over every document */
+	private int totalFrequency;
+
+	/** number of documents with postings */
+	private int size;
+
+	/**
+	 * Creates an empty posting list
+	 */
+	public PostingList() {
+		documents = new int[DEFAULT_CAPACITY];
+		positions = new PositionList[DEFAULT_CAPACITY];
+		frequencies = new int[DEFAULT_CAPACITY];
+		totalFrequency = 0;
+		size = 0;
+	}
+
+	/**
+	 * Gets the positions for a document. Positions should only be added through
+	 * this posting list so the counts stay correct.
+	 *
+	 * @param document document id
+	 * @return the positions or {@code null} if the document has none
+	 */
+	public PositionList get(int document) {
+		int index = indexOf(document);
+		return index >= 0 ? positions[index] : null;
+	}
+
+	/**
+	 * Adds a position for a document, adding an empty list if it has none yet
+	 *
+	 * @param document document id
+	 * @param position the position to add
+	 * @return {@code true} if the postings changed as a result of the call
+	 */
+	public boolean add(int document, int position) {
+		int index = indexOf(document);
+		if (index < 0) {
+			index = -(index + 1);
+			insert(index, document, new PositionList());
+		}
+		if (!writable(index).add(position)) {
+			return false;
+		}
+		frequencies[index]++;
+		totalFrequency++;
+		return true;
+	}
+
+	/**
+	 * Adds the positions for a document. If the document has no positions yet the
+	 * list is taken over by this posting list rather than copied, otherwise the
+	 * positions are added to the list already there.
+	 *
+	 * @param document document id
+	 * @param list the positions to add
+	 * @return {@code true} if the postings changed as a result of the call
+	 */
+	public boolean addAll(int document, PositionList list) {
+		int index = indexOf(document);
+		if (index < 0) {
+			insert(-(index + 1), document, list);
+			return true;
+		}
+		if (!writable(index).addAll(list)) {
+			return false;
+		}
+		//recount since some positions may have already been there
+		totalFrequency += positions[index].size() - frequencies[index];
+		frequencies[index] = positions[index].size();
+		return true;
+	}
+
+	/**
+	 * Compresses the positions of a document once they are done, copying them
+	 * first if a frozen snapshot shares them
+	 *
+	 * @param document document id
+	 */
+	public void compress(int document) {
+		int index = indexOf(document);
+		if (index >= 0 && !positions[index].isCompressed()) {
+			writable(index).compress();
+		}
+	}
+
+	/**
+	 * Compresses the positions of every document, copying those a frozen
+	 * snapshot shares first
+	 */
+	public void compressAll() {
+		for (int i = 0; i < size; i++) {
+			if (!positions[i].isCompressed()) {
+				writable(i).compress();
+			}
+		}
+	}
+
+	/**
+	 * Gets the positions at an index of the list to change them, replacing a list
+	 * a frozen snapshot shares with a copy first
+	 *
+	 * @param index index within the list
+	 * @return positions for the document at that index that can be changed
+	 */
+	private PositionList writable(int index) {
+		if (positions[index].isShared()) {
+			positions[index] = new PositionList(positions[index]);
+		}
+		return positions[index];
+	}
+
+	/**
+	 * Adds the positions for a document if the document has none yet. The list is
+	 * taken over by this posting list rather than copied.
+	 *
+	 * @param document document id
+	 * @param list the positions to take over
+	 * @return {@code true} if the positions were added
+	 */
+	public boolean putIfAbsent(int document, PositionList list) {
+		int index = indexOf(document);
+		if (index >= 0) {
+			return false;
+		}
+		insert(-(index + 1), document, list);
+		return true;
+	}
+
+	/**
+	 * Removes the postings of every document in a set, keeping the rest in order
+	 *
+	 * @param removed document ids to remove
+	 * @return the number of postings removed
+	 */
+	public int removeAll(BitSet removed) {
+		int kept = 0;
+		for (int i = 0; i < size; i++) {
+			if (removed.get(documents[i])) {
+				totalFrequency -= frequencies[i];
+				continue;
+			}
+			documents[kept] = documents[i];
+			positions[kept] = positions[i];
+			frequencies[kept] = frequencies[i];
+			kept++;
+		}
+		//let go of the removed position lists
+		Arrays.fill(positions, kept, size, null);
+		int count = size - kept;
+		size = kept;
+		return count;
+	}
+
+	/**
+	 * Determines whether a document has postings
+	 *
+	 * @param document document id
+	 * @return {@code true} if the document has postings
+	 */
+	public boolean contains(int document) {
+		return indexOf(document) >= 0;
+	}
+
+	/**
+	 * Gets the document id at an index of the list
+	 *
+	 * @param index index within the list
+	 * @return document id
+	 */
+	public int getDocument(int index) {
+		return documents[index];
+	}
+
+	/**
+	 * Gets the positions at an index of the list
+	 *
+	 * @param index index within the list
+	 * @return positions for the document at that index
+	 */
+	public PositionList getPositions(int index) {
+		return positions[index];
+	}
+
+	/**
+	 * Gets the number of positions at an index of the list
+	 *
+	 * @param index index within the list
+	 * @return number of positions for the document at that index
+	 */
+	public int getFrequency(int index) {
+		return frequencies[index];
+	}
+
+	/**
+	 * Gets the number of positions for a document
+	 *
+	 * @param document document id
+	 * @return number of positions or 0 if the document has none
+	 */
+	public int frequency(int document) {
+		int index = indexOf(document);
+		return index >= 0 ? frequencies[index] : 0;
+	}
+
+	/**
+	 * Returns the number of positions over every document
+	 *
+	 * @return total number of positions
+	 */
+	public int totalFrequency() {
+		return totalFrequency;
+	}
+
+	/**
+	 * Returns the number of documents with postings, the document frequency of the stem
+	 *
+	 * @return number of documents
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Finds where a document is or should be stored
+	 *
+	 * @param document document id
+	 * @return index of the document, or {@code -(insertion point) - 1} if it is missing
+	 */
+	private int indexOf(int document) {
+		//common case when building is the last document added
+		if (size > 0 && documents[size - 1] == document) {
+			return size - 1;
+		}
+		if (size == 0 || document > documents[size - 1]) {
+			return -(size + 1);
+		}
+		return Arrays.binarySearch(documents, 0, size, document);
+	}
+
+	/**
+	 * Inserts a document and its positions at an index
+	 *
+	 * @param index where to insert
+	 * @param document document id
+	 * @param list positions for the document
+	 */
+	private void insert(int index, int document, PositionList list) {
+		if (size == documents.length) {
+			documents = Arrays.copyOf(documents, size * 2);
+			positions = Arrays.copyOf(positions, size * 2);
+			frequencies = Arrays.copyOf(frequencies, size * 2);
+		}
+		System.arraycopy(documents, index, documents, index + 1, size - index);
+		System.arraycopy(positions, index, positions, index + 1, size - index);
+		System.arraycopy(frequencies, index, frequencies, index + 1, size - index);
+		documents[index] = document;
+		positions[index] = list;
+		frequencies[index] = list.size();
+		totalFrequency += list.size();
+		size++;
+	}
+}
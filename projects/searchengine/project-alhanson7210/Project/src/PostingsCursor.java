@@ -0,0 +1,146 @@
+import java.util.Arrays;
+
+/**
+ * Walks the postings of a single stem one document at a time, in increasing
+ * document id order. Each step gives the document id, how many times the stem
+ * was found in that document, and how many words the document has, which is
+ * everything needed to score a search result without looking anything else up.
+ *
+ * A cursor starts before the first posting, so {@link #next()} has to be called
+ * before reading the current posting.
+ *
+ * @see WordIndex#postings(String)
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public interface PostingsCursor {
+
+	/** a cursor with no postings, for stems that are not in the index */
+	public static final PostingsCursor EMPTY = new Empty();
+
+	/**
+	 * Copies the rest of a cursor, for handing postings out past a lock
+	 *
+	 * @param source cursor to copy from
+	 * @return a cursor over the copied postings
+	 */
+	public static PostingsCursor copyOf(PostingsCursor source) {
+		return new Copy(source);
+	}
+
+	/**
+	 * Moves to the next posting
+	 *
+	 * @return {@code true} if there was another posting
+	 */
+	public boolean next();
+
+	/**
+	 * Gets the document id of the current posting
+	 *
+	 * @return document id from the document dictionary
+	 */
+	public int docId();
+
+	/**
+	 * Gets the number of times the stem was found in the current document
+	 *
+	 * @return number of positions stored for the stem in the document
+	 */
+	public int termFrequency();
+
+	/**
+	 * Gets the number of words in the current document
+	 *
+	 * @return word count of the document or 0 if it has none
+	 */
+	public int docLength();
+
+	/**
+	 * Cursor with no postings, shared through {@link PostingsCursor#EMPTY}
+	 */
+	static final class Empty implements PostingsCursor {
+
+		/**
+		 * Use {@link PostingsCursor#EMPTY} instead
+		 */
+		private Empty() {
+		}
+
+		@Override
+		public boolean next() {
+			return false;
+		}
+
+		@Override
+		public int docId() {
+			throw new IllegalStateException("No current posting");
+		}
+
+		@Override
+		public int termFrequency() {
+			throw new IllegalStateException("No current posting");
+		}
+
+		@Override
+		public int docLength() {
+			throw new IllegalStateException("No current posting");
+		}
+	}
+
+	/**
+	 * Cursor over postings copied out of another cursor
+	 */
+	static final class Copy implements PostingsCursor {
+
+		/** document id, term frequency and document length of each posting */
+		private int[] postings;
+
+		/** number of postings copied */
+		private int size;
+
+		/** index of the current posting */
+		private int index;
+
+		/**
+		 * Copies the rest of another cursor
+		 *
+		 * @param source cursor to copy from
+		 */
+		private Copy(PostingsCursor source) {
+			postings = new int[3 * 4];
+			size = 0;
+			while (source.next()) {
+				if (3 * size + 3 > postings.length) {
+					postings = Arrays.copyOf(postings, postings.length * 2);
+				}
+				postings[3 * size] = source.docId();
+				postings[3 * size + 1] = source.termFrequency();
+				postings[3 * size + 2] = source.docLength();
+				size++;
+			}
+			index = -1;
+		}
+
+		@Override
+		public boolean next() {
+			return ++index < size;
+		}
+
+		@Override
+		public int docId() {
+			return postings[3 * index];
+		}
+
+		@Override
+		public int termFrequency() {
+			return postings[3 * index + 1];
+		}
+
+		@Override
+		public int docLength() {
+			return postings[3 * index + 2];
+		}
+	}
+}
@@ -0,0 +1,134 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Scores search results one document at a time by merging the postings of
+ * every stem a search matched in increasing document id order. A document is
+ * finished as soon as every cursor has moved past it, so a search only keeps
+ * its cursors around instead of a slot for every document in the index.
+ *
+ * @see PostingsCursor
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class PostingsMerger {
+
+	/** index used to look up the location of each result */
+	private final WordIndex index;
+
+	/** cursors with postings left, as a heap with the lowest document id first */
+	private PostingsCursor[] cursors;
+
+	/** number of cursors in the heap */
+	private int size;
+
+	/**
+	 * Constructor
+	 *
+	 * @param index the word index, used to look up the location of new results
+	 */
+	public PostingsMerger(WordIndex index) {
+		this.index = index;
+		this.cursors = new PostingsCursor[8];
+		this.size = 0;
+	}
+
+	/**
+	 * Adds the postings of a stem the search matched. A stem matched more than
+	 * once is added once for every match.
+	 *
+	 * @param postings cursor over the postings of the stem, before its first posting
+	 */
+	public void add(PostingsCursor postings) {
+		//stems without postings never make it into the heap
+		if (!postings.next()) {
+			return;
+		}
+		if (size == cursors.length) {
+			cursors = Arrays.copyOf(cursors, size * 2);
+		}
+		cursors[size] = postings;
+		siftUp(size++);
+	}
+
+	/**
+	 * Scores every document found in the postings added, using up the cursors
+	 *
+	 * @param limit number of results to keep, or {@link WordIndex#ALL_RESULTS} to keep every result
+	 * @return the best results, sorted
+	 */
+	public List<ComparableSearchResult> results(int limit) {
+		//results are offered as soon as they are final, so only the best are held
+		ComparableSearchResult.TopResults results = new ComparableSearchResult.TopResults(limit);
+		while (size > 0) {
+			int document = cursors[0].docId();
+			//number of words in file
+			int length = cursors[0].docLength();
+			int count = 0;
+			//add the postings of every stem found in this document
+			while (size > 0 && cursors[0].docId() == document) {
+				count += cursors[0].termFrequency();
+				advance();
+			}
+			results.offer(new ComparableSearchResult(index.getLocation(document), count, (double) count / (length == 0 ? 1 : length)));
+		}
+		return results.sorted();
+	}
+
+	/**
+	 * Moves the cursor at the top of the heap to its next posting, dropping it
+	 * once it has none left
+	 */
+	private void advance() {
+		if (!cursors[0].next()) {
+			cursors[0] = cursors[--size];
+			cursors[size] = null;
+		}
+		siftDown(0);
+	}
+
+	/**
+	 * Moves a cursor up the heap until its parent is not past it
+	 *
+	 * @param i position of the cursor in the heap
+	 */
+	private void siftUp(int i) {
+		PostingsCursor cursor = cursors[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (cursors[parent].docId() <= cursor.docId()) {
+				break;
+			}
+			cursors[i] = cursors[parent];
+			i = parent;
+		}
+		cursors[i] = cursor;
+	}
+
+	/**
+	 * Moves a cursor down the heap until neither child is behind it
+	 *
+	 * @param i position of the cursor in the heap
+	 */
+	private void siftDown(int i) {
+		if (i >= size) {
+			return;
+		}
+		PostingsCursor cursor = cursors[i];
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			int right = child + 1;
+			if (right < size && cursors[right].docId() < cursors[child].docId()) {
+				child = right;
+			}
+			if (cursor.docId() <= cursors[child].docId()) {
+				break;
+			}
+			cursors[i] = cursors[child];
+			i = child;
+		}
+		cursors[i] = cursor;
+	}
+}
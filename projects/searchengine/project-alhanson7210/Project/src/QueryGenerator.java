@@ -43,6 +43,21 @@ public class QueryGenerator {
 	 * @throws NullPointerException an argument was given as null
 	 */
 	public static void generateQueries(WordIndex index, Path queryPath, boolean exactSearchFlag) throws NullPointerException, FileNotFoundException, UnsupportedOperationException, IOException {
+		generateQueries(index, queryPath, exactSearchFlag, WordIndex.ALL_RESULTS);
+	}
+	
+	/**
+	 * Generate queries from the index and those results to the inverted index
+	 * @param index accumulating, inverted index for query results
+	 * @param queryPath path used to generate query words from
+	 * @param exactSearchFlag delegate for deciding which search to use
+	 * @param limit number of results to keep for each query, or {@link WordIndex#ALL_RESULTS} to keep every result
+	 * @throws IOException issues while reading file or attempting to open file
+	 * @throws UnsupportedOperationException user error related to invalid object use
+	 * @throws FileNotFoundException invalid path or file doesn't exist on the file system
+	 * @throws NullPointerException an argument was given as null
+	 */
+	public static void generateQueries(WordIndex index, Path queryPath, boolean exactSearchFlag, int limit) throws NullPointerException, FileNotFoundException, UnsupportedOperationException, IOException {
 		//grab all the lines from a query path
 		List<String> lines = Files.readAllLines(queryPath, StandardCharsets.UTF_8);
 		log.info("Read all lines");
@@ -50,7 +65,7 @@ public class QueryGenerator {
 		for (String line : lines) {
 			//check line
 			if (lineIsValid(line)) {
-				parseLine(index, line, exactSearchFlag);
+				parseLine(index, line, exactSearchFlag, limit);
 			}
 		}
 		log.info("Queries...");
@@ -67,6 +82,21 @@ public class QueryGenerator {
 	 * @throws IOException issues while reading file or attempting to open file
 	 */
 	public static void parseLine(WordIndex index, String line, boolean exactSearchFlag) throws NullPointerException, FileNotFoundException, UnsupportedOperationException, IOException {
+		parseLine(index, line, exactSearchFlag, WordIndex.ALL_RESULTS);
+	}
+	
+	/**
+	 * Create a list of unique stems from the line, sort the stems, and find exact or partial searches and get the results
+	 * @param index accumulating, inverted index for query results
+	 * @param line information to be stemmed
+	 * @param exactSearchFlag delegate for deciding which search to use
+	 * @param limit number of results to keep, or {@link WordIndex#ALL_RESULTS} to keep every result
+	 * @throws NullPointerException an argument was given as null
+	 * @throws FileNotFoundException invalid path or file doesn't exist on the file system
+	 * @throws UnsupportedOperationException user error related to invalid object use
+	 * @throws IOException issues while reading file or attempting to open file
+	 */
+	public static void parseLine(WordIndex index, String line, boolean exactSearchFlag, int limit) throws NullPointerException, FileNotFoundException, UnsupportedOperationException, IOException {
 		//create a list //add all unique stems from the line
 		List<String> query = new ArrayList<>(TextFileStemmer.uniqueStems(line));
 		//sort stems
@@ -76,7 +106,7 @@ public class QueryGenerator {
 		//check for valid query string 
 		if (lineIsValid(queryString)) {
 			//reference for list of results //find exact or partial searches and get the results
-			List<ComparableSearchResult> queryResults = exactSearchFlag? index.exactSearch(query) : index.partialSearch(query);
+			List<ComparableSearchResult> queryResults = exactSearchFlag? index.exactSearch(query, limit) : index.partialSearch(query, limit);
 			//add exact or partial search to queries found
 			index.addQueryListing(queryString, queryResults);
 		}
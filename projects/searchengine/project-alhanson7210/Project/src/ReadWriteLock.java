@@ -1,4 +1,8 @@
+import java.lang.invoke.VarHandle;
 import java.util.ConcurrentModificationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
 
 /**
  * Maintains a pair of associated locks, one for read-only operations and one for writing. The read
@@ -6,6 +10,19 @@ import java.util.ConcurrentModificationException;
  * write lock is exclusive, but also tracks which thread holds the lock. If unlock is called by any
  * other thread, a {@link ConcurrentModificationException} is thrown.
  *
+ * Reads can also be done optimistically without locking at all, in the style of
+ * {@link java.util.concurrent.locks.StampedLock}. Every time the write lock is
+ * taken or released a version is bumped, so a reader can remember the version
+ * before reading and check afterwards that no writer came in between. If one did,
+ * the read is thrown away and done again under the read lock.
+ *
+ * A fair lock makes new readers wait behind any writer already waiting, so a
+ * steady stream of readers cannot keep a writer out forever. Readers are
+ * reentrant either way: a thread that already holds the read lock, or the write
+ * lock, can always take the read lock again. Both locks can be tried with a
+ * timeout, and each mode keeps counts of how often it was given, how long
+ * threads waited for it and the longest it was held.
+ *
  * @see SimpleLock
  */
 public class ReadWriteLock {
@@ -22,6 +39,27 @@ public class ReadWriteLock {
 	/** The number of active writers; */
 	private int writers;
 
+	/** The number of writers waiting for the lock. */
+	private int waitingWriters;
+
+	/** Whether new readers wait behind waiting writers. */
+	private final boolean fair;
+
+	/** How many times the current thread holds the read lock and since when. */
+	private final ThreadLocal<ReadHold> readHolds;
+
+	/** Statistics for the read lock. */
+	private final Counters readCounters;
+
+	/** Statistics for the write lock. */
+	private final Counters writeCounters;
+
+	/** No stamp is ever this value, returned when an optimistic read is not possible */
+	public static final long NO_STAMP = 0;
+
+	/** Bumped when the write lock is taken and released, so it is odd while a writer is active */
+	private volatile long version;
+
 	/**
 	 * The lock object used for synchronized access of readers and writers. For security reasons, a
 	 * separate private final lock object is used.
@@ -32,9 +70,24 @@ public class ReadWriteLock {
 	private final Object lock;
 
 	/**
-	 * Initializes a new simple read/write lock.
+	 * Initializes a new simple read/write lock that lets readers in whenever no
+	 * writer is active.
 	 */
 	public ReadWriteLock() {
+		this(false);
+	}
+
+	/**
+	 * Initializes a new simple read/write lock.
+	 *
+	 * @param fair whether new readers wait behind waiting writers
+	 */
+	public ReadWriteLock(boolean fair) {
+		this.fair = fair;
+		readHolds = ThreadLocal.withInitial(ReadHold::new);
+		readCounters = new Counters("read");
+		writeCounters = new Counters("write");
+
 		readerLock = new ReadLock();
 		writerLock = new WriteLock();
 
@@ -42,6 +95,8 @@ public class ReadWriteLock {
 
 		readers = 0;
 		writers = 0;
+		waitingWriters = 0;
+		version = 2;
 	}
 
 	/**
@@ -82,6 +137,133 @@ public class ReadWriteLock {
 		}
 	}
 
+	/**
+	 * Returns the number of writers waiting for the lock.
+	 * @return the number of waiting writers
+	 */
+	public final int waitingWriters() {
+		synchronized (lock) {
+			return waitingWriters;
+		}
+	}
+
+	/**
+	 * Returns whether new readers wait behind waiting writers.
+	 * @return true if the lock is fair
+	 */
+	public final boolean isFair() {
+		return fair;
+	}
+
+	/**
+	 * Returns the statistics of the read lock so far.
+	 * @return a copy of the read lock statistics
+	 */
+	public final LockStatistics readStatistics() {
+		synchronized (lock) {
+			return readCounters.toStatistics();
+		}
+	}
+
+	/**
+	 * Returns the statistics of the write lock so far.
+	 * @return a copy of the write lock statistics
+	 */
+	public final LockStatistics writeStatistics() {
+		synchronized (lock) {
+			return writeCounters.toStatistics();
+		}
+	}
+
+	/**
+	 * Starts an optimistic read. Nothing is locked, so whatever is read afterwards
+	 * has to be checked with {@link #validate(long)} before it is used.
+	 *
+	 * @return a stamp to validate later, or {@link #NO_STAMP} if a writer is active
+	 */
+	public final long tryOptimisticRead() {
+		long stamp = version;
+		return (stamp & 1) == 0 ? stamp : NO_STAMP;
+	}
+
+	/**
+	 * Determines whether no writer has taken the write lock since a stamp was given
+	 * out by {@link #tryOptimisticRead()}.
+	 *
+	 * @param stamp stamp from {@link #tryOptimisticRead()}
+	 * @return {@code true} if everything read since the stamp was given out is consistent
+	 */
+	public final boolean validate(long stamp) {
+		//keep the reads done before this from moving after the version check
+		VarHandle.acquireFence();
+		return stamp != NO_STAMP && version == stamp;
+	}
+
+	/**
+	 * Reads optimistically, falling back to the read lock if a writer was active
+	 * or came in during the read. The reader may run against data that is being
+	 * changed, so it should only read, and any exception it throws because of a
+	 * writer is treated the same as a failed validation.
+	 *
+	 * @param <T> the type of value read
+	 * @param reader what to read
+	 * @return the value read
+	 */
+	public final <T> T optimisticRead(Supplier<T> reader) {
+		long stamp = tryOptimisticRead();
+		if (stamp != NO_STAMP) {
+			try {
+				T value = reader.get();
+				if (validate(stamp)) {
+					return value;
+				}
+			} catch (RuntimeException e) {
+				//only a real failure if no writer could have caused it
+				if (validate(stamp)) {
+					throw e;
+				}
+			}
+		}
+		readerLock.lock();
+		try {
+			return reader.get();
+		} finally {
+			readerLock.unlock();
+		}
+	}
+
+	/**
+	 * Reads an int optimistically, falling back to the read lock if a writer was
+	 * active or came in during the read.
+	 *
+	 * @param reader what to read
+	 * @return the value read
+	 *
+	 * @see #optimisticRead(Supplier)
+	 */
+	public final int optimisticRead(IntSupplier reader) {
+		long stamp = tryOptimisticRead();
+		if (stamp != NO_STAMP) {
+			try {
+				int value = reader.getAsInt();
+				if (validate(stamp)) {
+					return value;
+				}
+			} catch (RuntimeException e) {
+				//only a real failure if no writer could have caused it
+				if (validate(stamp)) {
+					throw e;
+				}
+			}
+		}
+		readerLock.lock();
+		try {
+			return reader.getAsInt();
+		} finally {
+			readerLock.unlock();
+		}
+	}
+
 	/**
 	 * Determines whether the thread running this code and the other thread are in fact the same
 	 * thread.
@@ -97,6 +279,22 @@ public class ReadWriteLock {
 		return other != null && other.getId() == Thread.currentThread().getId();
 	}
 
+	/**
+	 * Determines whether the current thread can take the read lock right now.
+	 * Must be called while synchronized on the lock object.
+	 *
+	 * @param hold read holds of the current thread
+	 * @return true if the current thread can take the read lock
+	 */
+	private boolean canRead(ReadHold hold) {
+		if (writers > 0) {
+			//the writer itself may still read
+			return sameThread(((WriteLock) writerLock).holder);
+		}
+		//readers already inside are let back in, or waiting writers could never go
+		return !fair || waitingWriters == 0 || hold.count > 0;
+	}
+
 	/**
 	 * Used to maintain simultaneous read operations.
 	 */
@@ -104,32 +302,89 @@ public class ReadWriteLock {
 
 		/**
 		 * Will wait until there are no active writers in the system, and then will increase the number
-		 * of active readers.
+		 * of active readers. A fair lock also waits for writers that are waiting, unless the current
+		 * thread already holds the read lock.
 		 */
 		@Override
 		public void lock() {
+			long start = System.nanoTime();
+			boolean interrupted = false;
 			synchronized (lock) {
-				while (writers > 0) {
+				ReadHold hold = readHolds.get();
+				while (!canRead(hold)) {
 					try {
 						lock.wait();
 					} catch (InterruptedException ex) {
-						Thread.currentThread().interrupt();
+						interrupted = true;
 					}
 				}
+				acquire(hold, start);
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * Will wait at most the given time for the read lock to become available.
+		 */
+		@Override
+		public boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException {
+			long start = System.nanoTime();
+			long deadline = start + unit.toNanos(timeout);
+			synchronized (lock) {
+				ReadHold hold = readHolds.get();
+				while (!canRead(hold)) {
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0) {
+						readCounters.timeouts++;
+						return false;
+					}
+					TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+				}
+				acquire(hold, start);
+				return true;
+			}
+		}
 
-				assert writers == 0;
-				readers++;
+		/**
+		 * Counts the current thread as a reader. Must be called while synchronized on the lock
+		 * object.
+		 *
+		 * @param hold read holds of the current thread
+		 * @param start when the current thread started waiting
+		 */
+		private void acquire(ReadHold hold, long start) {
+			long now = System.nanoTime();
+			readers++;
+			if (hold.count++ == 0) {
+				hold.acquired = now;
 			}
+			readCounters.acquired(now - start);
 		}
 
 		/**
 		 * Will decrease the number of active readers, and notify any waiting threads if necessary.
+		 *
+		 * @throws ConcurrentModificationException if unlock is called by a thread that does not hold
+		 *         the read lock
 		 */
 		@Override
-		public void unlock() {
+		public void unlock() throws ConcurrentModificationException {
 			synchronized (lock) {
+				ReadHold hold = readHolds.get();
+				if (hold.count == 0) {
+					readHolds.remove();
+					throw new ConcurrentModificationException("Issue: the read lock is not held by this thread.");
+				}
 				readers--;
-				lock.notifyAll();
+				if (--hold.count == 0) {
+					readCounters.released(System.nanoTime() - hold.acquired);
+					readHolds.remove();
+				}
+				if (readers == 0) {
+					lock.notifyAll();
+				}
 			}
 		}
 
@@ -140,30 +395,90 @@ public class ReadWriteLock {
 	 */
 	private class WriteLock implements SimpleLock {
 		/**
-		 * 
+		 * The thread holding the write lock, or null if no thread does
 		 */
 		private Thread holder = null;
+
+		/**
+		 * When the holder took the write lock
+		 */
+		private long acquired = 0;
+
 		/**
 		 * Will wait until there are no active readers or writers in the system, and then will increase
 		 * the number of active writers and update which thread holds the write lock.
 		 */
 		@Override
 		public void lock() {
+			long start = System.nanoTime();
+			boolean interrupted = false;
 			synchronized (lock) {
-				while (writers > 0 || readers > 0) {
-					try {
-						lock.wait();
-					} catch (InterruptedException ex) {
-						Thread.currentThread().interrupt();
+				waitingWriters++;
+				try {
+					while (writers > 0 || readers > 0) {
+						try {
+							lock.wait();
+						} catch (InterruptedException ex) {
+							interrupted = true;
+						}
 					}
+				} finally {
+					waitingWriters--;
 				}
-				assert writers == 0;
-				assert readers == 0;
-				writers++;
-				holder = Thread.currentThread();
+				acquire(start);
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
 			}
 		}
 
+		/**
+		 * Will wait at most the given time for the write lock to become available.
+		 */
+		@Override
+		public boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException {
+			long start = System.nanoTime();
+			long deadline = start + unit.toNanos(timeout);
+			synchronized (lock) {
+				waitingWriters++;
+				boolean given = false;
+				try {
+					while (writers > 0 || readers > 0) {
+						long remaining = deadline - System.nanoTime();
+						if (remaining <= 0) {
+							writeCounters.timeouts++;
+							return false;
+						}
+						TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+					}
+					acquire(start);
+					given = true;
+					return true;
+				} finally {
+					waitingWriters--;
+					//readers held back by this writer can go if it gave up
+					if (!given) {
+						lock.notifyAll();
+					}
+				}
+			}
+		}
+
+		/**
+		 * Makes the current thread the writer. Must be called while synchronized on the lock object.
+		 *
+		 * @param start when the current thread started waiting
+		 */
+		private void acquire(long start) {
+			assert writers == 0;
+			assert readers == 0;
+			writers++;
+			version++;
+			holder = Thread.currentThread();
+			acquired = System.nanoTime();
+			writeCounters.acquired(acquired - start);
+		}
+
 		/**
 		 * Will decrease the number of active writers, and notify any waiting threads if necessary. If
 		 * unlock is called by a thread that does not hold the lock, then a
@@ -184,9 +499,81 @@ public class ReadWriteLock {
 					throw new ConcurrentModificationException("Issue: the wrong thread is calling unlock().");
 				}
 				writers--;
+				version++;
 				holder = null;
+				writeCounters.released(System.nanoTime() - acquired);
 				lock.notifyAll();
 			}
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * How many times a thread holds the read lock, and since when
+	 */
+	private static class ReadHold {
+
+		/** number of times the thread holds the read lock */
+		private int count;
+
+		/** when the thread first took the read lock */
+		private long acquired;
+	}
+
+	/**
+	 * Running statistics of one lock mode, guarded by the lock object
+	 */
+	private static class Counters {
+
+		/** name of the lock mode */
+		private final String mode;
+
+		/** number of times the lock was given */
+		private long acquisitions;
+
+		/** number of timed attempts that gave up */
+		private long timeouts;
+
+		/** total time spent waiting in nanoseconds */
+		private long waitNanos;
+
+		/** longest hold in nanoseconds */
+		private long longestHoldNanos;
+
+		/**
+		 * Constructor for empty counters
+		 *
+		 * @param mode name of the lock mode
+		 */
+		private Counters(String mode) {
+			this.mode = mode;
+		}
+
+		/**
+		 * Counts a successful acquisition
+		 *
+		 * @param waited nanoseconds spent waiting for it
+		 */
+		private void acquired(long waited) {
+			acquisitions++;
+			waitNanos += waited;
+		}
+
+		/**
+		 * Counts the end of a hold
+		 *
+		 * @param held nanoseconds the lock was held
+		 */
+		private void released(long held) {
+			longestHoldNanos = Math.max(longestHoldNanos, held);
+		}
+
+		/**
+		 * Copies the counters out
+		 *
+		 * @return the statistics so far
+		 */
+		private LockStatistics toStatistics() {
+			return new LockStatistics(mode, acquisitions, timeouts, waitNanos, longestHoldNanos);
+		}
+	}
+}
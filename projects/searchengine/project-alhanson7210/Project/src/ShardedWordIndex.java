@@ -0,0 +1,1199 @@
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * A thread safe {@link WordIndex} that splits its stems by hash into a number of
+ * shards, each a plain word index with its own lock. Adding a document only locks
+ * the shards its stems land in, one at a time, and searching only read locks the
+ * shard of each query word, so builders and searches rarely wait on each other.
+ * The document ids and word counts are shared by every shard and have their own
+ * locks. So do the tombstones of removed documents, which are guarded by both the
+ * count lock and the document lock, and compaction purges one shard at a time.
+ *
+ * Locks are always taken in the order count lock, shard lock, document lock, and
+ * at most one shard lock is held at a time unless every shard is being read.
+ *
+ * Since a document reaches its shards one at a time, searches only go up to a
+ * watermark of committed documents. A merged document is committed once its word
+ * count and every one of its shards are in, and the watermark only passes it once
+ * every document before it is committed too, so a search never sees half of one.
+ * While nothing changed since the latest snapshot was frozen, searches read it
+ * instead with no locks at all, since it leaves out the same documents.
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class ShardedWordIndex extends WordIndex {
+
+	/** default number of shards */
+	public static final int DEFAULT_SHARDS = 16;
+
+	/** shards of the inverted index, only holding postings */
+	private final WordIndex[] shards;
+
+	/** lock for each shard */
+	private final ReadWriteLock[] shardLocks;
+
+	/** lock for the document ids */
+	private final ReadWriteLock documentLock;
+
+	/** lock for the word counts */
+	private final ReadWriteLock countLock;
+
+	/** lock for the query listings */
+	private final ReadWriteLock queryLock;
+
+	/** latest frozen copy for readers that walk the whole index */
+	private final SnapshotCache snapshots;
+
+	/** compacts removed documents in the background */
+	private final CompactionScheduler compactions;
+
+	/** ids of the documents that are all in, guarded by the count lock */
+	private final BitSet committed;
+
+	/** every document id below this is committed, only advanced under the count lock */
+	private volatile int watermark;
+
+	/**
+	 * Creates a sharded index with the default number of shards
+	 */
+	public ShardedWordIndex() {
+		this(DEFAULT_SHARDS);
+	}
+
+	/**
+	 * Creates a sharded index
+	 *
+	 * @param shardCount number of shards, rounded up to a power of two
+	 */
+	public ShardedWordIndex(int shardCount) {
+		super();
+		int size = Integer.highestOneBit(Math.max(1, shardCount - 1)) << 1;
+		size = shardCount <= 1 ? 1 : size;
+		shards = new WordIndex[size];
+		shardLocks = new ReadWriteLock[size];
+		//fair, so a steady stream of searches cannot keep merges out
+		for (int i = 0; i < size; i++) {
+			shards[i] = new WordIndex();
+			shardLocks[i] = new ReadWriteLock(true);
+		}
+		documentLock = new ReadWriteLock(true);
+		countLock = new ReadWriteLock(true);
+		queryLock = new ReadWriteLock(true);
+		snapshots = new SnapshotCache();
+		compactions = new CompactionScheduler();
+		committed = new BitSet();
+		watermark = 0;
+	}
+
+	/**
+	 * Returns the number of shards
+	 *
+	 * @return number of shards
+	 */
+	public int numShards() {
+		return shards.length;
+	}
+
+	/**
+	 * Finds the shard a stem belongs to
+	 *
+	 * @param stem the element to lookup
+	 * @return index of the shard
+	 */
+	private int shardOf(String stem) {
+		//spread the high bits down since only the low bits pick the shard
+		int hash = stem.hashCode();
+		return (hash ^ (hash >>> 16)) & (shards.length - 1);
+	}
+
+	/**
+	 * Finds all exact matches and generates a list of only the best search results
+	 *
+	 * @param queryWords list of unique query searches
+	 * @param limit number of results to keep, or {@link #ALL_RESULTS} to keep every result
+	 *
+	 * @return a sorted list of at most limit comparable search results
+	 */
+	@Override
+	public List<ComparableSearchResult> exactSearch(List<String> queryWords, int limit) {
+		FrozenWordIndex frozen = currentSnapshot();
+		if (frozen != null) {
+			return frozen.exactSearch(queryWords, limit);
+		}
+		countLock.readLock().lock();
+		try {
+			//documents committed after this point are left out of the search
+			int documents = watermark;
+			//matches are scored one document at a time once every shard was read
+			PostingsMerger matches = new PostingsMerger(this);
+			for (String queryWord : queryWords) {
+				if (queryWord == null) {
+					continue;
+				}
+				int shard = shardOf(queryWord);
+				shardLocks[shard].readLock().lock();
+				try {
+					//copied since the merge outlives the shard lock
+					matches.add(PostingsCursor.copyOf(new BoundedCursor(cursor(shards[shard].getPostings(queryWord)), documents)));
+				} finally {
+					shardLocks[shard].readLock().unlock();
+				}
+			}
+			//return the best results sorted
+			return matches.results(limit);
+		} finally {
+			countLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds all partial matches and generates a list of only the best search
+	 * results. The stems starting with a query word can be in any shard, so every
+	 * shard is searched, one at a time.
+	 *
+	 * @param queryWords list of unique query searches
+	 * @param limit number of results to keep, or {@link #ALL_RESULTS} to keep every result
+	 *
+	 * @return a sorted list of at most limit comparable search results
+	 */
+	@Override
+	public List<ComparableSearchResult> partialSearch(List<String> queryWords, int limit) {
+		FrozenWordIndex frozen = currentSnapshot();
+		if (frozen != null) {
+			return frozen.partialSearch(queryWords, limit);
+		}
+		countLock.readLock().lock();
+		try {
+			//documents committed after this point are left out of the search
+			int documents = watermark;
+			//matches are scored one document at a time once every shard was read
+			PostingsMerger matches = new PostingsMerger(this);
+			for (int shard = 0; shard < shards.length; shard++) {
+				shardLocks[shard].readLock().lock();
+				try {
+					//a stem is counted once for every query word it starts with
+					for (String prefix : queryWords) {
+						//stems are sorted so the matches are the keys from the prefix on
+						for (Entry<String, PostingList> entry : shards[shard].tailMap(prefix).entrySet()) {
+							//past the last stem starting with the prefix
+							if (!entry.getKey().startsWith(prefix)) {
+								break;
+							}
+							//copied since the merge outlives the shard lock
+							matches.add(PostingsCursor.copyOf(new BoundedCursor(cursor(entry.getValue()), documents)));
+						}
+					}
+				} finally {
+					shardLocks[shard].readLock().unlock();
+				}
+			}
+			//return the best results sorted
+			return matches.results(limit);
+		} finally {
+			countLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the latest snapshot if it still holds exactly what this index does,
+	 * freezing one if nothing changed for a while
+	 *
+	 * @return a frozen copy searches can read without locking, or {@code null} if they have to lock
+	 */
+	private FrozenWordIndex currentSnapshot() {
+		return snapshots.current(() -> freezeLocked(this::freezeCopy));
+	}
+
+	/**
+	 * Adds the element and position from a given file.
+	 *
+	 * @param stem the element found
+	 * @param filePath where element was found
+	 * @param position the position the element was found
+	 *
+	 * @return {@code true} if the index changed as a result of the call
+	 */
+	@Override
+	public boolean add(String stem, String filePath, int position) {
+		//checking validity
+		if (stem == null || filePath == null || position <= 0) {
+			return false;
+		}
+		int document = assignDocumentLocked(filePath);
+		int shard = shardOf(stem);
+		shardLocks[shard].writeLock().lock();
+		try {
+			return shards[shard].addPosition(stem, document, position);
+		} finally {
+			snapshots.advance();
+			shardLocks[shard].writeLock().unlock();
+			//added a position at a time, so each one is searchable right away
+			commitLocked(document);
+		}
+	}
+
+	/**
+	 * Adds all positions of a stem from a given file path
+	 *
+	 * @param stem the element found
+	 * @param filePath file path to which the stem was found in
+	 * @param positions list of the positions found for a stem
+	 *
+	 * @return boolean if all were added
+	 */
+	@Override
+	public boolean addAll(String stem, String filePath, Collection<Integer> positions) {
+		//checks for null return from index and checks validity of positions
+		if (stem == null || filePath == null || positions == null) {
+			return false;
+		}
+		int document = assignDocumentLocked(filePath);
+		int shard = shardOf(stem);
+		shardLocks[shard].writeLock().lock();
+		try {
+			//attempts to add all positions
+			for (Integer position : positions) {
+				//stops if a failure occurs
+				if (position == null || position <= 0 || !shards[shard].addPosition(stem, document, position)) {
+					return false;
+				}
+			}
+			//the positions for this file are done
+			PostingList postings = shards[shard].getPostings(stem);
+			if (postings != null) {
+				postings.compress(document);
+			}
+			return true;
+		} finally {
+			snapshots.advance();
+			shardLocks[shard].writeLock().unlock();
+			commitLocked(document);
+		}
+	}
+
+	/**
+	 * Building this word index up from another word index
+	 *
+	 * @param local another inverted index, which gives up its position lists
+	 * @param correctedFilePath file path to add stems to in the inverted index
+	 * @return true if able to add all from local word index
+	 */
+	@Override
+	public boolean addAll(WordIndex local, String correctedFilePath) {
+		if (local.findDocument(correctedFilePath) != DocumentDictionary.MISSING) {
+			//local to the calling thread, so no lock is needed
+			local.compressPositions();
+			int document = assignDocumentLocked(correctedFilePath);
+			moveAll(local, correctedFilePath, document, new MergeSummary(correctedFilePath));
+			commitLocked(document);
+		}
+		return true;
+	}
+
+	/**
+	 * Moves everything from a word index built for a single document into this
+	 * one. Only the shards the stems land in are locked, one at a time. The word
+	 * count goes in first and the document is only committed once every shard is
+	 * done, so searches never score part of it.
+	 *
+	 * @param local word index with the stems of a single document
+	 * @return a summary of what was moved over
+	 * @throws IllegalArgumentException the local index has more than one document
+	 */
+	@Override
+	public MergeSummary merge(WordIndex local) throws IllegalArgumentException {
+		if (local.numDocuments() > 1) {
+			throw new IllegalArgumentException("Only a word index with a single document can be merged");
+		}
+		//nothing was found in the document
+		if (local.numDocuments() == 0) {
+			return new MergeSummary(null);
+		}
+		//local to the calling thread, so no lock is needed
+		local.compressPositions();
+		String location = local.getLocation(0);
+		MergeSummary summary = new MergeSummary(location);
+		int document = assignDocumentLocked(location);
+		int count = local.getFileCount(0);
+		if (count > 0) {
+			countLock.writeLock().lock();
+			try {
+				setFileCount(document, count);
+			} finally {
+				countLock.writeLock().unlock();
+			}
+		}
+		moveAll(local, location, document, summary);
+		commitLocked(document);
+		summary.setWordCount(count);
+		return summary;
+	}
+
+	/**
+	 * Moves everything from another word index into this one, locking each shard
+	 * once for all of the stems that land in it.
+	 *
+	 * @param other word index to move everything from
+	 */
+	@Override
+	public void combine(WordIndex other) {
+		//not shared with other threads, so no lock is needed
+		other.compressPositions();
+		int[] ids = new int[other.numDocuments()];
+		for (int document = 0; document < ids.length; document++) {
+			ids[document] = assignDocumentLocked(other.getLocation(document));
+		}
+		countLock.writeLock().lock();
+		try {
+			for (int document = 0; document < ids.length; document++) {
+				int count = other.getFileCount(document);
+				if (count > 0) {
+					setFileCount(ids[document], count);
+				}
+			}
+		} finally {
+			countLock.writeLock().unlock();
+		}
+		//group the stems by shard
+		List<List<String>> stems = new ArrayList<>(shards.length);
+		for (int i = 0; i < shards.length; i++) {
+			stems.add(new ArrayList<>());
+		}
+		for (String stem : other.getElements()) {
+			stems.get(shardOf(stem)).add(stem);
+		}
+		for (int shard = 0; shard < shards.length; shard++) {
+			if (stems.get(shard).isEmpty()) {
+				continue;
+			}
+			shardLocks[shard].writeLock().lock();
+			try {
+				for (String stem : stems.get(shard)) {
+					shards[shard].movePostings(stem, other.getPostings(stem), ids);
+				}
+			} finally {
+				shardLocks[shard].writeLock().unlock();
+			}
+		}
+		countLock.writeLock().lock();
+		try {
+			for (int id : ids) {
+				commit(id);
+			}
+		} finally {
+			snapshots.advance();
+			countLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Copies out how much the count, document and query locks have been used, and
+	 * the shard locks added up as one
+	 *
+	 * @return the read and write statistics of each lock by its name
+	 */
+	@Override
+	public Map<String, List<LockStatistics>> lockStatistics() {
+		Map<String, List<LockStatistics>> statistics = super.lockStatistics();
+		addLockStatistics(statistics, "countLock", countLock);
+		addLockStatistics(statistics, "shardLocks", shardLocks);
+		addLockStatistics(statistics, "documentLock", documentLock);
+		addLockStatistics(statistics, "queryLock", queryLock);
+		return statistics;
+	}
+
+	/**
+	 * Sets the work queue compactions are run on, so a removal never waits for one
+	 *
+	 * @param tasks work queue to compact on, or {@code null} to compact in the removing thread
+	 */
+	@Override
+	public void setCompactionQueue(WorkQueue tasks) {
+		compactions.setQueue(tasks);
+	}
+
+	/**
+	 * Removes a document from the index, compacting in the background once
+	 * enough documents were removed
+	 *
+	 * @param location file path or url of the document
+	 * @return {@code true} if the document was in the index
+	 */
+	@Override
+	public boolean remove(String location) {
+		boolean found = tombstoneLocked(location);
+		compactions.request(this);
+		return found;
+	}
+
+	/**
+	 * Replaces a document with the stems of a word index built for it alone. The
+	 * old document is removed before the new one is merged in a shard at a time,
+	 * so a search in between can find neither.
+	 *
+	 * @param location file path or url of the document
+	 * @param local word index with the new stems of the document, or no document if it has none
+	 * @return a summary of what was moved over
+	 * @throws IllegalArgumentException the local index has another document
+	 */
+	@Override
+	public MergeSummary replace(String location, WordIndex local) throws IllegalArgumentException {
+		checkReplacement(location, local);
+		tombstoneLocked(location);
+		MergeSummary summary = merge(local);
+		compactions.request(this);
+		return summary;
+	}
+
+	/**
+	 * Marks the document of a location with a tombstone under the count and
+	 * document locks
+	 *
+	 * @param location file path or url of the document
+	 * @return {@code true} if the location had a document
+	 */
+	private boolean tombstoneLocked(String location) {
+		countLock.writeLock().lock();
+		documentLock.writeLock().lock();
+		try {
+			return tombstone(location);
+		} finally {
+			snapshots.advance();
+			documentLock.writeLock().unlock();
+			countLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Purges the postings of removed documents one shard at a time, and a batch
+	 * of stems at a time within each shard, so a search only ever waits for one
+	 * batch. The tombstones are still consulted until every shard is done.
+	 *
+	 * @return the number of removed documents purged
+	 */
+	@Override
+	public int compact() {
+		//one compaction at a time, so each tombstone is only counted as purged once
+		synchronized (compactions) {
+			BitSet dead;
+			int pending;
+			countLock.readLock().lock();
+			try {
+				dead = removedDocuments();
+				pending = super.numRemoved();
+			} finally {
+				countLock.readLock().unlock();
+			}
+			for (int shard = 0; pending > 0 && shard < shards.length; shard++) {
+				String next = "";
+				while (next != null) {
+					shardLocks[shard].writeLock().lock();
+					try {
+						next = shards[shard].purge(next, MultithreadedWordIndex.COMPACTION_BATCH, dead);
+					} finally {
+						shardLocks[shard].writeLock().unlock();
+					}
+				}
+			}
+			countLock.writeLock().lock();
+			documentLock.writeLock().lock();
+			try {
+				compacted(pending);
+			} finally {
+				documentLock.writeLock().unlock();
+				countLock.writeLock().unlock();
+			}
+			return pending;
+		}
+	}
+
+	/**
+	 * Determines whether a document id was removed
+	 *
+	 * @param document id from the document dictionary
+	 * @return {@code true} if the document was removed or replaced
+	 */
+	@Override
+	public boolean isRemoved(int document) {
+		countLock.readLock().lock();
+		try {
+			return super.isRemoved(document);
+		} finally {
+			countLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of removed documents whose postings are still stored
+	 *
+	 * @return the number of tombstones
+	 */
+	@Override
+	public int numRemoved() {
+		countLock.readLock().lock();
+		try {
+			return super.numRemoved();
+		} finally {
+			countLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Counts the live postings of a stem in its shard
+	 *
+	 * @param stem the element to lookup
+	 * @return the number of documents that were not removed with postings for the stem
+	 */
+	private int countLive(String stem) {
+		if (stem == null) {
+			return 0;
+		}
+		int shard = shardOf(stem);
+		countLock.readLock().lock();
+		shardLocks[shard].readLock().lock();
+		try {
+			PostingList postings = shards[shard].getPostings(stem);
+			return postings != null ? countLive(postings) : 0;
+		} finally {
+			shardLocks[shard].readLock().unlock();
+			countLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Moves the positions of one document from a local index into the shards,
+	 * grouping the stems by shard first so each shard is locked once
+	 *
+	 * @param local another inverted index, which gives up its position lists
+	 * @param location file path or url of the document
+	 * @param document id of the document in this index
+	 * @param summary where to count what was moved
+	 */
+	private void moveAll(WordIndex local, String location, int document, MergeSummary summary) {
+		//group the stems by shard
+		List<List<String>> stems = new ArrayList<>(shards.length);
+		List<List<PositionList>> lists = new ArrayList<>(shards.length);
+		for (int i = 0; i < shards.length; i++) {
+			stems.add(new ArrayList<>());
+			lists.add(new ArrayList<>());
+		}
+		for (String stem : local.getElements()) {
+			PositionList list = local.getPositionList(stem, location);
+			if (list != null) {
+				int shard = shardOf(stem);
+				stems.get(shard).add(stem);
+				lists.get(shard).add(list);
+			}
+		}
+		//move each group while holding only its shard
+		for (int shard = 0; shard < shards.length; shard++) {
+			if (stems.get(shard).isEmpty()) {
+				continue;
+			}
+			shardLocks[shard].writeLock().lock();
+			try {
+				for (int i = 0; i < stems.get(shard).size(); i++) {
+					shards[shard].movePositions(stems.get(shard).get(i), document, lists.get(shard).get(i), summary);
+				}
+			} finally {
+				shardLocks[shard].writeLock().unlock();
+			}
+		}
+		snapshots.advance();
+	}
+
+	/**
+	 * Marks a document as committed and moves the watermark past every committed
+	 * document in a row. The count lock must be held for writing.
+	 *
+	 * @param document id from the document dictionary
+	 */
+	private void commit(int document) {
+		committed.set(document);
+		watermark = committed.nextClearBit(watermark);
+	}
+
+	/**
+	 * Commits a document under the count lock, unless the watermark already
+	 * passed it
+	 *
+	 * @param document id from the document dictionary
+	 */
+	private void commitLocked(int document) {
+		if (document < watermark) {
+			return;
+		}
+		countLock.writeLock().lock();
+		try {
+			commit(document);
+		} finally {
+			snapshots.advance();
+			countLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the id of a file path or url under the document lock
+	 *
+	 * @param location file path or url
+	 * @return id from the document dictionary
+	 */
+	private int assignDocumentLocked(String location) {
+		documentLock.writeLock().lock();
+		try {
+			return assignDocument(location);
+		} finally {
+			documentLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds the id of a file path or url under the document lock
+	 *
+	 * @param location file path or url
+	 * @return id from the document dictionary or {@link DocumentDictionary#MISSING}
+	 */
+	private int findDocumentLocked(String location) {
+		documentLock.readLock().lock();
+		try {
+			return findDocument(location);
+		} finally {
+			documentLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Compresses every position list, one shard at a time
+	 */
+	@Override
+	public void compressPositions() {
+		for (int shard = 0; shard < shards.length; shard++) {
+			shardLocks[shard].writeLock().lock();
+			try {
+				shards[shard].compressPositions();
+			} finally {
+				shardLocks[shard].writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Adds the completed file count to the word indexes wordCount
+	 *
+	 * @param correctedPath file path to add fileCount to if needed
+	 * @param count number of words in file
+	 */
+	@Override
+	public void addFileCount(String correctedPath, int count) {
+		countLock.writeLock().lock();
+		documentLock.writeLock().lock();
+		try {
+			super.addFileCount(correctedPath, count);
+			//a count for a location with no stems still gives it a document
+			int document = findDocument(correctedPath);
+			if (document != DocumentDictionary.MISSING) {
+				commit(document);
+			}
+		} finally {
+			snapshots.advance();
+			documentLock.writeLock().unlock();
+			countLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the file count of a correctedPath
+	 *
+	 * @param correctedPath file path to add fileCount to if needed
+	 * @return file count if word count contains the the path or 0
+	 */
+	@Override
+	public int getFileCount(String correctedPath) {
+		countLock.readLock().lock();
+		documentLock.readLock().lock();
+		try {
+			return super.getFileCount(correctedPath);
+		} finally {
+			documentLock.readLock().unlock();
+			countLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the file count of a document id
+	 *
+	 * @param document id from the document dictionary
+	 * @return file count if word count contains the document or 0
+	 */
+	@Override
+	public int getFileCount(int document) {
+		countLock.readLock().lock();
+		try {
+			return super.getFileCount(document);
+		} finally {
+			countLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the file path or url of a document id
+	 *
+	 * @param document id from the document dictionary
+	 * @return the file path or url
+	 */
+	@Override
+	public String getLocation(int document) {
+		documentLock.readLock().lock();
+		try {
+			return super.getLocation(document);
+		} finally {
+			documentLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the postings of a stem from its shard, which should be treated as read only
+	 *
+	 * @param stem the element to lookup
+	 * @return the postings of the stem or {@code null} if it is not in the index
+	 */
+	@Override
+	public PostingList getPostings(String stem) {
+		if (stem == null) {
+			return null;
+		}
+		int shard = shardOf(stem);
+		shardLocks[shard].readLock().lock();
+		try {
+			return shards[shard].getPostings(stem);
+		} finally {
+			shardLocks[shard].readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets a cursor over a copy of the postings of a stem, since the shard can
+	 * change once its lock is released.
+	 *
+	 * @param stem the element to lookup
+	 * @return a cursor over the postings, with no postings if the stem is not in the index
+	 */
+	@Override
+	public PostingsCursor postings(String stem) {
+		if (stem == null) {
+			return PostingsCursor.EMPTY;
+		}
+		int shard = shardOf(stem);
+		countLock.readLock().lock();
+		shardLocks[shard].readLock().lock();
+		try {
+			return PostingsCursor.copyOf(cursor(shards[shard].getPostings(stem)));
+		} finally {
+			shardLocks[shard].readLock().unlock();
+			countLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Add query listing to queries map
+	 * @param queryString words to be found in the word index
+	 * @param queryResults list of search results found
+	 */
+	@Override
+	public void addQueryListing(String queryString, List<ComparableSearchResult> queryResults) {
+		queryLock.writeLock().lock();
+		try {
+			super.addQueryListing(queryString, queryResults);
+		} finally {
+			snapshots.advance();
+			queryLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Query elements found in search
+	 * @return Unmodifiable Query Elements
+	 */
+	@Override
+	public Collection<Entry<String, List<ComparableSearchResult>>> getUnmodifiableQueryElements() {
+		queryLock.readLock().lock();
+		try {
+			return super.getUnmodifiableQueryElements();
+		} finally {
+			queryLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Determines whether the element is stored in the index.
+	 *
+	 * @param stem the element to lookup
+	 *
+	 * @return {@true} if the element is stored in the index
+	 */
+	@Override
+	public boolean contains(String stem) {
+		return countLive(stem) > 0;
+	}
+
+	/**
+	 * Returns the stems of every shard in sorted order. The view merges the
+	 * sorted stems of each shard as it is iterated, so it should be iterated once
+	 * building is done, the same as the stems of a {@link MultithreadedWordIndex}.
+	 * While there are tombstones this is a copy of the stems that still have live
+	 * postings.
+	 *
+	 * @return an unmodifiable, sorted view of the stems stored in the index
+	 */
+	@Override
+	public Collection<String> getElements() {
+		if (numRemoved() == 0) {
+			return new MergedStems();
+		}
+		List<String> stems = new ArrayList<>();
+		Iterator<String> merged = new MergedIterator();
+		while (merged.hasNext()) {
+			String stem = merged.next();
+			if (countLive(stem) > 0) {
+				stems.add(stem);
+			}
+		}
+		return Collections.unmodifiableList(stems);
+	}
+
+	/**
+	 * Map of file paths to positions for a given stem, sorted by file path.
+	 *
+	 * @param stem the element found
+	 * @return an unmodifiable map of file paths to positions for a stem
+	 */
+	@Override
+	public Map<String, PositionList> getLocations(String stem) {
+		if (stem == null) {
+			return Collections.emptyMap();
+		}
+		int shard = shardOf(stem);
+		countLock.readLock().lock();
+		shardLocks[shard].readLock().lock();
+		try {
+			PostingList postings = shards[shard].getPostings(stem);
+			if (postings == null) {
+				return Collections.emptyMap();
+			}
+			TreeMap<String, PositionList> locations = new TreeMap<>();
+			for (int i = 0; i < postings.size(); i++) {
+				if (!super.isRemoved(postings.getDocument(i))) {
+					locations.put(getLocation(postings.getDocument(i)), postings.getPositions(i));
+				}
+			}
+			return Collections.unmodifiableMap(locations);
+		} finally {
+			shardLocks[shard].readLock().unlock();
+			countLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the primitive positions stored in the index for the provided element
+	 * and file path. The list should be treated as read only.
+	 *
+	 * @param stem the element to lookup
+	 * @param filePath where element was found
+	 *
+	 * @return the positions stored for the element, or {@code null} if there are none
+	 */
+	@Override
+	public PositionList getPositionList(String stem, String filePath) {
+		int document = findDocumentLocked(filePath);
+		PostingList postings = getPostings(stem);
+		return postings != null && document != DocumentDictionary.MISSING ? postings.get(document) : null;
+	}
+
+	/**
+	 * Unmodifiable file count map
+	 * @return an unmodifiable file count map to to write as json later
+	 */
+	@Override
+	public Map<String, Integer> getUnmodifiableFileCount() {
+		countLock.readLock().lock();
+		documentLock.readLock().lock();
+		try {
+			return super.getUnmodifiableFileCount();
+		} finally {
+			documentLock.readLock().unlock();
+			countLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of file paths or urls that have an id in the index.
+	 *
+	 * @return the number of documents, every id is less than this
+	 */
+	@Override
+	public int numDocuments() {
+		documentLock.readLock().lock();
+		try {
+			return super.numDocuments();
+		} finally {
+			documentLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Copies this index into a read-optimized layout that can no longer be added
+	 * to, holding every lock for reading while it copies.
+	 *
+	 * @return a frozen copy of this index
+	 */
+	@Override
+	public FrozenWordIndex freeze() {
+		return freezeLocked(super::freeze);
+	}
+
+	/**
+	 * Freezes this index holding every lock for reading
+	 *
+	 * @param freezer copies this index into the frozen layout
+	 * @return a frozen copy of this index
+	 */
+	private FrozenWordIndex freezeLocked(Supplier<FrozenWordIndex> freezer) {
+		countLock.readLock().lock();
+		for (ReadWriteLock lock : shardLocks) {
+			lock.readLock().lock();
+		}
+		documentLock.readLock().lock();
+		queryLock.readLock().lock();
+		try {
+			return freezer.get();
+		} finally {
+			queryLock.readLock().unlock();
+			documentLock.readLock().unlock();
+			for (int shard = shardLocks.length - 1; shard >= 0; shard--) {
+				shardLocks[shard].readLock().unlock();
+			}
+			countLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the ids of the removed documents and of every document past the
+	 * watermark, which searches cannot see yet either. The count lock must be held.
+	 *
+	 * @return ids of the documents a frozen copy leaves out
+	 */
+	@Override
+	protected BitSet hiddenDocuments() {
+		BitSet hidden = removedDocuments();
+		hidden.set(watermark, Math.max(watermark, super.numDocuments()));
+		return hidden;
+	}
+
+	/**
+	 * Gets a frozen copy of this index, only freezing again if a writer changed
+	 * something since the last one and it is old enough. The position lists are
+	 * shared with the copy, since writers copy a shared list before adding to it.
+	 *
+	 * @return a frozen copy that can be iterated without locking
+	 */
+	@Override
+	public FrozenWordIndex snapshot() {
+		return snapshots.get(() -> freezeLocked(this::freezeCopy));
+	}
+
+	/**
+	 * Returns the number of stems stored in the index.
+	 *
+	 * @return 0 if the index is empty, otherwise the number of element in the index
+	 */
+	@Override
+	public int numElements() {
+		if (numRemoved() > 0) {
+			return getElements().size();
+		}
+		int total = 0;
+		for (int shard = 0; shard < shards.length; shard++) {
+			shardLocks[shard].readLock().lock();
+			try {
+				total += shards[shard].numElements();
+			} finally {
+				shardLocks[shard].readLock().unlock();
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the number of positions for a file path and given stem
+	 *
+	 * @param stem the element to lookup
+	 * @param filePath where element was found
+	 *
+	 * @return 0 if the element is not in the index or has no positions, otherwise
+	 *         the number of positions stored for that element
+	 */
+	@Override
+	public int numPositions(String stem, String filePath) {
+		int document = findDocumentLocked(filePath);
+		if (stem == null || document == DocumentDictionary.MISSING) {
+			return 0;
+		}
+		int shard = shardOf(stem);
+		shardLocks[shard].readLock().lock();
+		try {
+			PostingList postings = shards[shard].getPostings(stem);
+			return postings != null ? postings.frequency(document) : 0;
+		} finally {
+			shardLocks[shard].readLock().unlock();
+		}
+	}
+
+	/**
+	 * Skips postings of documents that were not committed when a search started,
+	 * which the search has no room for
+	 */
+	private static class BoundedCursor implements PostingsCursor {
+
+		/** cursor being filtered */
+		private final PostingsCursor postings;
+
+		/** every document id the search has room for is less than this */
+		private final int documents;
+
+		/**
+		 * Filters a cursor
+		 *
+		 * @param postings cursor being filtered
+		 * @param documents every document id the search has room for is less than this
+		 */
+		private BoundedCursor(PostingsCursor postings, int documents) {
+			this.postings = postings;
+			this.documents = documents;
+		}
+
+		@Override
+		public boolean next() {
+			while (postings.next()) {
+				if (postings.docId() < documents) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public int docId() {
+			return postings.docId();
+		}
+
+		@Override
+		public int termFrequency() {
+			return postings.termFrequency();
+		}
+
+		@Override
+		public int docLength() {
+			return postings.docLength();
+		}
+	}
+
+	/**
+	 * Sorted view of the stems of every shard
+	 */
+	private class MergedStems extends AbstractCollection<String> {
+
+		@Override
+		public Iterator<String> iterator() {
+			return new MergedIterator();
+		}
+
+		@Override
+		public int size() {
+			return numElements();
+		}
+	}
+
+	/**
+	 * Merges the sorted stems of every shard by always taking the smallest next
+	 * stem. Stems are never in more than one shard, so there are no duplicates.
+	 */
+	private class MergedIterator implements Iterator<String> {
+
+		/** next stem of each shard, smallest first */
+		private final PriorityQueue<ShardHead> heads;
+
+		/**
+		 * Starts at the first stem of every shard
+		 */
+		private MergedIterator() {
+			heads = new PriorityQueue<>(shards.length);
+			for (WordIndex shard : shards) {
+				Iterator<String> stems = shard.getElements().iterator();
+				if (stems.hasNext()) {
+					heads.add(new ShardHead(stems.next(), stems));
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !heads.isEmpty();
+		}
+
+		@Override
+		public String next() {
+			ShardHead head = heads.poll();
+			if (head == null) {
+				throw new NoSuchElementException();
+			}
+			String stem = head.stem;
+			//put the shard back with its next stem
+			if (head.rest.hasNext()) {
+				head.stem = head.rest.next();
+				heads.add(head);
+			}
+			return stem;
+		}
+	}
+
+	/**
+	 * The next stem of a shard and the rest of its stems
+	 */
+	private static class ShardHead implements Comparable<ShardHead> {
+
+		/** next stem of the shard */
+		private String stem;
+
+		/** stems of the shard after the next one */
+		private final Iterator<String> rest;
+
+		/**
+		 * Constructor
+		 *
+		 * @param stem next stem of the shard
+		 * @param rest stems of the shard after the next one
+		 */
+		private ShardHead(String stem, Iterator<String> rest) {
+			this.stem = stem;
+			this.rest = rest;
+		}
+
+		@Override
+		public int compareTo(ShardHead o) {
+			return stem.compareTo(o.stem);
+		}
+	}
+}
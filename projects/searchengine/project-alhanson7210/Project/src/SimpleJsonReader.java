@@ -0,0 +1,196 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Predicate;
+
+/**
+ * Reads back the "pretty" JSON written by {@link SimpleJsonWriter}. The input is
+ * read a character at a time and added to its destination as it is read, so no
+ * copy of the whole document is ever built in memory.
+ *
+ * Warning: This class is not thread-safe. If multiple threads access this class
+ * concurrently, access must be synchronized externally.
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ *
+ * @see SimpleJsonWriter
+ */
+public class SimpleJsonReader {
+
+	/** the reader to use */
+	private final Reader reader;
+
+	/** the next character, or -1 at the end of the input */
+	private int next;
+
+	/**
+	 * Constructor
+	 *
+	 * @param reader the reader to use
+	 * @throws IOException if an IO error occurs
+	 */
+	private SimpleJsonReader(Reader reader) throws IOException {
+		this.reader = reader;
+		this.next = reader.read();
+	}
+
+	/**
+	 * Reads a word index written by
+	 * {@link SimpleJsonWriter#wordIndexToSimpleJson(WordIndex, Path)}, adding the
+	 * positions of every location accepted by the filter to the given index.
+	 *
+	 * @param path the file path to read
+	 * @param index the word index to add to
+	 * @param keep accepts the locations to add, the rest are skipped
+	 *
+	 * @throws IOException if an IO error occurs or the file is not a complete word index
+	 */
+	public static void readWordIndex(Path path, WordIndex index, Predicate<String> keep) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			new SimpleJsonReader(reader).wordIndex(index, keep);
+		}
+	}
+
+	/**
+	 * Reads a word index, nesting stems, then locations, then positions
+	 *
+	 * @param index the word index to add to
+	 * @param keep accepts the locations to add
+	 *
+	 * @throws IOException if an IO error occurs or the input is malformed
+	 */
+	private void wordIndex(WordIndex index, Predicate<String> keep) throws IOException {
+		expect('{');
+		if (!peek('}')) {
+			do {
+				String stem = string();
+				expect(':');
+				expect('{');
+				if (!peek('}')) {
+					do {
+						String location = string();
+						boolean kept = keep.test(location);
+						expect(':');
+						expect('[');
+						if (!peek(']')) {
+							do {
+								int position = number();
+								if (kept) {
+									index.add(stem, location, position);
+								}
+							} while (peek(','));
+						}
+						expect(']');
+					} while (peek(','));
+				}
+				expect('}');
+			} while (peek(','));
+		}
+		expect('}');
+		//anything after the index means it was not written by the writer
+		skipWhitespace();
+		if (next != -1) {
+			throw malformed("end of input");
+		}
+	}
+
+	/**
+	 * Reads a string, which the writer never escapes
+	 *
+	 * @return the characters between the quotation marks
+	 *
+	 * @throws IOException if an IO error occurs or the input is malformed
+	 */
+	private String string() throws IOException {
+		expect('"');
+		StringBuilder builder = new StringBuilder();
+		while (next != '"') {
+			if (next == -1) {
+				throw malformed("closing quotation mark");
+			}
+			builder.append((char) next);
+			next = reader.read();
+		}
+		next = reader.read();
+		return builder.toString();
+	}
+
+	/**
+	 * Reads a positive whole number
+	 *
+	 * @return the number read
+	 *
+	 * @throws IOException if an IO error occurs or the input is malformed
+	 */
+	private int number() throws IOException {
+		skipWhitespace();
+		if (next < '0' || next > '9') {
+			throw malformed("number");
+		}
+		long number = 0;
+		while (next >= '0' && next <= '9') {
+			number = number * 10 + (next - '0');
+			if (number > Integer.MAX_VALUE) {
+				throw malformed("smaller number");
+			}
+			next = reader.read();
+		}
+		return (int) number;
+	}
+
+	/**
+	 * Skips whitespace and consumes the next character if it is the given one
+	 *
+	 * @param c the character to look for
+	 * @return true if the character was next and consumed
+	 *
+	 * @throws IOException if an IO error occurs
+	 */
+	private boolean peek(char c) throws IOException {
+		skipWhitespace();
+		if (next == c) {
+			next = reader.read();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Skips whitespace and consumes the next character, which must be the given one
+	 *
+	 * @param c the character expected
+	 *
+	 * @throws IOException if an IO error occurs or another character is next
+	 */
+	private void expect(char c) throws IOException {
+		if (!peek(c)) {
+			throw malformed("'" + c + "'");
+		}
+	}
+
+	/**
+	 * Skips whitespace between tokens
+	 *
+	 * @throws IOException if an IO error occurs
+	 */
+	private void skipWhitespace() throws IOException {
+		while (next == ' ' || next == '\n' || next == '\r' || next == '\t') {
+			next = reader.read();
+		}
+	}
+
+	/**
+	 * Creates an exception for input that does not match what the writer writes
+	 *
+	 * @param expected what was expected instead
+	 * @return the exception to throw
+	 */
+	private IOException malformed(String expected) {
+		return new IOException("Malformed json, expected " + expected + " but found "
+				+ (next == -1 ? "end of input" : "'" + (char) next + "'"));
+	}
+}
@@ -6,14 +6,18 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.PrimitiveIterator;
 
 /**
  * Outputs several simple data structures in "pretty" JSON format where newlines
@@ -71,6 +75,42 @@ public class SimpleJsonWriter {
 		indent("]", writer, level);
 	}
 
+	/**
+	 * Writes the positions as a pretty JSON array without boxing each position.
+	 *
+	 * @param elements the positions to write
+	 * @param writer the writer to use
+	 * @param level the initial indent level
+	 * @throws IOException if an IO error occurs
+	 * @throws NullPointerException elements or the writer was null
+	 *
+	 * @see #asArray(Collection, Writer, int)
+	 */
+	public static void asArray(PositionList elements, Writer writer, int level)
+			throws IOException, NullPointerException {
+		// Need to throw the exception, otherwise, this is a silent failure
+		if (level < 0) {
+			throw new UnsupportedOperationException("Level was less than 0");
+		}
+		// write opening bracket
+		writer.append("[");
+		// positions are decoded as they are written
+		PrimitiveIterator.OfInt iter = elements.iterator();
+		while (iter.hasNext()) {
+			//go to new line
+			writer.append("\n");
+			//write element
+			indent(Integer.toString(iter.nextInt()), writer, level + 1);
+			//Add a comma when there is another element
+			if (iter.hasNext()) {
+				writer.append(",");
+			}
+		}
+		// close bracket
+		writer.append("\n");
+		indent("]", writer, level);
+	}
+
 	/**
 	 * Writes the elements as a pretty JSON array to file.
 	 *
@@ -298,7 +338,12 @@ public class SimpleJsonWriter {
 			quote(key, writer, level + 1);
 			writer.append(": ");
 			//write element
-			asArray(integers, writer, level + 1);
+			if (integers instanceof PositionList) {
+				asArray((PositionList) integers, writer, level + 1);
+			}
+			else {
+				asArray(integers, writer, level + 1);
+			}
 			//Add a comma when there is another element
 			if (keys.hasNext()) {
 				writer.append(",");
@@ -351,15 +396,13 @@ public class SimpleJsonWriter {
 	 * Helper function for writing the wordIndex to file Creates the buffered reader
 	 * for the given path Calls main function that writes to file
 	 * 
-	 * @param invertedIndex unmodifiable wordIndex as a collection of entries
-	 * containing all the stems and their positions mapped from file(s)
+	 * @param invertedIndex wordIndex containing all the stems and their positions mapped from file(s)
 	 * @param path the file path to use
 	 * 
 	 * @throws NullPointerException invertedIndex or the writer was null
 	 * @throws IOException if an IO error occurs
 	 */
-	public static void wordIndexToSimpleJson(Collection<Entry<String, Map<String, Collection<Integer>>>> invertedIndex,
-			Path path)
+	public static void wordIndexToSimpleJson(WordIndex invertedIndex, Path path)
 			throws IOException, NullPointerException {
 		log.info("Writing inverted index to json");
 		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
@@ -368,35 +411,35 @@ public class SimpleJsonWriter {
 	}
 	
 	/**
-	 * Given an unmodifiable collection and a writer, this method will write
-	 * the given entries as json to a json file using the writer 
+	 * Given a word index and a writer, this method will write the stems and
+	 * their locations as json to a json file using the writer. Document ids are
+	 * turned back into locations one stem at a time.
 	 * 
-	 * @param invertedIndex unmodifiable wordIndex as a collection of entries
-	 * containing all the stems and their positions mapped from file(s)
+	 * @param invertedIndex wordIndex containing all the stems and their positions mapped from file(s)
 	 * @param writer the writer to use
 	 * 
 	 * @throws NullPointerException invertedIndex or the writer was null
 	 * @throws IOException if an IO error occurs
 	 */
-	public static void wordIndexToSimpleJson(Collection<Entry<String, Map<String, Collection<Integer>>>> invertedIndex,
-			Writer writer) throws IOException, NullPointerException {
+	public static void wordIndexToSimpleJson(WordIndex invertedIndex, Writer writer)
+			throws IOException, NullPointerException {
 		// writing word index to Json
-		Iterator<Entry<String, Map<String, Collection<Integer>>>> indexEntries = invertedIndex.iterator();
-		Map.Entry<String, Map<String, Collection<Integer>>> indexEntry = null;
+		Iterator<String> stems = invertedIndex.getElements().iterator();
+		String stem = null;
 		writer.append("{");
 		// Merge with while loop
-		while (indexEntries.hasNext()) {
+		while (stems.hasNext()) {
 			//get next element
-			indexEntry = indexEntries.next();
+			stem = stems.next();
 			//go to new line
 			writer.append("\n");
 			//write key 
-			quote(indexEntry.getKey(), writer, 1);
+			quote(stem, writer, 1);
 			writer.append(": ");
 			//write element
-			asNestedArray(indexEntry.getValue(), writer, 1);
+			asNestedArray(invertedIndex.getLocations(stem), writer, 1);
 			//Add a comma when there is another element
-			if (indexEntries.hasNext()) {
+			if (stems.hasNext()) {
 				writer.append(",");
 			}
 		}
@@ -405,6 +448,172 @@ public class SimpleJsonWriter {
 		indent("}", writer, 0);
 	}
 
+	/**
+	 * Writes the statistics of each named work queue as a json object, with
+	 * times in microseconds and the wait and run histograms as arrays of bucket
+	 * counts.
+	 * 
+	 * @param queues statistics of each work queue by name
+	 * @param writer the writer to use
+	 * 
+	 * @throws IOException if an IO error occurs
+	 * 
+	 * @see WorkQueue#statistics()
+	 */
+	public static void statisticsToJson(Map<String, WorkQueueStatistics> queues, Writer writer)
+			throws IOException {
+		statisticsToJson(queues, Collections.emptyMap(), writer);
+	}
+
+	/**
+	 * Writes the statistics of each named work queue as a json object, followed
+	 * by a "locks" member with the read and write statistics of each named lock
+	 * if there are any, with times in microseconds.
+	 * 
+	 * @param queues statistics of each work queue by name
+	 * @param locks read and write statistics of each lock by name
+	 * @param writer the writer to use
+	 * 
+	 * @throws IOException if an IO error occurs
+	 * 
+	 * @see WorkQueue#statistics()
+	 * @see WordIndex#lockStatistics()
+	 */
+	public static void statisticsToJson(Map<String, WorkQueueStatistics> queues, Map<String, List<LockStatistics>> locks,
+			Writer writer) throws IOException {
+		Iterator<Entry<String, WorkQueueStatistics>> entries = queues.entrySet().iterator();
+		writer.append("{");
+		while (entries.hasNext()) {
+			Entry<String, WorkQueueStatistics> entry = entries.next();
+			WorkQueueStatistics stats = entry.getValue();
+			writer.append("\n");
+			quote(entry.getKey(), writer, 1);
+			writer.append(": {\n");
+			statistic("threads", stats.getThreads(), writer);
+			statistic("utilization", String.format(Locale.ROOT, "%.4f", stats.getAverageUtilization()), writer);
+			statistic("pending", stats.getPending(), writer);
+			statistic("peakPending", stats.getPeakPending(), writer);
+			statistic("queued", stats.getQueued(), writer);
+			statistic("peakQueued", stats.getPeakQueued(), writer);
+			statistic("completed", stats.getCompleted(), writer);
+			statistic("failures", stats.getFailures(), writer);
+			statistic("rejections", stats.getRejections(), writer);
+			statistic("callerRuns", stats.getCallerRuns(), writer);
+			timing("wait", stats.getWaits(), writer);
+			timing("run", stats.getRuns(), writer);
+			// utilization of each worker
+			quote("workers", writer, 2);
+			writer.append(": [");
+			double[] utilization = stats.getUtilization();
+			for (int i = 0; i < utilization.length; i++) {
+				writer.append(i > 0 ? ", " : "").append(String.format(Locale.ROOT, "%.4f", utilization[i]));
+			}
+			writer.append("]\n");
+			indent("}", writer, 1);
+			if (entries.hasNext() || !locks.isEmpty()) {
+				writer.append(",");
+			}
+		}
+		if (!locks.isEmpty()) {
+			writer.append("\n");
+			quote("locks", writer, 1);
+			writer.append(": {");
+			lockStatistics(locks, writer);
+			writer.append("\n");
+			indent("}", writer, 1);
+		}
+		writer.append("\n");
+		indent("}", writer, 0);
+	}
+
+	/**
+	 * Writes the members of the locks object, one object for each lock with a
+	 * member for each of its modes
+	 * 
+	 * @param locks read and write statistics of each lock by name
+	 * @param writer the writer to use
+	 * 
+	 * @throws IOException if an IO error occurs
+	 */
+	private static void lockStatistics(Map<String, List<LockStatistics>> locks, Writer writer) throws IOException {
+		Iterator<Entry<String, List<LockStatistics>>> entries = locks.entrySet().iterator();
+		while (entries.hasNext()) {
+			Entry<String, List<LockStatistics>> entry = entries.next();
+			writer.append("\n");
+			quote(entry.getKey(), writer, 2);
+			writer.append(": {");
+			Iterator<LockStatistics> modes = entry.getValue().iterator();
+			while (modes.hasNext()) {
+				LockStatistics stats = modes.next();
+				writer.append("\n");
+				quote(stats.getMode(), writer, 3);
+				writer.append(": {\n");
+				quote("acquisitions", writer, 4);
+				writer.append(": ").append(Long.toString(stats.getAcquisitions())).append(",\n");
+				quote("timeouts", writer, 4);
+				writer.append(": ").append(Long.toString(stats.getTimeouts())).append(",\n");
+				quote("waitMicros", writer, 4);
+				writer.append(": ").append(Long.toString(stats.getWaitTime(TimeUnit.MICROSECONDS))).append(",\n");
+				quote("averageWaitMicros", writer, 4);
+				writer.append(": ").append(Long.toString(stats.getAverageWait(TimeUnit.MICROSECONDS))).append(",\n");
+				quote("longestHoldMicros", writer, 4);
+				writer.append(": ").append(Long.toString(stats.getLongestHold(TimeUnit.MICROSECONDS))).append("\n");
+				indent("}", writer, 3);
+				if (modes.hasNext()) {
+					writer.append(",");
+				}
+			}
+			writer.append("\n");
+			indent("}", writer, 2);
+			if (entries.hasNext()) {
+				writer.append(",");
+			}
+		}
+	}
+
+	/**
+	 * Writes one member of a work queue statistics object followed by a comma
+	 * 
+	 * @param key the name of the statistic
+	 * @param value the value of the statistic
+	 * @param writer the writer to use
+	 * 
+	 * @throws IOException if an IO error occurs
+	 */
+	private static void statistic(String key, Object value, Writer writer) throws IOException {
+		quote(key, writer, 2);
+		writer.append(": ").append(value.toString()).append(",\n");
+	}
+
+	/**
+	 * Writes the members of a work queue statistics object describing a timing,
+	 * each followed by a comma
+	 * 
+	 * @param prefix the name of the timing
+	 * @param timing the durations to write
+	 * @param writer the writer to use
+	 * 
+	 * @throws IOException if an IO error occurs
+	 */
+	private static void timing(String prefix, WorkQueueStatistics.Timing timing, Writer writer) throws IOException {
+		statistic(prefix + "AverageMicros", timing.getAverage(TimeUnit.MICROSECONDS), writer);
+		statistic(prefix + "P50Micros", timing.getPercentile(50, TimeUnit.MICROSECONDS), writer);
+		statistic(prefix + "P99Micros", timing.getPercentile(99, TimeUnit.MICROSECONDS), writer);
+		statistic(prefix + "MaxMicros", timing.getMax(TimeUnit.MICROSECONDS), writer);
+		long[] buckets = timing.getBuckets();
+		// trailing empty buckets are left out
+		int used = buckets.length;
+		while (used > 0 && buckets[used - 1] == 0) {
+			used--;
+		}
+		quote(prefix + "Histogram", writer, 2);
+		writer.append(": [");
+		for (int i = 0; i < used; i++) {
+			writer.append(i > 0 ? ", " : "").append(Long.toString(buckets[i]));
+		}
+		writer.append("],\n");
+	}
+
 	/**
 	 * Indents using 2 spaces by the number of times specified.
 	 *
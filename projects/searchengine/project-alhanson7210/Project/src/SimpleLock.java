@@ -1,3 +1,5 @@
+import java.util.concurrent.TimeUnit;
+
 /**
  * A simple lock used for conditional synchronization as an alternative to using a
  * {@code synchronized} block.
@@ -11,6 +13,16 @@ public interface SimpleLock {
    */
   public void lock();
 
+  /**
+   * Acquires the lock if it becomes available within the given time.
+   *
+   * @param timeout longest time to wait for the lock
+   * @param unit unit of the timeout
+   * @return true if the lock was acquired, false if the time ran out first
+   * @throws InterruptedException if the current thread is interrupted while waiting
+   */
+  public boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException;
+
   /**
    * Releases the lock.
    */
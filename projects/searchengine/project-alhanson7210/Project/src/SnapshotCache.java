@@ -0,0 +1,188 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the latest frozen copy of a word index that is still being written to.
+ * Writers advance the version after every change, and a snapshot is only frozen
+ * again when the version has moved since the last one. Readers get back a single
+ * {@link FrozenWordIndex} they can iterate for as long as they like with no locks
+ * at all, while the crawler keeps writing into the live index.
+ *
+ * Freezing copies the stems and postings but shares the position lists, which
+ * writers copy before changing, so a snapshot costs references rather than a
+ * second copy of every position. It still walks every posting while the read
+ * locks are held, and during a crawl nearly every read comes after a write, so a
+ * snapshot is kept for at least {@link #INTERVAL} even if the index changed.
+ * Readers can see an index that far behind, plus however long it took to freeze.
+ *
+ * A snapshot is tagged with the version read before it was frozen, so it is never
+ * newer than its tag says. At worst a write that just made it in gets frozen
+ * twice. That also makes the tag something searches can validate: a snapshot
+ * whose tag still matches the version holds exactly what the live index does, so
+ * {@link #current(Supplier)} hands it to searches to read with no locks at all.
+ *
+ * @see WordIndex#snapshot()
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class SnapshotCache {
+
+	/** how long a snapshot is kept after it was frozen even if the index changed, in milliseconds */
+	public static final long INTERVAL = 1000;
+
+	/** version of the live index, advanced after every change */
+	private final AtomicLong version;
+
+	/** the latest snapshot or {@code null} if none was made yet */
+	private volatile Snapshot latest;
+
+	/** version seen by the last search that found no current snapshot */
+	private volatile long seenVersion;
+
+	/** when that version was first seen, in nanoseconds */
+	private volatile long seenAt;
+
+	/**
+	 * Constructor for a cache with no snapshot yet
+	 */
+	public SnapshotCache() {
+		this.version = new AtomicLong();
+		this.latest = null;
+		this.seenVersion = -1;
+		this.seenAt = 0;
+	}
+
+	/**
+	 * Marks the live index as changed, called by writers once they are done
+	 */
+	public void advance() {
+		version.incrementAndGet();
+	}
+
+	/**
+	 * get version
+	 * @return the current version of the live index
+	 */
+	public long getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * Determines whether the live index changed since the latest snapshot
+	 *
+	 * @return {@code true} if the next snapshot has to be frozen again
+	 */
+	public boolean isDirty() {
+		Snapshot current = latest;
+		return current == null || current.version != version.get();
+	}
+
+	/**
+	 * Gets the latest snapshot, freezing a new one if the live index changed and
+	 * the latest one is at least {@link #INTERVAL} old
+	 *
+	 * @param freezer freezes the live index, taking whatever locks it needs
+	 * @return a frozen copy at most {@link #INTERVAL} behind the version when this was called
+	 */
+	public FrozenWordIndex get(Supplier<FrozenWordIndex> freezer) {
+		Snapshot current = latest;
+		if (current != null && (current.version == version.get() || current.isRecent())) {
+			return current.index;
+		}
+		//only one reader freezes, the rest wait for its copy
+		synchronized (this) {
+			long tag = version.get();
+			current = latest;
+			if (current == null || (current.version != tag && !current.isRecent())) {
+				current = new Snapshot(tag, freezer.get());
+				latest = current;
+			}
+			return current.index;
+		}
+	}
+
+	/**
+	 * Gets a snapshot holding exactly what the live index does right now, for
+	 * searches to read instead of taking the read locks. If the latest one is
+	 * behind, a new one is only frozen once searches have seen the version stay
+	 * put for {@link #INTERVAL}, so a busy index is not frozen for every search.
+	 *
+	 * @param freezer freezes the live index, taking whatever locks it needs
+	 * @return a frozen copy of the current version, or {@code null} if there is none
+	 */
+	public FrozenWordIndex current(Supplier<FrozenWordIndex> freezer) {
+		long tag = version.get();
+		Snapshot current = latest;
+		if (current != null && current.version == tag) {
+			return current.index;
+		}
+		if (!isQuiet(tag)) {
+			return null;
+		}
+		synchronized (this) {
+			tag = version.get();
+			current = latest;
+			if (current == null || current.version != tag) {
+				current = new Snapshot(tag, freezer.get());
+				latest = current;
+			}
+		}
+		//a write that got in while freezing means the copy is already behind
+		return current.version == version.get() ? current.index : null;
+	}
+
+	/**
+	 * Determines whether searches have seen the same version for at least
+	 * {@link #INTERVAL}. Only a hint, so the two fields are not read together.
+	 *
+	 * @param tag the current version
+	 * @return {@code true} if the index has not changed for a while
+	 */
+	private boolean isQuiet(long tag) {
+		long now = System.nanoTime();
+		if (seenVersion != tag) {
+			seenAt = now;
+			seenVersion = tag;
+			return false;
+		}
+		return now - seenAt >= TimeUnit.MILLISECONDS.toNanos(INTERVAL);
+	}
+
+	/**
+	 * A frozen index and the version it was frozen at
+	 */
+	private static class Snapshot {
+
+		/** version read before freezing */
+		private final long version;
+
+		/** the frozen index */
+		private final FrozenWordIndex index;
+
+		/** when freezing was done, in nanoseconds */
+		private final long frozenAt;
+
+		/**
+		 * Constructor for a snapshot
+		 *
+		 * @param version version read before freezing
+		 * @param index the frozen index
+		 */
+		private Snapshot(long version, FrozenWordIndex index) {
+			this.version = version;
+			this.index = index;
+			this.frozenAt = System.nanoTime();
+		}
+
+		/**
+		 * Determines whether the snapshot was frozen less than {@link #INTERVAL} ago
+		 *
+		 * @return {@code true} if the snapshot can still be handed out after a change
+		 */
+		private boolean isRecent() {
+			return System.nanoTime() - frozenAt < TimeUnit.MILLISECONDS.toNanos(INTERVAL);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * write work queue and index lock statistics as json
+ *
+ */
+public class StatsServlet extends HttpServlet {
+
+	/** Identifier used for serialization (unused). */
+	private static final long serialVersionUID = 1L;
+
+	/** The logger to use for this servlet. */
+	private static Logger log = Log.getRootLogger();
+
+	/** work queues by the name to report them under */
+	private Map<String, WorkQueue> queues;
+
+	/** copies out the lock statistics of the index being served */
+	private Supplier<Map<String, List<LockStatistics>>> locks;
+
+	/**
+	 * Constructor
+	 * @param queues work queues to report on by the name to report them under
+	 * @param locks copies out the read and write statistics of each lock of the index by name
+	 */
+	public StatsServlet(Map<String, WorkQueue> queues, Supplier<Map<String, List<LockStatistics>>> locks) {
+		super();
+		this.queues = queues;
+		this.locks = locks;
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response)
+			throws ServletException, IOException {
+
+		response.setContentType("application/json");
+		response.setStatus(HttpServletResponse.SC_OK);
+
+		log.info("MessageServlet ID " + this.hashCode() + " handling GET request.");
+
+		PrintWriter out = response.getWriter();
+		// copied one queue at a time, each queue is consistent with itself
+		Map<String, WorkQueueStatistics> statistics = new LinkedHashMap<>();
+		for (Map.Entry<String, WorkQueue> queue : queues.entrySet()) {
+			statistics.put(queue.getKey(), queue.getValue().statistics());
+		}
+		SimpleJsonWriter.statisticsToJson(statistics, locks.get(), out);
+		out.printf("%n");
+	}
+}
@@ -0,0 +1,230 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Keeps track of the pending work of one job, such as a single crawl or a batch of
+ * queries, that shares a {@link WorkQueue} with other jobs. Work is still run by
+ * the work queue, but {@link #finish()} only waits for the work added through this
+ * group, so one job can complete without waiting for every other job in the queue.
+ *
+ * Work added through the group from inside a running task, such as a link task
+ * adding the links it found, is counted before that task completes, so the group
+ * is not finished until all of it is done.
+ *
+ * @see WorkQueue#newGroup()
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class TaskGroup {
+
+	/** root logger */
+	private static final Logger log = LogManager.getRootLogger();
+
+	/** work queue that runs the work */
+	private final WorkQueue tasks;
+
+	/** amount of pending (or unfinished) work added through this group */
+	private int pending;
+
+	/** lock used for synchronized access of the pending count */
+	private final Object lock;
+
+	/**
+	 * Constructor for an empty group
+	 *
+	 * @param tasks work queue to run the work of the group
+	 */
+	public TaskGroup(WorkQueue tasks) {
+		this.tasks = tasks;
+		this.pending = 0;
+		this.lock = new Object();
+	}
+
+	/**
+	 * Adds a work request to the work queue as part of this group
+	 *
+	 * @param r work request (in the form of a {@link Runnable} object)
+	 * @throws RejectedExecutionException the queue is full and rejects overflowing work
+	 */
+	public void execute(Runnable r) throws RejectedExecutionException {
+		synchronized (lock) {
+			pending++;
+		}
+		try {
+			tasks.execute(new GroupTask(r));
+		} catch (RejectedExecutionException e) {
+			done(1);
+			throw e;
+		}
+	}
+
+	/**
+	 * Adds many work requests to the work queue at once as part of this group. A
+	 * queue that rejects overflowing work gets them one at a time instead, so the
+	 * group knows exactly which ones were rejected.
+	 *
+	 * @param requests work requests (in the form of {@link Runnable} objects)
+	 * @throws RejectedExecutionException the queue is full and rejects overflowing work
+	 *
+	 * @see WorkQueue#executeAll(Collection)
+	 */
+	public void executeAll(Collection<? extends Runnable> requests) throws RejectedExecutionException {
+		if (tasks.policy() == WorkQueue.OverflowPolicy.REJECT) {
+			for (Runnable r : requests) {
+				execute(r);
+			}
+			return;
+		}
+		List<GroupTask> wrapped = new ArrayList<>(requests.size());
+		for (Runnable r : requests) {
+			wrapped.add(new GroupTask(r));
+		}
+		synchronized (lock) {
+			pending += wrapped.size();
+		}
+		tasks.executeAll(wrapped);
+	}
+
+	/**
+	 * Adds a work request like {@link #execute(Runnable)}, but runs it in the
+	 * calling thread if the queue rejects it. Meant for jobs such as building an
+	 * index, where dropping any of the work would leave the result incomplete.
+	 *
+	 * @param r work request (in the form of a {@link Runnable} object)
+	 */
+	public void executeOrRun(Runnable r) {
+		try {
+			execute(r);
+		} catch (RejectedExecutionException e) {
+			log.debug("Work queue is full, running the rejected work in the calling thread");
+			try {
+				r.run();
+			} catch (RuntimeException ex) {
+				// same as a worker, the caller should not fail because of the work
+				log.warn("Warning: Rejected work encountered an exception while running.");
+			}
+		}
+	}
+
+	/**
+	 * Adds many work requests like {@link #executeAll(Collection)}, but runs any
+	 * the queue rejects in the calling thread
+	 *
+	 * @param requests work requests (in the form of {@link Runnable} objects)
+	 *
+	 * @see #executeOrRun(Runnable)
+	 */
+	public void executeAllOrRun(Collection<? extends Runnable> requests) {
+		if (tasks.policy() != WorkQueue.OverflowPolicy.REJECT) {
+			executeAll(requests);
+			return;
+		}
+		for (Runnable r : requests) {
+			executeOrRun(r);
+		}
+	}
+
+	/**
+	 * Waits for all pending work of this group to be finished
+	 *
+	 * @throws InterruptedException if interrupted
+	 */
+	public void finish() throws InterruptedException {
+		synchronized (lock) {
+			while (pending > 0) {
+				lock.wait();
+			}
+		}
+	}
+
+	/**
+	 * Waits at most the given time for all pending work of this group to be finished
+	 *
+	 * @param timeout longest time to wait
+	 * @param unit unit of the timeout
+	 * @return true if the work finished, false if the time ran out first
+	 * @throws InterruptedException if interrupted
+	 */
+	public boolean finish(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized (lock) {
+			while (pending > 0) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					return false;
+				}
+				TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Returns the amount of pending work of this group
+	 *
+	 * @return number of work requests added through this group and not done yet
+	 */
+	public int pending() {
+		synchronized (lock) {
+			return pending;
+		}
+	}
+
+	/**
+	 * Determines whether all work of this group is done
+	 *
+	 * @return true if there is no pending work left
+	 */
+	public boolean isDone() {
+		return pending() == 0;
+	}
+
+	/**
+	 * Counts work of the group as done, waking up threads waiting for the group
+	 * once nothing is pending
+	 *
+	 * @param count amount of work done
+	 */
+	private void done(int count) {
+		synchronized (lock) {
+			pending -= count;
+			if (pending == 0) {
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Runs work of the group and counts it as done afterwards, even if it failed
+	 */
+	private class GroupTask implements Runnable {
+
+		/** work to run */
+		private final Runnable r;
+
+		/**
+		 * Constructor
+		 *
+		 * @param r work to run
+		 */
+		private GroupTask(Runnable r) {
+			this.r = r;
+		}
+
+		@Override
+		public void run() {
+			try {
+				r.run();
+			} finally {
+				done(1);
+			}
+		}
+	}
+}
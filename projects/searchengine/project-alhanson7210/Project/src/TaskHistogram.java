@@ -0,0 +1,102 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in buckets that double in size, so a few dozen counters cover
+ * everything from a microsecond to hours. Bucket {@code i} counts durations of at
+ * least {@code 2^i} and less than {@code 2^(i+1)} microseconds, except the first
+ * bucket which also counts anything shorter. Recording is a single atomic
+ * increment, so any number of threads can record at once without locking.
+ *
+ * @see WorkQueueStatistics
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class TaskHistogram {
+
+	/** number of buckets, the last one counts everything longer */
+	public static final int BUCKETS = 40;
+
+	/** count of durations in each bucket */
+	private final AtomicLongArray counts;
+
+	/** total of every duration recorded in nanoseconds, after the counts */
+	private final AtomicLongArray totals;
+
+	/**
+	 * Constructor for an empty histogram
+	 */
+	public TaskHistogram() {
+		this.counts = new AtomicLongArray(BUCKETS);
+		this.totals = new AtomicLongArray(2);
+	}
+
+	/**
+	 * Records a duration
+	 *
+	 * @param nanos duration in nanoseconds
+	 */
+	public void record(long nanos) {
+		long micros = Math.max(0, nanos) / 1000;
+		int bucket = micros <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(micros);
+		counts.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+		totals.addAndGet(0, Math.max(0, nanos));
+		totals.accumulateAndGet(1, nanos, Math::max);
+	}
+
+	/**
+	 * Copies the counts of every bucket
+	 *
+	 * @return the count of each bucket
+	 */
+	public long[] buckets() {
+		long[] copy = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			copy[i] = counts.get(i);
+		}
+		return copy;
+	}
+
+	/**
+	 * Gets the total of every duration recorded
+	 *
+	 * @return the total in nanoseconds
+	 */
+	public long total() {
+		return totals.get(0);
+	}
+
+	/**
+	 * Gets the longest duration recorded
+	 *
+	 * @return the longest duration in nanoseconds
+	 */
+	public long max() {
+		return totals.get(1);
+	}
+
+	/**
+	 * Estimates a percentile from bucket counts, as the upper bound of the bucket
+	 * it falls in
+	 *
+	 * @param buckets count of each bucket
+	 * @param percentile between 0 and 100
+	 * @return an upper bound of the percentile in microseconds, or 0 if nothing was counted
+	 */
+	public static long percentile(long[] buckets, double percentile) {
+		long count = Arrays.stream(buckets).sum();
+		if (count == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100);
+		long seen = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			seen += buckets[i];
+			if (seen >= Math.max(1, rank)) {
+				return 2L << i;
+			}
+		}
+		return 2L << (buckets.length - 1);
+	}
+}
@@ -0,0 +1,320 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable, sorted list of stems stored front-coded inside a single byte
+ * array. Stems are grouped into blocks of {@link #BLOCK_SIZE}. The first stem of
+ * each block (the head) is stored in full, and every other stem only stores how
+ * many bytes it shares with the stem before it plus the bytes that differ. Since
+ * sorted stems tend to share long prefixes this is much smaller than keeping a
+ * separate {@link String} per stem.
+ *
+ * Lookups binary search over the block heads and then decode at most one block.
+ * Iterating decodes stems one after another, so walking the whole dictionary or
+ * a prefix range never searches again.
+ *
+ * Stems must be given in strictly increasing {@link String#compareTo(String)}
+ * order, which is the order a {@link java.util.TreeMap} keeps them in.
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class TermDictionary extends AbstractList<String> {
+
+	/** number of stems in each front-coded block */
+	public static final int BLOCK_SIZE = 16;
+
+	/** bits of a length stored in each encoded byte */
+	private static final int VARINT_BITS = 7;
+
+	/** set on an encoded byte when more bytes of the same length follow */
+	private static final int VARINT_MORE = 0x80;
+
+	/** every block, back to back */
+	private final byte[] data;
+
+	/** offset of each block within the data */
+	private final int[] blockOffsets;
+
+	/** number of stems stored */
+	private final int size;
+
+	/**
+	 * Encodes the stems into front-coded blocks
+	 *
+	 * @param sortedTerms stems in strictly increasing order
+	 * @throws IllegalArgumentException the stems were not in strictly increasing order
+	 */
+	public TermDictionary(Collection<String> sortedTerms) throws IllegalArgumentException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		blockOffsets = new int[(sortedTerms.size() + BLOCK_SIZE - 1) / BLOCK_SIZE];
+		String previousTerm = null;
+		byte[] previous = null;
+		int count = 0;
+		for (String term : sortedTerms) {
+			if (previousTerm != null && previousTerm.compareTo(term) >= 0) {
+				throw new IllegalArgumentException("Stems are not in increasing order at " + term);
+			}
+			byte[] current = term.getBytes(StandardCharsets.UTF_8);
+			//block heads are stored in full
+			int shared = 0;
+			if (count % BLOCK_SIZE == 0) {
+				blockOffsets[count / BLOCK_SIZE] = out.size();
+			}
+			else {
+				shared = sharedPrefix(previous, current);
+				writeLength(out, shared);
+			}
+			writeLength(out, current.length - shared);
+			out.write(current, shared, current.length - shared);
+			previousTerm = term;
+			previous = current;
+			count++;
+		}
+		data = out.toByteArray();
+		size = count;
+	}
+
+	/**
+	 * Finds the ordinal of a stem
+	 *
+	 * @param term the stem to lookup
+	 * @return ordinal of the stem, or {@code -(insertion point) - 1} if it is missing
+	 */
+	public int indexOf(String term) {
+		if (term == null || size == 0) {
+			return -1;
+		}
+		//last block whose head is not greater than the stem
+		int low = 0;
+		int high = blockOffsets.length - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (head(middle).compareTo(term) <= 0) {
+				low = middle;
+			}
+			else {
+				high = middle - 1;
+			}
+		}
+		//scan the one block it could be in
+		Cursor cursor = new Cursor(low * BLOCK_SIZE);
+		int blockEnd = Math.min(size, (low + 1) * BLOCK_SIZE);
+		while (cursor.ordinal < blockEnd) {
+			int ordinal = cursor.ordinal;
+			int compare = cursor.next().compareTo(term);
+			if (compare == 0) {
+				return ordinal;
+			}
+			if (compare > 0) {
+				return -(ordinal + 1);
+			}
+		}
+		return -(blockEnd + 1);
+	}
+
+	/**
+	 * Finds the ordinal of the first stem that is not less than a given stem. All
+	 * the stems starting with a prefix come right after this ordinal of the prefix.
+	 *
+	 * @param term the stem or prefix to lookup
+	 * @return ordinal of the first stem not less than the given one, or the size if
+	 *         there is none
+	 */
+	public int lowerBound(String term) {
+		int ordinal = indexOf(term);
+		return ordinal >= 0 ? ordinal : -(ordinal + 1);
+	}
+
+	/**
+	 * Decodes the stem with a given ordinal
+	 *
+	 * @param ordinal position of the stem in sorted order
+	 * @return the stem
+	 * @throws IndexOutOfBoundsException ordinal is negative or not less than the size
+	 */
+	@Override
+	public String get(int ordinal) throws IndexOutOfBoundsException {
+		if (ordinal < 0 || ordinal >= size) {
+			throw new IndexOutOfBoundsException("Index " + ordinal + " out of bounds for size " + size);
+		}
+		//decode from the head of the block up to the ordinal
+		Cursor cursor = new Cursor(ordinal - ordinal % BLOCK_SIZE);
+		String term = cursor.next();
+		while (cursor.ordinal <= ordinal) {
+			term = cursor.next();
+		}
+		return term;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Determines whether a stem is stored in the dictionary
+	 *
+	 * @param o the stem to lookup
+	 * @return {@code true} if the stem is stored
+	 */
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof String && indexOf((String) o) >= 0;
+	}
+
+	/**
+	 * Iterates over every stem in sorted order
+	 *
+	 * @return an iterator decoding one stem at a time
+	 */
+	@Override
+	public Iterator<String> iterator() {
+		return iterator(0);
+	}
+
+	/**
+	 * Iterates over the stems in sorted order starting at an ordinal
+	 *
+	 * @param from ordinal of the first stem to return
+	 * @return an iterator decoding one stem at a time
+	 */
+	public Iterator<String> iterator(int from) {
+		return new Cursor(Math.max(0, Math.min(from, size)));
+	}
+
+	/**
+	 * Returns the number of bytes used for the encoded stems
+	 *
+	 * @return size of the encoded stems in bytes
+	 */
+	public int encodedSize() {
+		return data.length;
+	}
+
+	/**
+	 * Decodes the first stem of a block
+	 *
+	 * @param block index of the block
+	 * @return the head stem of the block
+	 */
+	private String head(int block) {
+		int[] offset = { blockOffsets[block] };
+		int length = readLength(offset);
+		return new String(data, offset[0], length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads a variable length number from the data
+	 *
+	 * @param offset single element array holding the offset, moved past the number
+	 * @return the number read
+	 */
+	private int readLength(int[] offset) {
+		int value = 0;
+		int shift = 0;
+		byte current;
+		do {
+			current = data[offset[0]++];
+			value |= (current & (VARINT_MORE - 1)) << shift;
+			shift += VARINT_BITS;
+		} while ((current & VARINT_MORE) != 0);
+		return value;
+	}
+
+	/**
+	 * Writes a variable length number, 7 bits at a time
+	 *
+	 * @param out where to write
+	 * @param value the number to write
+	 */
+	private static void writeLength(ByteArrayOutputStream out, int value) {
+		while ((value & ~(VARINT_MORE - 1)) != 0) {
+			out.write((value & (VARINT_MORE - 1)) | VARINT_MORE);
+			value >>>= VARINT_BITS;
+		}
+		out.write(value);
+	}
+
+	/**
+	 * Counts the bytes two stems start with in common
+	 *
+	 * @param previous bytes of the previous stem
+	 * @param current bytes of the current stem
+	 * @return number of leading bytes shared
+	 */
+	private static int sharedPrefix(byte[] previous, byte[] current) {
+		int mismatch = Arrays.mismatch(previous, current);
+		return mismatch < 0 ? previous.length : mismatch;
+	}
+
+	/**
+	 * Decodes stems one after another, starting from the head of the block of an
+	 * ordinal and skipping ahead to it.
+	 */
+	private class Cursor implements Iterator<String> {
+
+		/** ordinal of the next stem returned */
+		private int ordinal;
+
+		/** offset of the next encoded stem */
+		private final int[] offset;
+
+		/** bytes of the last decoded stem */
+		private byte[] buffer;
+
+		/** number of bytes used in the buffer */
+		private int length;
+
+		/**
+		 * Starts decoding at an ordinal
+		 *
+		 * @param from ordinal of the first stem to return
+		 */
+		private Cursor(int from) {
+			int block = from / BLOCK_SIZE;
+			ordinal = block * BLOCK_SIZE;
+			offset = new int[] { block < blockOffsets.length ? blockOffsets[block] : data.length };
+			buffer = new byte[32];
+			length = 0;
+			//decode up to the starting ordinal
+			while (ordinal < from) {
+				advance();
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return ordinal < size;
+		}
+
+		@Override
+		public String next() {
+			if (ordinal >= size) {
+				throw new NoSuchElementException();
+			}
+			advance();
+			return new String(buffer, 0, length, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Decodes the next stem into the buffer without making a string
+		 */
+		private void advance() {
+			int shared = ordinal % BLOCK_SIZE == 0 ? 0 : readLength(offset);
+			int suffix = readLength(offset);
+			length = shared + suffix;
+			if (length > buffer.length) {
+				buffer = Arrays.copyOf(buffer, Math.max(length, buffer.length * 2));
+			}
+			System.arraycopy(data, offset[0], buffer, shared, suffix);
+			offset[0] += suffix;
+			ordinal++;
+		}
+	}
+}
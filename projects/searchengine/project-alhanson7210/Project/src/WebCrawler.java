@@ -8,7 +8,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -23,14 +26,20 @@ public class WebCrawler {
 	private static final Logger log = LogManager.getRootLogger();
 	/** default value for the link crawling limit */
 	public static int DEFAULT = 50;
-	/** index */
-	private MultithreadedWordIndex index;
+	/** default number of fetches in flight when fetching has its own work queue */
+	public static final int DEFAULT_FETCHERS = 64;
+	/** index of the last crawl to finish, frozen so searches read front-coded stems and flat postings */
+	private volatile WordIndex index;
+	/** lock statistics of the thread safe index of the last crawl, copied out before it was frozen */
+	private volatile Map<String, List<LockStatistics>> crawlLocks;
 	/** work queue */
 	private WorkQueue tasks; 
+	/** work queue the link tasks run on, mostly waiting on fetches */
+	private final WorkQueue fetchers;
+	/** caps how many link tasks clean and stem at once */
+	private final Semaphore cpuLimit;
 	/** list of urls*/
 	private Set<URL> accumulator;
-	/** url used for crawl */
-	private URL seedUrl;
 	/** seed url*/
 	private String seed; 
 	/** limit */
@@ -42,27 +51,51 @@ public class WebCrawler {
 	 * @param limit upper bound for when to stop looking for web links
 	 */
 	public WebCrawler(WorkQueue tasks, String seed, int limit) {
+		this(tasks, tasks, seed, limit);
+	}
+	
+	/**
+	 * Constructor for fetching on a separate work queue. Link tasks spend most of
+	 * their time waiting on sockets, so the fetch queue can have far more threads
+	 * than there are processors. Cleaning and stemming the fetched html is still
+	 * capped at the number of threads of the main work queue.
+	 * @param tasks work queue for queries, whose size caps the cleaning and stemming
+	 * @param fetchers work queue to create link tasks for
+	 * @param seed uniform resource locator as text information
+	 * @param limit upper bound for when to stop looking for web links
+	 */
+	public WebCrawler(WorkQueue tasks, WorkQueue fetchers, String seed, int limit) {
 		this.tasks = tasks;
+		this.fetchers = fetchers;
+		this.cpuLimit = new Semaphore(Math.max(1, tasks.size()));
 		this.accumulator = new HashSet<>();
 		this.seed = seed;
 		this.limit = limit;
+		this.index = new WordIndex().freeze();
+		this.crawlLocks = Collections.emptyMap();
 	}
 	
 	/**
-	 * Crawl from a seed url
+	 * Crawl from a seed url. The pages are added to a thread safe index, which is
+	 * frozen once the crawl is done since nothing is added to it afterwards.
+	 * Searches keep reading the index of the previous crawl until then.
 	 * @return seed built index from seed url
 	 * @throws MalformedURLException Failed to format a given url
 	 * @throws InterruptedException the work queue was interrupted
 	 */
 	public WordIndex crawlFromSeedUrl() 
 			throws MalformedURLException, InterruptedException {
-		seedUrl = new URL(seed);
-		accumulator.add(seedUrl);
-		MultithreadedWordIndex index = new MultithreadedWordIndex();
-		this.index = index;
-		crawl();
-		tasks.finish();
-		return index;
+		URL seedUrl = new URL(seed);
+		synchronized(accumulator) {
+			accumulator.add(seedUrl);
+		}
+		MultithreadedWordIndex crawled = new MultithreadedWordIndex();
+		//only wait for this crawl, not everything else in the queue
+		crawl(seedUrl, crawled).finish();
+		crawlLocks = crawled.lockStatistics();
+		WordIndex frozen = crawled.freeze();
+		index = frozen;
+		return frozen;
 	}
 	/**
 	 * Crawl from a new seed url and increase the limit
@@ -79,12 +112,16 @@ public class WebCrawler {
 	}
 	
 	/**
-	 * Crawl a seed url for stems to add to the index
-	 * @throws MalformedURLException Failed to format a given url
+	 * Crawl a seed url for stems to add to an index
+	 * @param seedUrl url to start crawling from
+	 * @param crawled thread safe index to add the crawled pages to
+	 * @return the group of link tasks for this crawl, to wait for it to be done
 	 */
-	public void crawl() throws MalformedURLException {
-		LinkTask task = new LinkTask(seedUrl);
-		tasks.execute(task);
+	public TaskGroup crawl(URL seedUrl, WordIndex crawled) {
+		TaskGroup group = fetchers.newGroup();
+		LinkTask task = new LinkTask(seedUrl, group, crawled);
+		group.executeOrRun(task);
+		return group;
 	}
 	
 	/**
@@ -118,6 +155,17 @@ public class WebCrawler {
 	 * @return return matches for a given multi-word search
 	 */
 	public List<ComparableSearchResult> searchQuery(String search, boolean exact) {
+		return searchQuery(search, exact, WordIndex.ALL_RESULTS);
+	}
+	
+	/**
+	 * parse and search query string, keeping only the best results
+	 * @param search multi-word query from search engine
+	 * @param exact delegate for deciding which search algorithm to use
+	 * @param limit number of results to keep, or {@link WordIndex#ALL_RESULTS} to keep every result
+	 * @return return the best matches for a given multi-word search
+	 */
+	public List<ComparableSearchResult> searchQuery(String search, boolean exact, int limit) {
 		if (search == null) {
 			return Collections.emptyList();
 		}
@@ -125,13 +173,22 @@ public class WebCrawler {
 		List<String> queryWords = new ArrayList<>();
 		try {
 			queryWords.addAll(TextFileStemmer.uniqueStems(search));
-			results.addAll(exact? index.exactSearch(queryWords) : index.partialSearch(queryWords));
+			results.addAll(exact? index.exactSearch(queryWords, limit) : index.partialSearch(queryWords, limit));
 		} catch (Exception e) {
 			log.warn("Regardless of the exception, failed to get the stems for the " + search);
 		}
 		return results;
 	}
 	
+	/**
+	 * Gets the lock statistics of the thread safe index of the last crawl, which
+	 * is frozen once the crawl is done
+	 * @return the read and write statistics of each lock by its name
+	 */
+	public Map<String, List<LockStatistics>> lockStatistics() {
+		return crawlLocks;
+	}
+	
 	/**
 	 * Get accumulator set of urls
 	 * @return set of urls
@@ -154,19 +211,36 @@ public class WebCrawler {
 		private String webLink;
 		/** html */ 
 		private String seedHtml;
+		/** group of link tasks of the crawl */
+		private final TaskGroup group;
+		/** thread safe index of the crawl, where the page is added */
+		private final WordIndex crawled;
 		/**
 		 * constructor
 		 * @param url web link to parse html for
+		 * @param group group of link tasks of the crawl, where found links are added
+		 * @param crawled thread safe index of the crawl, where the page is added
 		 */
-		public LinkTask(URL url) {
+		public LinkTask(URL url, TaskGroup group, WordIndex crawled) {
 			this.url = url;
+			this.group = group;
+			this.crawled = crawled;
 			webLinks = new ArrayList<>();
 		}
 		
 		@Override
 		public void run() {
 			if (urlIsValid()) {
-				parseUrl();
+				List<LinkTask> links;
+				//fetching is waiting, parsing is working
+				cpuLimit.acquireUninterruptibly();
+				try {
+					links = parseUrl();
+				} finally {
+					cpuLimit.release();
+				}
+				//a full queue can run the links in this thread, so nothing can be held here
+				addLinkTasks(links);
 			}
 		}
 		
@@ -181,14 +255,17 @@ public class WebCrawler {
 		
 		/**
 		 * Parsing process for a given url
+		 * @return link tasks for the new links found, to add once nothing is held
 		 */
-		private void parseUrl() {
+		private List<LinkTask> parseUrl() {
 			try {
 				 parseHtml();
-				 addUrls();
+				 List<LinkTask> links = addUrls();
 				 addParsedHtml();
+				 return links;
 			} catch (MalformedURLException e) {
 				log.info("Thread #" + Thread.currentThread().getId() + " failed parse a list of web links for: " + url.toString());
+				return Collections.emptyList();
 			}
 		}
 		
@@ -207,25 +284,51 @@ public class WebCrawler {
 		}
 		
 		/**
-		 * from text file stemmer
+		 * Claims the links that have not been seen yet, up to the limit
+		 * @return link tasks for the claimed links
 		 */
-		private void addUrls() {
+		private List<LinkTask> addUrls() {
+			List<LinkTask> links = new ArrayList<>();
 			synchronized(accumulator) {
 				for (URL link : webLinks) {
-					addLink(link);
+					addLink(link, links);
 				}
 			}
+			return links;
 		}
 		
 		/** 
 		 * add clean link to 
 		 * @param link web link from parsed html content
+		 * @param links link tasks to add the link task to
 		 */
-		private final void addLink(URL link) {
+		private final void addLink(URL link, List<LinkTask> links) {
 			if (accumulator.size() < limit && !accumulator.contains(link)) {
 				accumulator.add(link);
-				LinkTask webLink = new LinkTask(link);
-				tasks.execute(webLink);
+				links.add(new LinkTask(link, group, crawled));
+			}
+		}
+		
+		/**
+		 * Adds link tasks to the crawl. Called without holding the accumulator or a
+		 * cpu permit, since a full queue may run a link task in this thread. If the
+		 * queue rejects a link, it and the links after it are let go of so they can
+		 * be claimed again by a later page.
+		 * @param links link tasks for the claimed links
+		 */
+		private void addLinkTasks(List<LinkTask> links) {
+			for (int i = 0; i < links.size(); i++) {
+				try {
+					group.execute(links.get(i));
+				} catch (RejectedExecutionException e) {
+					synchronized(accumulator) {
+						for (LinkTask rejected : links.subList(i, links.size())) {
+							accumulator.remove(rejected.url);
+						}
+					}
+					log.warn("Work queue is full, " + (links.size() - i) + " links found on " + url + " were not crawled");
+					return;
+				}
 			}
 		}
 		
@@ -237,8 +340,8 @@ public class WebCrawler {
 			webLink = url.toString();
 			WordIndex wordMapping = new WordIndex();
 			TextFileStemmer.parseHtml(wordMapping, webLink, seedHtml);
-			index.addAll(wordMapping, webLink);
-			index.addFileCount(webLink, wordMapping.getFileCount(webLink));
+			MergeSummary summary = crawled.merge(wordMapping);
+			log.debug(summary);
 		}
 	}
 }
@@ -1,17 +1,27 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.TreeSet;
-import java.util.function.Function;
 
 /**
  * A special type of {@link Index} that indexes the locations from a file to the
- * stems found.
+ * stems found. Locations are stored once in a {@link DocumentDictionary} and
+ * everything else refers to them by their integer id. Positions are compressed
+ * once all of them have been added for a file.
+ *
+ * Documents can be removed or replaced. Removing a document only marks its id
+ * with a tombstone, which searches and lookups skip over, and gives its location
+ * a new id for whatever is added next. The postings of removed documents are
+ * purged by {@link #compact()} once enough of the documents are tombstones.
  *
  * @author CS 212 Software Development
  * @author University of San Francisco
@@ -20,14 +30,32 @@ import java.util.function.Function;
  */
 public class WordIndex implements Index<String> {
 	
+	/** search limit that keeps every result */
+	public static final int ALL_RESULTS = 0;
+	
+	/** share of the stored documents that can be tombstones before compacting */
+	public static final double COMPACTION_THRESHOLD = 0.2;
+	
 	/** List of search queries and their results */
 	private final TreeMap<String, List<ComparableSearchResult>> queries;
 	
 	/** wordIndex that stores all collected stems */
-	private final TreeMap<String, Map<String, Collection<Integer>>> wordIndex;
+	private final TreeMap<String, PostingList> wordIndex;
+	
+	/** ids for every file path or url in the word index */
+	private final DocumentDictionary documents;
+	
+	/** word count for each document id in word index */
+	private int[] wordCount;
 	
-	/** word count for each file in word index */
-	private final TreeMap<String, Integer> wordCount;
+	/** ids of every removed document */
+	private final BitSet removed;
+	
+	/** removed documents whose postings have not been purged yet */
+	private int tombstones;
+	
+	/** removed documents whose postings were purged */
+	private int purged;
 
 	/**
 	 * A special type of {@link Index} that indexes the locations words were found.
@@ -35,7 +63,11 @@ public class WordIndex implements Index<String> {
 	 */
 	public WordIndex() {
 		wordIndex = new TreeMap<>();
-		wordCount = new TreeMap<>();
+		documents = new DocumentDictionary();
+		wordCount = new int[0];
+		removed = new BitSet();
+		tombstones = 0;
+		purged = 0;
 		queries = new TreeMap<>();
 	}
 	
@@ -47,53 +79,78 @@ public class WordIndex implements Index<String> {
 	 * @return a sorted list of comparable search results
 	 */
 	public List<ComparableSearchResult> exactSearch(List<String> queryWords) {
-		//matches found in file(s)
-		HashMap<String, ComparableSearchResult> matches = new HashMap<>();
+		return exactSearch(queryWords, ALL_RESULTS);
+	}
+	
+	/**
+	 * Finds all exact matches and generates a list of only the best search results
+	 * 
+	 * @param queryWords list of unique query searches
+	 * @param limit number of results to keep, or {@link #ALL_RESULTS} to keep every result
+	 * 
+	 * @return a sorted list of at most limit comparable search results
+	 */
+	public List<ComparableSearchResult> exactSearch(List<String> queryWords, int limit) {
+		//matches are scored one document at a time
+		PostingsMerger matches = new PostingsMerger(this);
 		//loop through query words
 		for (String queryWord: queryWords) {
-			//exact match was found
-			if(wordIndex.containsKey(queryWord)) {
-				//add result
-				ComparableSearchResult.addSearchResults(this, queryWord, matches);
-			}
+			//add results, stems not in the index have no postings
+			matches.add(cursor(queryWord));
 		}
-		//return sorted results
-		return ComparableSearchResult.resultSorter(matches.values());
+		//return the best results sorted
+		return matches.results(limit);
 	}
 	
 	/**
-	 * Finds all partial matches and generates a list of search results
+	 * Finds all partial matches and generates a list of search results. Each
+	 * query word seeks straight to the stems starting with it instead of checking
+	 * every stem in the index, and a query word that starts with another query word
+	 * is skipped since its stems were already found.
 	 * 
 	 * @param queryWords list of unique query searches
 	 * 
 	 * @return a sorted list of comparable search results
 	 */
 	public List<ComparableSearchResult> partialSearch(List<String> queryWords) {
-		//matches found in file(s)
-		HashMap<String, ComparableSearchResult> matches = new HashMap<>();
-		Set<String> keySet = wordIndex.keySet();
-		//loop through key set
-		for (String key : keySet) {
-			//loop through query words
-			partialHelper(queryWords, matches, key);
-		}
-		//return sorted results
-		return ComparableSearchResult.resultSorter(matches.values());
+		return partialSearch(queryWords, ALL_RESULTS);
 	}
 	
 	/**
-	 * helper method to add search result to the results object
+	 * Finds all partial matches and generates a list of only the best search
+	 * results. Short prefixes can match most of the index, so only the results
+	 * kept are sorted.
+	 * 
 	 * @param queryWords list of unique query searches
-	 * @param matches found in file
-	 * @param key from the index
+	 * @param limit number of results to keep, or {@link #ALL_RESULTS} to keep every result
+	 * 
+	 * @return a sorted list of at most limit comparable search results
 	 */
-	private void partialHelper(List<String> queryWords, HashMap<String, ComparableSearchResult> matches, String key) {
-		for (String queryWord: queryWords) {
-			//partial match was found
-			if (key.startsWith(queryWord)) {
-				//add result
-				ComparableSearchResult.addSearchResults(this, key, matches);
+	public List<ComparableSearchResult> partialSearch(List<String> queryWords, int limit) {
+		//matches are scored one document at a time
+		PostingsMerger matches = new PostingsMerger(this);
+		//a stem is counted once for every query word it starts with
+		for (String queryWord : queryWords) {
+			partialHelper(queryWord, matches);
+		}
+		//return the best results sorted
+		return matches.results(limit);
+	}
+	
+	/**
+	 * helper method to add search results for every stem starting with a query word
+	 * @param queryWord prefix to search for
+	 * @param matches postings of every stem found so far
+	 */
+	private void partialHelper(String queryWord, PostingsMerger matches) {
+		//stems are sorted so the matches are the keys from the query word on
+		for (Map.Entry<String, PostingList> entry : wordIndex.tailMap(queryWord, true).entrySet()) {
+			//past the last stem starting with the query word
+			if (!entry.getKey().startsWith(queryWord)) {
+				break;
 			}
+			//add result
+			matches.add(cursor(entry.getValue()));
 		}
 	}
 	
@@ -111,13 +168,43 @@ public class WordIndex implements Index<String> {
 		//checking validity
 		if (stem != null && filePath != null && position > 0) {
 			//Adds the element and position from a given file.
-			wordIndex.putIfAbsent(stem, new TreeMap<>());
-			wordIndex.get(stem).putIfAbsent(filePath, new TreeSet<Integer>());
-			return wordIndex.get(stem).get(filePath).add(position);
+			return addPosition(stem, documents.getId(filePath), position);
 		}
 		return false;
 	}
 	
+	/**
+	 * Adds all positions of a stem from a given file path, looking up the
+	 * position list once instead of once per position.
+	 * 
+	 * @param stem the element found
+	 * @param filePath file path to which the stem was found in
+	 * @param positions list of the positions found for a stem
+	 * 
+	 * @return boolean if all were added
+	 */
+	@Override
+	public boolean addAll(String stem, String filePath, Collection<Integer> positions) {
+		//checks for null return from index and checks validity of positions
+		if (stem == null || filePath == null || positions == null) {
+			return false;
+		}
+		//one lookup for the stem and file path
+		int document = documents.getId(filePath);
+		PostingList postings = wordIndex.computeIfAbsent(stem, k -> new PostingList());
+		//attempts to add all positions
+		for (Integer position : positions) {
+			//stops if a failure occurs
+			if (position == null || position <= 0 || !postings.add(document, position.intValue())) {
+				return false;
+			}
+		}
+		//the positions for this file are done
+		postings.compress(document);
+		//added all elements
+		return true;
+	}
+	
 	/**
 	 * Building this word index up from another word index
 	 * @param local another inverted index
@@ -125,21 +212,440 @@ public class WordIndex implements Index<String> {
 	 * @return true if able to add all from local word index
 	 */
 	public boolean addAll(WordIndex local, String correctedFilePath) {
-		Map<String, Map<String, Collection<Integer>>> localIndex = local.wordIndex;
-		for(String stem : localIndex.keySet()) {
-			if (!this.wordIndex.containsKey(stem)) {
-				this.wordIndex.putIfAbsent(stem, localIndex.get(stem));
-			}
-			else if (!this.wordIndex.get(stem).containsKey(correctedFilePath)) {
-				this.wordIndex.get(stem).putIfAbsent(correctedFilePath, localIndex.get(stem).get(correctedFilePath));
+		int localDocument = local.documents.findId(correctedFilePath);
+		if (localDocument == DocumentDictionary.MISSING) {
+			return true;
+		}
+		int document = documents.getId(correctedFilePath);
+		for (Entry<String, PostingList> entry : local.wordIndex.entrySet()) {
+			PositionList localPositions = entry.getValue().get(localDocument);
+			if (localPositions == null) {
+				continue;
 			}
-			else if (!this.wordIndex.get(stem).get(correctedFilePath).addAll(localIndex.get(stem).get(correctedFilePath))) {
+			PostingList postings = this.wordIndex.computeIfAbsent(entry.getKey(), k -> new PostingList());
+			//the positions for this file are done
+			localPositions.compress();
+			if (!postings.addAll(document, localPositions)) {
 				return false;
 			}
 		}
 		return true;
 	}
 	
+	/**
+	 * Moves everything from a word index built for a single document into this
+	 * one, including its word count. Position lists are moved over as a whole
+	 * rather than added one position at a time, and each stem is only looked up
+	 * once. The local index gives up its position lists, so it should not be used
+	 * afterwards.
+	 * 
+	 * @param local word index with the stems of a single document
+	 * @return a summary of what was moved over
+	 * @throws IllegalArgumentException the local index has more than one document
+	 */
+	public MergeSummary merge(WordIndex local) throws IllegalArgumentException {
+		if (local.documents.size() > 1) {
+			throw new IllegalArgumentException("Only a word index with a single document can be merged");
+		}
+		//nothing was found in the document
+		if (local.documents.size() == 0) {
+			return new MergeSummary(null);
+		}
+		String location = local.documents.getLocation(0);
+		int document = documents.getId(location);
+		MergeSummary summary = new MergeSummary(location);
+		for (Entry<String, PostingList> entry : local.wordIndex.entrySet()) {
+			PostingList localPostings = entry.getValue();
+			if (localPostings.size() > 0) {
+				movePositions(entry.getKey(), document, localPostings.getPositions(0), summary);
+			}
+		}
+		int count = local.getFileCount(0);
+		if (count > 0) {
+			setFileCount(document, count);
+		}
+		summary.setWordCount(count);
+		return summary;
+	}
+	
+	/**
+	 * Moves the positions of a document into the postings of a stem with a single
+	 * lookup, taking the whole list over unless the document already has
+	 * positions for the stem.
+	 * 
+	 * @param stem the element found
+	 * @param document id from the document dictionary
+	 * @param list positions of the stem in the document, given up by the caller
+	 * @param summary where to count what was moved
+	 */
+	protected void movePositions(String stem, int document, PositionList list, MergeSummary summary) {
+		//the positions for this file are done
+		list.compress();
+		//one lookup, the size only grows when the stem is new
+		int stems = wordIndex.size();
+		PostingList postings = wordIndex.computeIfAbsent(stem, k -> new PostingList());
+		boolean newStem = wordIndex.size() > stems;
+		//take the whole list over unless this document already has positions
+		boolean moved = postings.putIfAbsent(document, list);
+		if (!moved) {
+			postings.addAll(document, list);
+		}
+		summary.addStem(newStem, moved, postings.frequency(document));
+	}
+	
+	/**
+	 * Moves everything from another word index into this one, for word indexes
+	 * built from different documents at the same time. The documents of the other
+	 * index get new ids here in the order of their old ids, so when none of them
+	 * are in this index yet every posting is appended to the end of its list. The
+	 * other index gives up its position lists, so it should not be used afterwards.
+	 * 
+	 * @param other word index to move everything from
+	 */
+	public void combine(WordIndex other) {
+		int[] ids = new int[other.documents.size()];
+		for (int document = 0; document < ids.length; document++) {
+			ids[document] = documents.getId(other.documents.getLocation(document));
+			int count = other.getFileCount(document);
+			if (count > 0) {
+				setFileCount(ids[document], count);
+			}
+		}
+		for (Entry<String, PostingList> entry : other.wordIndex.entrySet()) {
+			movePostings(entry.getKey(), entry.getValue(), ids);
+		}
+	}
+	
+	/**
+	 * Moves the postings of a stem from another word index into this one
+	 * 
+	 * @param stem the element found
+	 * @param other postings from another word index, given up by the caller
+	 * @param ids id in this index of each document id of the other index
+	 */
+	protected void movePostings(String stem, PostingList other, int[] ids) {
+		PostingList postings = wordIndex.computeIfAbsent(stem, k -> new PostingList());
+		for (int i = 0; i < other.size(); i++) {
+			int document = ids[other.getDocument(i)];
+			PositionList list = other.getPositions(i);
+			list.compress();
+			//take the whole list over unless this document already has positions
+			if (!postings.putIfAbsent(document, list)) {
+				postings.addAll(document, list);
+			}
+		}
+	}
+	
+	/**
+	 * Removes a document from the index. Its postings are only marked with a
+	 * tombstone, and are purged once enough documents were removed.
+	 * 
+	 * @param location file path or url of the document
+	 * @return {@code true} if the document was in the index
+	 */
+	public boolean remove(String location) {
+		boolean found = tombstone(location);
+		//nothing else uses a plain word index, so compact right away
+		if (found && needsCompaction()) {
+			compact();
+		}
+		return found;
+	}
+	
+	/**
+	 * Replaces a document with new text, stemmed the same way as a web page
+	 * 
+	 * @param location file path or url of the document
+	 * @param text the new text of the document
+	 * @return a summary of what was moved over
+	 * 
+	 * @see #replace(String, WordIndex)
+	 */
+	public MergeSummary replace(String location, String text) {
+		WordIndex local = new WordIndex();
+		TextFileStemmer.parseHtml(local, location, text);
+		return replace(location, local);
+	}
+	
+	/**
+	 * Replaces a document with the stems of a word index built for it alone. The
+	 * old postings are marked with a tombstone and the new ones are merged in
+	 * under a new id. The local index gives up its position lists, so it should
+	 * not be used afterwards.
+	 * 
+	 * @param location file path or url of the document
+	 * @param local word index with the new stems of the document, or no document if it has none
+	 * @return a summary of what was moved over
+	 * @throws IllegalArgumentException the local index has another document
+	 */
+	public MergeSummary replace(String location, WordIndex local) throws IllegalArgumentException {
+		checkReplacement(location, local);
+		tombstone(location);
+		MergeSummary summary = merge(local);
+		if (needsCompaction()) {
+			compact();
+		}
+		return summary;
+	}
+	
+	/**
+	 * Checks that a local index only has the given document, if any
+	 * 
+	 * @param location file path or url of the document being replaced
+	 * @param local word index with the new stems of the document
+	 * @throws IllegalArgumentException the local index has another document
+	 */
+	protected static void checkReplacement(String location, WordIndex local) throws IllegalArgumentException {
+		if (local.numDocuments() > 1 || (local.numDocuments() == 1 && !local.getLocation(0).equals(location))) {
+			throw new IllegalArgumentException("Only a word index with the replaced document can replace it");
+		}
+	}
+	
+	/**
+	 * Marks the document of a location with a tombstone, clears its word count
+	 * and lets the location take a new id
+	 * 
+	 * @param location file path or url of the document
+	 * @return {@code true} if the location had a document
+	 */
+	protected boolean tombstone(String location) {
+		int document = documents.release(location);
+		if (document == DocumentDictionary.MISSING) {
+			return false;
+		}
+		removed.set(document);
+		tombstones++;
+		if (document < wordCount.length) {
+			wordCount[document] = 0;
+		}
+		return true;
+	}
+	
+	/**
+	 * Purges the postings of removed documents and drops the stems left with
+	 * none. Searches skip tombstones either way, so this only frees the memory and
+	 * the time spent skipping them.
+	 * 
+	 * @return the number of removed documents purged
+	 */
+	public int compact() {
+		int pending = tombstones;
+		purge("", Integer.MAX_VALUE, removed);
+		compacted(pending);
+		return pending;
+	}
+	
+	/**
+	 * Purges the postings of removed documents from a run of stems in sorted
+	 * order, dropping the stems left with none, so a compaction can be done a
+	 * few stems at a time
+	 * 
+	 * @param from the first stem to purge
+	 * @param count the most stems to purge
+	 * @param dead ids of the documents to purge
+	 * @return the stem to continue from, or {@code null} if the last stem was purged
+	 */
+	protected String purge(String from, int count, BitSet dead) {
+		Iterator<Entry<String, PostingList>> entries = wordIndex.tailMap(from, true).entrySet().iterator();
+		for (int i = 0; entries.hasNext(); i++) {
+			Entry<String, PostingList> entry = entries.next();
+			if (i == count) {
+				return entry.getKey();
+			}
+			entry.getValue().removeAll(dead);
+			if (entry.getValue().size() == 0) {
+				entries.remove();
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Counts tombstones as purged once a compaction is done
+	 * 
+	 * @param count number of tombstones the compaction started with
+	 */
+	protected void compacted(int count) {
+		tombstones -= count;
+		purged += count;
+	}
+	
+	/**
+	 * Gets a copy of the ids of every removed document
+	 * 
+	 * @return ids of the removed documents
+	 */
+	protected BitSet removedDocuments() {
+		return (BitSet) removed.clone();
+	}
+	
+	/**
+	 * Gets the ids of every document a frozen copy should leave out, which are
+	 * the removed ones unless a subclass is still adding some
+	 * 
+	 * @return ids of the documents to leave out
+	 */
+	protected BitSet hiddenDocuments() {
+		return removedDocuments();
+	}
+	
+	/**
+	 * Determines whether a document id was removed
+	 * 
+	 * @param document id from the document dictionary
+	 * @return {@code true} if the document was removed or replaced
+	 */
+	public boolean isRemoved(int document) {
+		return document >= 0 && removed.get(document);
+	}
+	
+	/**
+	 * Returns the number of removed documents whose postings are still stored
+	 * 
+	 * @return the number of tombstones
+	 */
+	public int numRemoved() {
+		return tombstones;
+	}
+	
+	/**
+	 * Returns the share of the documents with stored postings that are tombstones
+	 * 
+	 * @return a ratio from 0 to 1
+	 */
+	public double tombstoneRatio() {
+		int stored = numDocuments() - purged;
+		return stored > 0 ? (double) numRemoved() / stored : 0;
+	}
+	
+	/**
+	 * Determines whether enough documents were removed to compact
+	 * 
+	 * @return {@code true} if the tombstones reached {@link #COMPACTION_THRESHOLD}
+	 */
+	public boolean needsCompaction() {
+		return numRemoved() > 0 && tombstoneRatio() >= COMPACTION_THRESHOLD;
+	}
+	
+	/**
+	 * Copies out how much each lock of the index has been used and fought over.
+	 * A plain word index has no locks.
+	 * 
+	 * @return the read and write statistics of each lock by its name, in a stable order
+	 */
+	public Map<String, List<LockStatistics>> lockStatistics() {
+		return new LinkedHashMap<>();
+	}
+	
+	/**
+	 * Adds the read and write statistics of a lock
+	 * 
+	 * @param statistics statistics of each lock by its name
+	 * @param name name to report the lock under
+	 * @param locks the lock, or every lock used the same way to report as one
+	 */
+	protected static void addLockStatistics(Map<String, List<LockStatistics>> statistics, String name, ReadWriteLock... locks) {
+		LockStatistics read = locks[0].readStatistics();
+		LockStatistics write = locks[0].writeStatistics();
+		for (int i = 1; i < locks.length; i++) {
+			read = read.plus(locks[i].readStatistics());
+			write = write.plus(locks[i].writeStatistics());
+		}
+		statistics.put(name, List.of(read, write));
+	}
+	
+	/**
+	 * Sets the work queue compactions are run on. A plain word index compacts
+	 * right away in the thread that removed the document, so this does nothing.
+	 * 
+	 * @param tasks work queue to compact on, or {@code null} to compact in the removing thread
+	 */
+	public void setCompactionQueue(WorkQueue tasks) {
+	}
+	
+	/**
+	 * Counts the postings of documents that were not removed
+	 * 
+	 * @param postings postings to count
+	 * @return the number of live postings
+	 */
+	protected int countLive(PostingList postings) {
+		if (tombstones == 0) {
+			return postings.size();
+		}
+		int live = 0;
+		for (int i = 0; i < postings.size(); i++) {
+			if (!removed.get(postings.getDocument(i))) {
+				live++;
+			}
+		}
+		return live;
+	}
+	
+	/**
+	 * Adds a position for a document id that was already looked up
+	 * 
+	 * @param stem the element found
+	 * @param document id from the document dictionary
+	 * @param position the position the element was found
+	 * 
+	 * @return {@code true} if the index changed as a result of the call
+	 */
+	protected boolean addPosition(String stem, int document, int position) {
+		return wordIndex.computeIfAbsent(stem, k -> new PostingList()).add(document, position);
+	}
+	
+	/**
+	 * Gets the id of a file path or url, assigning the next id if it is new
+	 * 
+	 * @param location file path or url
+	 * @return id from the document dictionary
+	 */
+	protected int assignDocument(String location) {
+		return documents.getId(location);
+	}
+	
+	/**
+	 * Finds the id of a file path or url without assigning one
+	 * 
+	 * @param location file path or url
+	 * @return id from the document dictionary or {@link DocumentDictionary#MISSING}
+	 */
+	protected int findDocument(String location) {
+		return documents.findId(location);
+	}
+	
+	/**
+	 * Stems from a given stem on in sorted order, with their postings
+	 * 
+	 * @param stem the first stem to include
+	 * @return an unmodifiable view of the stems and postings from that stem on
+	 */
+	protected NavigableMap<String, PostingList> tailMap(String stem) {
+		return Collections.unmodifiableNavigableMap(wordIndex.tailMap(stem, true));
+	}
+	
+	/**
+	 * Gets a cursor over postings reading the document lengths from the word
+	 * counts of this index
+	 * 
+	 * @param postings postings to walk, or {@code null} for none
+	 * @return a cursor over the postings
+	 */
+	protected PostingsCursor cursor(PostingList postings) {
+		return postings != null ? new ListCursor(postings) : PostingsCursor.EMPTY;
+	}
+	
+	/**
+	 * Compresses every position list, done before a merge so the work is not
+	 * done while the shared index is locked
+	 */
+	public void compressPositions() {
+		for (PostingList postings : wordIndex.values()) {
+			postings.compressAll();
+		}
+	}
+	
 	/**
 	 * Adds the completed file count to the word indexes wordCount
 	 * 
@@ -150,7 +656,22 @@ public class WordIndex implements Index<String> {
 		//checking validity
 		if (correctedPath != null && count > 0) {
 			//Adds the completed file count
-			wordCount.putIfAbsent(correctedPath, count);
+			setFileCount(documents.getId(correctedPath), count);
+		}
+	}
+	
+	/**
+	 * Sets the file count of a document id unless it already has one
+	 * 
+	 * @param document id from the document dictionary
+	 * @param count number of words in file
+	 */
+	protected void setFileCount(int document, int count) {
+		if (document >= wordCount.length) {
+			wordCount = Arrays.copyOf(wordCount, Math.max(document + 1, wordCount.length * 2));
+		}
+		if (wordCount[document] == 0) {
+			wordCount[document] = count;
 		}
 	}
 	
@@ -161,7 +682,62 @@ public class WordIndex implements Index<String> {
 	 * @return file count if word count contains the the path or 0
 	 */
 	public int getFileCount(String correctedPath) {
-		return wordCount.getOrDefault(correctedPath, 0);
+		return getFileCount(documents.findId(correctedPath));
+	}
+	
+	/**
+	 * Gets the file count of a document id
+	 *
+	 * @param document id from the document dictionary
+	 * @return file count if word count contains the document or 0
+	 */
+	public int getFileCount(int document) {
+		return document >= 0 && document < wordCount.length ? wordCount[document] : 0;
+	}
+	
+	/**
+	 * Gets the file path or url of a document id
+	 *
+	 * @param document id from the document dictionary
+	 * @return the file path or url
+	 */
+	public String getLocation(int document) {
+		return documents.getLocation(document);
+	}
+	
+	/**
+	 * Gets the postings of a stem, which should be treated as read only. Postings
+	 * of removed documents are still there until the index is compacted.
+	 *
+	 * @param stem the element to lookup
+	 * @return the postings of the stem or {@code null} if it is not in the index
+	 * 
+	 * @see #isRemoved(int)
+	 */
+	public PostingList getPostings(String stem) {
+		return stem != null ? wordIndex.get(stem) : null;
+	}
+	
+	/**
+	 * Gets a cursor over the postings of a stem, giving the document id, term
+	 * frequency and document length of each posting in one pass.
+	 *
+	 * @param stem the element to lookup
+	 * @return a cursor over the postings, with no postings if the stem is not in the index
+	 */
+	public PostingsCursor postings(String stem) {
+		return cursor(stem);
+	}
+	
+	/**
+	 * Gets a cursor over the postings of a stem for the searches, which subclasses
+	 * call while already holding whatever they need to read the index.
+	 *
+	 * @param stem the element to lookup
+	 * @return a cursor over the postings, with no postings if the stem is not in the index
+	 */
+	private PostingsCursor cursor(String stem) {
+		return cursor(stem != null ? wordIndex.get(stem) : null);
 	}
 	
 	/**
@@ -184,7 +760,8 @@ public class WordIndex implements Index<String> {
 	 */
 	@Override
 	public boolean contains(String stem) {
-		return stem != null ? wordIndex.containsKey(stem) : false;
+		PostingList postings = stem != null ? wordIndex.get(stem) : null;
+		return postings != null && countLive(postings) > 0;
 	}
 
 	/**
@@ -196,7 +773,7 @@ public class WordIndex implements Index<String> {
 	 * @return true if the word index contains the filePath
 	 */
 	public boolean contains(String stem, String filePath) {
-		return stem != null && filePath != null ? wordIndex.get(stem).containsKey(filePath) : false;
+		return getPositionList(stem, filePath) != null;
 	}
 
 	/**
@@ -210,11 +787,13 @@ public class WordIndex implements Index<String> {
 	 */
 	@Override
 	public boolean contains(String stem, String filePath, int position) {
-		return stem != null && filePath != null ? wordIndex.get(stem).get(filePath).contains(position) : false;
+		PositionList positions = getPositionList(stem, filePath);
+		return positions != null ? positions.containsPosition(position) : false;
 	}
 
 	/**
-	 * Returns an unmodifiable view of the stems stored in the index.
+	 * Returns an unmodifiable view of the stems stored in the index. While there
+	 * are tombstones this is a copy of the stems that still have live postings.
 	 *
 	 * @return an unmodifiable view of the stems stored in the index
 	 * 
@@ -222,7 +801,38 @@ public class WordIndex implements Index<String> {
 	 */
 	@Override
 	public Collection<String> getElements() {
-		return Collections.unmodifiableCollection(wordIndex.keySet());
+		if (tombstones == 0) {
+			return Collections.unmodifiableCollection(wordIndex.keySet());
+		}
+		List<String> stems = new ArrayList<>();
+		for (Entry<String, PostingList> entry : wordIndex.entrySet()) {
+			if (countLive(entry.getValue()) > 0) {
+				stems.add(entry.getKey());
+			}
+		}
+		return Collections.unmodifiableList(stems);
+	}
+	
+	/**
+	 * Map of file paths to positions for a given stem, sorted by file path. This
+	 * is where document ids are turned back into locations, so it is meant for
+	 * rendering the index rather than searching it.
+	 *
+	 * @param stem the element found
+	 * @return an unmodifiable map of file paths to positions for a stem
+	 */
+	public Map<String, PositionList> getLocations(String stem) {
+		PostingList postings = getPostings(stem);
+		if (postings == null) {
+			return Collections.emptyMap();
+		}
+		TreeMap<String, PositionList> locations = new TreeMap<>();
+		for (int i = 0; i < postings.size(); i++) {
+			if (!removed.get(postings.getDocument(i))) {
+				locations.put(documents.getLocation(postings.getDocument(i)), postings.getPositions(i));
+			}
+		}
+		return Collections.unmodifiableMap(locations);
 	}
 	
 	/**
@@ -230,10 +840,8 @@ public class WordIndex implements Index<String> {
 	 * @param stem the element found
 	 * @return a set of file path entries for a stem
 	 */
-	public Set<Map.Entry<String,Collection<Integer>>> getFilePathEntries(String stem) {
-		return stem != null? 
-				Collections.unmodifiableSet(wordIndex.get(stem).entrySet())
-				: Collections.emptySet();
+	public Set<Map.Entry<String, PositionList>> getFilePathEntries(String stem) {
+		return getLocations(stem).entrySet();
 	}
 	
 	/**
@@ -246,34 +854,39 @@ public class WordIndex implements Index<String> {
 	 */
 	@Override
 	public Collection<Integer> getPositions(String stem, String filePath) {
-		return stem != null && filePath != null? 
-				  Collections.unmodifiableCollection(wordIndex.get(stem).get(filePath))
+		PositionList positions = getPositionList(stem, filePath);
+		return positions != null ? 
+				  Collections.unmodifiableCollection(positions)
 				: Collections.emptyList();
 	}
 	
 	/**
-	 * Something to see how to handle the word index better in the driver
+	 * Returns the primitive positions stored in the index for the provided element
+	 * and file path. The list should be treated as read only.
+	 *
+	 * @param stem the element to lookup
+	 * @param filePath where element was found
 	 * 
-	 * @return wordIndex as a collection of entries
+	 * @return the positions stored for the element, or {@code null} if there are none
 	 */
-	public Collection<Entry<String, Map<String, Collection<Integer>>>> getUnmodifiableElements() {
-		return Collections.unmodifiableCollection(wordIndex.entrySet());
+	public PositionList getPositionList(String stem, String filePath) {
+		PostingList postings = getPostings(stem);
+		int document = documents.findId(filePath);
+		return postings != null && document != DocumentDictionary.MISSING ? postings.get(document) : null;
 	}
 	
 	/**
-	 * Unmodifiable file count map
+	 * Unmodifiable file count map, built from the document ids that have a count
 	 * @return an unmodifiable file count map to to write as json later
 	 */
 	public Map<String, Integer> getUnmodifiableFileCount() {
-		return Collections.unmodifiableMap(wordCount);
-	}
-	
-	/**
-	 * Unmodifiable map of word index
-	 * @return index map access
-	 */
-	public Map<String, Map<String, Collection<Integer>>> getUnmodifiableMap() {
-		return Collections.unmodifiableMap(wordIndex);
+		TreeMap<String, Integer> counts = new TreeMap<>();
+		for (int document = 0; document < wordCount.length; document++) {
+			if (wordCount[document] > 0) {
+				counts.put(documents.getLocation(document), wordCount[document]);
+			}
+		}
+		return Collections.unmodifiableMap(counts);
 	}
 	
 	/**
@@ -285,6 +898,56 @@ public class WordIndex implements Index<String> {
 		return Collections.unmodifiableCollection(queries.entrySet());
 	}
 
+	/**
+	 * Returns the number of file paths or urls that have an id in the index,
+	 * counting the ids of removed documents.
+	 *
+	 * @return the number of documents, every id is less than this
+	 */
+	public int numDocuments() {
+		return documents.size();
+	}
+	
+	/**
+	 * Copies this index into a read-optimized layout that can no longer be added
+	 * to. Meant to be called once building is done.
+	 * 
+	 * @return a frozen copy of this index
+	 * 
+	 * @see FrozenWordIndex
+	 */
+	public FrozenWordIndex freeze() {
+		return new FrozenWordIndex(this);
+	}
+	
+	/**
+	 * Copies this index into the read-optimized layout while it is still being
+	 * added to. The stems and postings are copied, but the position lists are
+	 * shared and copied on write instead, so the copy only costs references for
+	 * them and later writes still never show up in it.
+	 * 
+	 * @return a frozen copy that shares nothing that can change with this index
+	 */
+	protected FrozenWordIndex freezeCopy() {
+		return new FrozenWordIndex(this, true);
+	}
+	
+	/**
+	 * Gets a read only view of this index that can be iterated without locking,
+	 * for readers that walk the whole index. Nothing else writes to a plain word
+	 * index while it is read, so this is the index itself. Thread safe indexes
+	 * return a frozen copy that is only made again once something changed and
+	 * the last copy is {@link SnapshotCache#INTERVAL} old, so it can be behind by
+	 * that much.
+	 * 
+	 * @return an index that will not change while it is read
+	 * 
+	 * @see SnapshotCache
+	 */
+	public WordIndex snapshot() {
+		return this;
+	}
+	
 	/**
 	 * Returns the number of stems stored in the index.
 	 *
@@ -292,7 +955,7 @@ public class WordIndex implements Index<String> {
 	 */
 	@Override
 	public int numElements() {
-		return wordIndex.size();
+		return tombstones == 0 ? wordIndex.size() : getElements().size();
 	}
 	
 	/**
@@ -304,13 +967,30 @@ public class WordIndex implements Index<String> {
 	 *         the number of positions stored for that element
 	 */
 	public int numPositions(String stem) {
-		Function<Map<String, Collection<Integer>>, Integer> positionsInMap = (map) -> {
-			return map.size() == 0 ? 0 : 
-				map.entrySet().stream()
-				.mapToInt(e -> e.getValue().size())
-				.reduce(0, Integer::sum);
-		};
-		return stem != null ? positionsInMap.apply(wordIndex.get(stem)) : 0;
+		PostingList postings = getPostings(stem);
+		if (postings == null || tombstones == 0) {
+			return postings != null ? postings.totalFrequency() : 0;
+		}
+		int positions = 0;
+		for (int i = 0; i < postings.size(); i++) {
+			if (!removed.get(postings.getDocument(i))) {
+				positions += postings.getFrequency(i);
+			}
+		}
+		return positions;
+	}
+	
+	/**
+	 * Returns the number of documents a stem was found in
+	 *
+	 * @param stem the element to lookup
+	 *
+	 * @return 0 if the element is not in the index, otherwise the number of
+	 *         documents with positions for that element
+	 */
+	public int documentFrequency(String stem) {
+		PostingList postings = getPostings(stem);
+		return postings != null ? countLive(postings) : 0;
 	}
 	
 	/**
@@ -324,6 +1004,57 @@ public class WordIndex implements Index<String> {
 	 */
 	@Override
 	public int numPositions(String stem, String filePath) {
-		return stem != null &&  filePath != null? wordIndex.get(stem).get(filePath).size() : 0;
+		PostingList postings = getPostings(stem);
+		return postings != null ? postings.frequency(documents.findId(filePath)) : 0;
+	}
+
+	/**
+	 * Cursor over a posting list, reading the document lengths from the word counts
+	 * and skipping the postings of removed documents
+	 */
+	private class ListCursor implements PostingsCursor {
+
+		/** postings being walked */
+		private final PostingList postings;
+
+		/** index of the current posting */
+		private int index;
+
+		/**
+		 * Starts before the first posting
+		 *
+		 * @param postings postings to walk
+		 */
+		private ListCursor(PostingList postings) {
+			this.postings = postings;
+			this.index = -1;
+		}
+
+		@Override
+		public boolean next() {
+			while (++index < postings.size()) {
+				if (tombstones == 0 || !removed.get(postings.getDocument(index))) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public int docId() {
+			return postings.getDocument(index);
+		}
+
+		@Override
+		public int termFrequency() {
+			return postings.getFrequency(index);
+		}
+
+		@Override
+		public int docLength() {
+			//read the array directly, the caller already holds whatever guards it
+			int document = postings.getDocument(index);
+			return document < wordCount.length ? wordCount[document] : 0;
+		}
 	}
-}
\ No newline at end of file
+}
@@ -1,4 +1,9 @@
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -7,6 +12,14 @@ import org.apache.logging.log4j.Logger;
  * A simple work queue implementation based on the IBM Developer article by Brian Goetz. It is up to
  * the user of this class to keep track of whether there is any pending work remaining.
  *
+ * The queue can be given a capacity so producers cannot get far ahead of the workers. What happens
+ * to work added while the queue is full is decided by its {@link OverflowPolicy}. Work added by one
+ * of the workers is never blocked, since a worker waiting for room that only workers can make could
+ * wait forever, so it is run by that worker instead.
+ *
+ * The queue keeps track of how long work waits and runs, how deep it gets and how busy each
+ * worker is, which can be copied out at any time with {@link #statistics()}.
+ *
  * @see <a href="https://www.ibm.com/developerworks/library/j-jtp0730/index.html">
  *      Java Theory and Practice: Thread Pools and Work Queues</a>
  */
@@ -21,14 +34,59 @@ public class WorkQueue {
 	private final PoolWorker[] workers;
 
 	/** Queue of pending work requests. */
-	private final LinkedList<Runnable> queue;
+	private final LinkedList<QueuedTask> queue;
 
 	/** Used to signal the queue should be shutdown. */
 	private volatile boolean shutdown;
 
+	/** Maximum number of queued work requests, or {@link #UNBOUNDED}. */
+	private final int capacity;
+
+	/** What to do with work added while the queue is full. */
+	private final OverflowPolicy policy;
+
+	/** Time work waited to be started. */
+	private final TaskHistogram waits;
+
+	/** Time work took to run. */
+	private final TaskHistogram runs;
+
+	/** Most pending work at any one time. */
+	private final AtomicInteger peakPending;
+
+	/** Most work waiting to be started at any one time. */
+	private final AtomicInteger peakQueued;
+
+	/** Number of runtime exceptions thrown by work and swallowed by the queue. */
+	private final AtomicLong failures;
+
+	/** Number of work requests rejected because the queue was full. */
+	private final AtomicLong rejections;
+
+	/** Number of work requests run by the thread adding them because the queue was full. */
+	private final AtomicLong callerRuns;
+
+	/** When the queue was created, used to tell how busy the workers have been. */
+	private final long created;
+
 	/** The default number of threads to use when not specified. */
 	public static final int DEFAULT = 5;
 
+	/** Capacity of a queue that can hold any amount of work. */
+	public static final int UNBOUNDED = 0;
+
+	/**
+	 * What to do with work added to a full queue.
+	 */
+	public static enum OverflowPolicy {
+		/** wait until a worker takes work off the queue */
+		BLOCK,
+		/** run the work in the thread adding it */
+		CALLER_RUNS,
+		/** throw a {@link RejectedExecutionException} */
+		REJECT
+	}
+
 	/**
 	 * Starts a work queue with the default number of threads.
 	 *
@@ -44,30 +102,285 @@ public class WorkQueue {
 	 * @param threads number of worker threads; should be greater than 1
 	 */
 	public WorkQueue(int threads) {
-		queue = new LinkedList<Runnable>();
-		workers = new PoolWorker[threads];
+		this(threads, UNBOUNDED, OverflowPolicy.BLOCK);
+	}
+
+	/**
+	 * Starts a work queue with the specified number of threads that holds at most the specified
+	 * amount of work.
+	 *
+	 * @param threads number of worker threads; should be greater than 1
+	 * @param capacity maximum number of queued work requests, or {@link #UNBOUNDED}
+	 * @param policy what to do with work added while the queue is full
+	 */
+	public WorkQueue(int threads, int capacity, OverflowPolicy policy) {
+		this(threads, true, capacity, policy);
+	}
+
+	/**
+	 * Creates a work queue, only starting the shared queue workers if asked to.
+	 * Subclasses that schedule work differently run their own workers instead.
+	 *
+	 * @param threads number of worker threads; should be greater than 1
+	 * @param startWorkers whether to start workers that take from the shared queue
+	 *
+	 * @see WorkStealingQueue
+	 */
+	protected WorkQueue(int threads, boolean startWorkers) {
+		this(threads, startWorkers, UNBOUNDED, OverflowPolicy.BLOCK);
+	}
+
+	/**
+	 * Creates a work queue, only starting the shared queue workers if asked to.
+	 *
+	 * @param threads number of worker threads; should be greater than 1
+	 * @param startWorkers whether to start workers that take from the shared queue
+	 * @param capacity maximum number of queued work requests, or {@link #UNBOUNDED}
+	 * @param policy what to do with work added while the queue is full
+	 */
+	private WorkQueue(int threads, boolean startWorkers, int capacity, OverflowPolicy policy) {
+		queue = new LinkedList<QueuedTask>();
+		workers = new PoolWorker[startWorkers ? threads : 0];
 		pending = 0;
+		this.capacity = Math.max(UNBOUNDED, capacity);
+		this.policy = policy;
+		waits = new TaskHistogram();
+		runs = new TaskHistogram();
+		peakPending = new AtomicInteger();
+		peakQueued = new AtomicInteger();
+		failures = new AtomicLong();
+		rejections = new AtomicLong();
+		callerRuns = new AtomicLong();
+		created = System.nanoTime();
 
 		shutdown = false;
 
 		// start the threads so they are waiting in the background
-		for (int i = 0; i < threads; i++) {
+		for (int i = 0; i < workers.length; i++) {
 			workers[i] = new PoolWorker();
 			workers[i].start();
 		}
 	}
 	
 	/**
-	 * Adds a work request to the queue. A thread will process this request when available.
+	 * Adds a work request to the queue. A thread will process this request when available. If the
+	 * queue is full the work is handled by the {@link OverflowPolicy} of the queue.
 	 *
 	 * @param r work request (in the form of a {@link Runnable} object)
+	 * @throws RejectedExecutionException the queue is full and rejects overflowing work
+	 */
+	public void execute(Runnable r) throws RejectedExecutionException {
+		synchronized (queue) {
+			if (waitForRoom()) {
+				pending++;
+				queue.addLast(new QueuedTask(r));
+				recordDepth(pending, queue.size());
+				queue.notifyAll();
+				return;
+			}
+		}
+		overflow(r);
+	}
+
+	/**
+	 * Adds many work requests to the queue at once, locking the queue and waking the workers up
+	 * once for as many as fit. If the queue fills up the rest are handled by the
+	 * {@link OverflowPolicy} of the queue, and work already added stays queued if one is rejected.
+	 *
+	 * @param requests work requests (in the form of {@link Runnable} objects)
+	 * @throws RejectedExecutionException the queue is full and rejects overflowing work
+	 */
+	public void executeAll(Collection<? extends Runnable> requests) throws RejectedExecutionException {
+		Iterator<? extends Runnable> iterator = requests.iterator();
+		while (iterator.hasNext()) {
+			Runnable overflowing = null;
+			synchronized (queue) {
+				while (overflowing == null && iterator.hasNext()) {
+					if (hasRoom()) {
+						pending++;
+						queue.addLast(new QueuedTask(iterator.next()));
+						recordDepth(pending, queue.size());
+					}
+					else {
+						// let the workers start on what was added while waiting for room
+						queue.notifyAll();
+						if (!waitForRoom()) {
+							overflowing = iterator.next();
+						}
+					}
+				}
+				queue.notifyAll();
+			}
+			if (overflowing != null) {
+				overflow(overflowing);
+			}
+		}
+	}
+
+	/**
+	 * Returns the maximum number of queued work requests.
+	 *
+	 * @return the capacity or {@link #UNBOUNDED}
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns what is done with work added while the queue is full.
+	 *
+	 * @return the overflow policy
+	 */
+	public OverflowPolicy policy() {
+		return policy;
+	}
+
+	/**
+	 * Determines whether there is room for more work. Must be called while synchronized on the
+	 * queue.
+	 *
+	 * @return true if the queue is unbounded or not full
+	 */
+	private boolean hasRoom() {
+		return capacity == UNBOUNDED || queue.size() < capacity;
+	}
+
+	/**
+	 * Waits for room in the queue if the policy is to block and the current thread is not one of the
+	 * workers. Must be called while synchronized on the queue.
+	 *
+	 * @return true if there is room, false if the work has to be handled by the overflow policy
 	 */
-	public void execute(Runnable r) {
+	private boolean waitForRoom() {
+		if (policy == OverflowPolicy.BLOCK && !isWorker()) {
+			while (!hasRoom() && !shutdown) {
+				try {
+					queue.wait();
+				} catch (InterruptedException ex) {
+					log.warn("Warning: Work queue interrupted while waiting for room.");
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+		return hasRoom();
+	}
+
+	/**
+	 * Handles work that did not fit in the queue, either running it in the current thread or
+	 * rejecting it. Blocking work only ends up here if it was added by a worker or the wait was
+	 * interrupted, so it is run in the current thread too.
+	 *
+	 * @param r work request that did not fit
+	 * @throws RejectedExecutionException the policy is to reject overflowing work
+	 */
+	private void overflow(Runnable r) throws RejectedExecutionException {
+		if (policy == OverflowPolicy.REJECT) {
+			rejections.incrementAndGet();
+			throw new RejectedExecutionException("Work queue is full at " + capacity + " work requests");
+		}
 		synchronized (queue) {
 			pending++;
-			queue.addLast(r);
-			queue.notifyAll();
+			recordDepth(pending, queue.size());
+		}
+		callerRuns.incrementAndGet();
+		// same as a worker, the caller should not fail because of the work
+		runTask(new QueuedTask(r));
+	}
+
+	/**
+	 * Determines whether the current thread is one of the workers of this queue
+	 *
+	 * @return true if the current thread is a worker of this queue
+	 */
+	private boolean isWorker() {
+		Thread current = Thread.currentThread();
+		return current instanceof PoolWorker && ((PoolWorker) current).owner() == this;
+	}
+
+	/**
+	 * Copies out how busy the queue has been so far.
+	 *
+	 * @return statistics of the work run by this queue
+	 */
+	public WorkQueueStatistics statistics() {
+		int pending;
+		int queued;
+		synchronized (queue) {
+			pending = this.pending;
+			queued = queue.size();
+		}
+		long[] busy = new long[workers.length];
+		for (int i = 0; i < workers.length; i++) {
+			busy[i] = workers[i].busy;
+		}
+		return statistics(pending, queued, busy);
+	}
+
+	/**
+	 * Copies out how busy the queue has been so far, given the parts that depend on how the work is
+	 * queued.
+	 *
+	 * @param pending amount of pending (or unfinished) work
+	 * @param queued amount of work added that no thread has started yet
+	 * @param busy time each worker has spent running work in nanoseconds
+	 * @return statistics of the work run by this queue
+	 */
+	protected WorkQueueStatistics statistics(int pending, int queued, long[] busy) {
+		double lifetime = Math.max(1, System.nanoTime() - created);
+		double[] utilization = new double[busy.length];
+		for (int i = 0; i < busy.length; i++) {
+			utilization[i] = Math.min(1, busy[i] / lifetime);
 		}
+		return new WorkQueueStatistics(pending, peakPending.get(), queued, peakQueued.get(), failures.get(),
+				rejections.get(), callerRuns.get(), new WorkQueueStatistics.Timing(waits),
+				new WorkQueueStatistics.Timing(runs), utilization);
+	}
+
+	/**
+	 * Keeps track of the most pending and queued work seen at once
+	 *
+	 * @param pending amount of pending (or unfinished) work
+	 * @param queued amount of work added that no thread has started yet
+	 */
+	protected void recordDepth(int pending, int queued) {
+		peakPending.accumulateAndGet(pending, Math::max);
+		peakQueued.accumulateAndGet(queued, Math::max);
+	}
+
+	/**
+	 * Runs queued work in the current thread, timing how long it waited and ran and counting any
+	 * runtime exception it throws instead of letting it escape. Afterwards the work is no longer
+	 * pending, even if it failed.
+	 *
+	 * @param task work to run
+	 * @return how long the work ran in nanoseconds
+	 */
+	protected long runTask(QueuedTask task) {
+		long started = System.nanoTime();
+		waits.record(started - task.enqueued);
+		try {
+			task.r.run();
+		} catch (RuntimeException ex) {
+			// catch runtime exceptions to avoid leaking threads
+			failures.incrementAndGet();
+			log.warn("Warning: Work queue encountered an exception while running.");
+		} finally {
+			decrementPending();
+		}
+		long elapsed = System.nanoTime() - started;
+		runs.record(elapsed);
+		return elapsed;
+	}
+
+	/**
+	 * Starts a group of work that can be waited for on its own, without waiting
+	 * for the rest of the work in this queue.
+	 *
+	 * @return an empty task group running its work on this queue
+	 */
+	public TaskGroup newGroup() {
+		return new TaskGroup(this);
 	}
 
 	/**
@@ -125,11 +438,22 @@ public class WorkQueue {
 	 * the queue. These threads will continue running in the background until a shutdown is requested.
 	 */
 	private class PoolWorker extends Thread {
+		/** time spent running work in nanoseconds, only written by this worker */
+		private volatile long busy;
+
+		/**
+		 * Gets the queue this worker belongs to
+		 * @return the work queue running this worker
+		 */
+		private WorkQueue owner() {
+			return WorkQueue.this;
+		}
+		
 		/**
 		 * wait for queue to have work
 		 * @param queue holding tasks to run
 		 */
-		private void waitForWork(LinkedList<Runnable> queue) {
+		private void waitForWork(LinkedList<QueuedTask> queue) {
 			while (queue.isEmpty() && !shutdown) {
 				try {
 					queue.wait();
@@ -144,20 +468,13 @@ public class WorkQueue {
 		 * execute runnable task
 		 * @param r is a task to run
 		 */
-		private void executeRunnable(Runnable r) {
-			try {
-				r.run();					
-			} catch (RuntimeException ex) {
-				// catch runtime exceptions to avoid leaking threads
-				log.warn("Warning: Work queue encountered an exception while running.");
-			} finally {
-				decrementPending();
-			}
+		private void executeRunnable(QueuedTask r) {
+			busy += runTask(r);
 		}
 		
 		@Override
 		public void run() {
-			Runnable r = null;
+			QueuedTask r = null;
 			while (true) {
 				synchronized (queue) {
 					waitForWork(queue);
@@ -167,10 +484,35 @@ public class WorkQueue {
 						break;
 					} else {
 						r = queue.removeFirst();
+						// producers may be waiting for room
+						if (capacity != UNBOUNDED && queue.size() == capacity - 1) {
+							queue.notifyAll();
+						}
 					}
 				}
 				executeRunnable(r);
 			}
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Work added to a queue, remembering when it was added so the queue can tell how long it waited
+	 */
+	protected static class QueuedTask {
+		/** work to run */
+		private final Runnable r;
+
+		/** when the work was added, from {@link System#nanoTime()} */
+		private final long enqueued;
+
+		/**
+		 * Constructor for work added now
+		 *
+		 * @param r work to run
+		 */
+		protected QueuedTask(Runnable r) {
+			this.r = r;
+			this.enqueued = System.nanoTime();
+		}
+	}
+}
@@ -0,0 +1,273 @@
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How busy a {@link WorkQueue} has been, copied out at a single point in time.
+ * Waiting is measured from the moment work was added until a thread started it,
+ * and running from that start until the work returned or threw. Work run by the
+ * thread adding it, because the queue was full, never waits.
+ *
+ * @see WorkQueue#statistics()
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class WorkQueueStatistics {
+
+	/** amount of pending (or unfinished) work */
+	private final int pending;
+
+	/** most pending work at any one time */
+	private final int peakPending;
+
+	/** amount of work added that no thread has started yet */
+	private final int queued;
+
+	/** most work waiting to be started at any one time */
+	private final int peakQueued;
+
+	/** number of runtime exceptions thrown by work and swallowed by the queue */
+	private final long failures;
+
+	/** number of work requests rejected because the queue was full */
+	private final long rejections;
+
+	/** number of work requests run by the thread adding them because the queue was full */
+	private final long callerRuns;
+
+	/** time work waited to be started */
+	private final Timing waits;
+
+	/** time work took to run */
+	private final Timing runs;
+
+	/** fraction of the lifetime of each worker spent running work */
+	private final double[] utilization;
+
+	/**
+	 * Constructor for work queue statistics
+	 *
+	 * @param pending amount of pending (or unfinished) work
+	 * @param peakPending most pending work at any one time
+	 * @param queued amount of work added that no thread has started yet
+	 * @param peakQueued most work waiting to be started at any one time
+	 * @param failures number of runtime exceptions thrown by work and swallowed by the queue
+	 * @param rejections number of work requests rejected because the queue was full
+	 * @param callerRuns number of work requests run by the thread adding them
+	 * @param waits time work waited to be started
+	 * @param runs time work took to run
+	 * @param utilization fraction of the lifetime of each worker spent running work
+	 */
+	public WorkQueueStatistics(int pending, int peakPending, int queued, int peakQueued, long failures,
+			long rejections, long callerRuns, Timing waits, Timing runs, double[] utilization) {
+		this.pending = pending;
+		this.peakPending = peakPending;
+		this.queued = queued;
+		this.peakQueued = peakQueued;
+		this.failures = failures;
+		this.rejections = rejections;
+		this.callerRuns = callerRuns;
+		this.waits = waits;
+		this.runs = runs;
+		this.utilization = utilization.clone();
+	}
+
+	/**
+	 * get threads
+	 * @return the number of worker threads
+	 */
+	public int getThreads() {
+		return utilization.length;
+	}
+
+	/**
+	 * get pending
+	 * @return the amount of pending (or unfinished) work
+	 */
+	public int getPending() {
+		return pending;
+	}
+
+	/**
+	 * get peak pending
+	 * @return the most pending work at any one time
+	 */
+	public int getPeakPending() {
+		return peakPending;
+	}
+
+	/**
+	 * get queued
+	 * @return the amount of work added that no thread has started yet
+	 */
+	public int getQueued() {
+		return queued;
+	}
+
+	/**
+	 * get peak queued
+	 * @return the most work waiting to be started at any one time
+	 */
+	public int getPeakQueued() {
+		return peakQueued;
+	}
+
+	/**
+	 * get completed
+	 * @return the number of work requests that returned or threw
+	 */
+	public long getCompleted() {
+		return runs.getCount();
+	}
+
+	/**
+	 * get failures
+	 * @return the number of runtime exceptions thrown by work and swallowed by the queue
+	 */
+	public long getFailures() {
+		return failures;
+	}
+
+	/**
+	 * get rejections
+	 * @return the number of work requests rejected because the queue was full
+	 */
+	public long getRejections() {
+		return rejections;
+	}
+
+	/**
+	 * get caller runs
+	 * @return the number of work requests run by the thread adding them
+	 */
+	public long getCallerRuns() {
+		return callerRuns;
+	}
+
+	/**
+	 * get waits
+	 * @return the time work waited to be started
+	 */
+	public Timing getWaits() {
+		return waits;
+	}
+
+	/**
+	 * get runs
+	 * @return the time work took to run
+	 */
+	public Timing getRuns() {
+		return runs;
+	}
+
+	/**
+	 * get utilization
+	 * @return the fraction of the lifetime of each worker spent running work
+	 */
+	public double[] getUtilization() {
+		return utilization.clone();
+	}
+
+	/**
+	 * Gets the fraction of the lifetime of all workers spent running work
+	 *
+	 * @return the average utilization or 0 if there are no workers
+	 */
+	public double getAverageUtilization() {
+		return Arrays.stream(utilization).average().orElse(0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d threads %.0f%% busy, %d pending (peak %d), %d queued (peak %d), "
+				+ "%d completed, %d failed, %d rejected, %d caller runs; wait %s; run %s",
+				getThreads(), getAverageUtilization() * 100, pending, peakPending, queued, peakQueued,
+				getCompleted(), failures, rejections, callerRuns, waits, runs);
+	}
+
+	/**
+	 * A distribution of durations copied from a {@link TaskHistogram}
+	 */
+	public static class Timing {
+
+		/** count of durations in each bucket */
+		private final long[] buckets;
+
+		/** number of durations recorded */
+		private final long count;
+
+		/** total of every duration in nanoseconds */
+		private final long totalNanos;
+
+		/** longest duration in nanoseconds */
+		private final long maxNanos;
+
+		/**
+		 * Constructor copying a histogram
+		 *
+		 * @param histogram histogram to copy
+		 */
+		public Timing(TaskHistogram histogram) {
+			this.buckets = histogram.buckets();
+			this.count = Arrays.stream(buckets).sum();
+			this.totalNanos = histogram.total();
+			this.maxNanos = histogram.max();
+		}
+
+		/**
+		 * get count
+		 * @return the number of durations recorded
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Gets the average duration
+		 *
+		 * @param unit unit to return the time in
+		 * @return the average or 0 if nothing was recorded
+		 */
+		public long getAverage(TimeUnit unit) {
+			return count > 0 ? unit.convert(totalNanos / count, TimeUnit.NANOSECONDS) : 0;
+		}
+
+		/**
+		 * get max
+		 * @param unit unit to return the time in
+		 * @return the longest duration
+		 */
+		public long getMax(TimeUnit unit) {
+			return unit.convert(maxNanos, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Estimates a percentile of the durations
+		 *
+		 * @param percentile between 0 and 100
+		 * @param unit unit to return the time in
+		 * @return an upper bound of the percentile, never more than the longest duration
+		 *
+		 * @see TaskHistogram#percentile(long[], double)
+		 */
+		public long getPercentile(double percentile, TimeUnit unit) {
+			long micros = Math.min(TaskHistogram.percentile(buckets, percentile), getMax(TimeUnit.MICROSECONDS));
+			return unit.convert(micros, TimeUnit.MICROSECONDS);
+		}
+
+		/**
+		 * get buckets
+		 * @return the count of durations in each bucket of the histogram
+		 */
+		public long[] getBuckets() {
+			return buckets.clone();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("avg %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms",
+					getAverage(TimeUnit.MICROSECONDS) / 1e3, getPercentile(50, TimeUnit.MICROSECONDS) / 1e3,
+					getPercentile(99, TimeUnit.MICROSECONDS) / 1e3, maxNanos / 1e6);
+		}
+	}
+}
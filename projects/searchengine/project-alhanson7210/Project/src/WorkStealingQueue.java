@@ -0,0 +1,331 @@
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A work queue where every worker has its own deque of work instead of every
+ * worker sharing a single queue. Work added from inside a running task, such as a
+ * link task adding the links it found, goes onto the deque of the worker running
+ * it, and work added from any other thread is spread over the workers in turn. A
+ * worker takes its newest work first and, once its own deque is empty, steals the
+ * oldest work from another worker. Workers only lock their own deque or the one
+ * they steal from, and an idle worker is woken up one at a time rather than all
+ * of them at once.
+ *
+ * The contract is the same as {@link WorkQueue}, so it can be used anywhere a work
+ * queue is, except that it is never bounded. It is up to the user of this class to keep track of whether there is
+ * any pending work remaining.
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class WorkStealingQueue extends WorkQueue {
+	/** root logger */
+	private static final Logger log = LogManager.getRootLogger();
+
+	/** Workers, each with its own deque of work. */
+	private final StealingWorker[] workers;
+
+	/** The amount of pending (or unfinished) work. */
+	private final AtomicInteger pending;
+
+	/** The amount of work sitting in a deque that no worker has taken yet. */
+	private final AtomicInteger queued;
+
+	/** The number of workers waiting for work. */
+	private final AtomicInteger idle;
+
+	/** Which worker gets the next work added from outside the workers. */
+	private final AtomicInteger next;
+
+	/** Lock idle workers wait on. */
+	private final Object idleLock;
+
+	/** Lock threads waiting for pending work to finish wait on. */
+	private final Object pendingLock;
+
+	/** Used to signal the queue should be shutdown. */
+	private volatile boolean shutdown;
+
+	/**
+	 * Starts a work stealing queue with the default number of threads.
+	 *
+	 * @see #WorkStealingQueue(int)
+	 */
+	public WorkStealingQueue() {
+		this(DEFAULT);
+	}
+
+	/**
+	 * Starts a work stealing queue with the specified number of threads.
+	 *
+	 * @param threads number of worker threads; should be greater than 1
+	 */
+	public WorkStealingQueue(int threads) {
+		super(threads, false);
+		workers = new StealingWorker[Math.max(1, threads)];
+		pending = new AtomicInteger();
+		queued = new AtomicInteger();
+		idle = new AtomicInteger();
+		next = new AtomicInteger();
+		idleLock = new Object();
+		pendingLock = new Object();
+		shutdown = false;
+
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new StealingWorker();
+		}
+		// start the threads once every deque exists, since they steal from each other
+		for (StealingWorker worker : workers) {
+			worker.start();
+		}
+	}
+
+	/**
+	 * Adds a work request to the deque of the current worker, or to the next
+	 * worker in turn if it is not added from one of the workers.
+	 *
+	 * @param r work request (in the form of a {@link Runnable} object)
+	 */
+	@Override
+	public void execute(Runnable r) {
+		int pending = this.pending.incrementAndGet();
+		StealingWorker worker = currentWorker();
+		if (worker == null) {
+			worker = workers[Math.floorMod(next.getAndIncrement(), workers.length)];
+		}
+		// counted first, so the count is never below the work actually queued
+		recordDepth(pending, queued.incrementAndGet());
+		worker.push(new QueuedTask(r));
+		// wake a single worker up if any are waiting
+		if (idle.get() > 0) {
+			synchronized (idleLock) {
+				idleLock.notify();
+			}
+		}
+	}
+
+	/**
+	 * Adds many work requests at once, spreading them over the deques the same way
+	 * as {@link #execute(Runnable)} and waking the idle workers up once.
+	 *
+	 * @param requests work requests (in the form of {@link Runnable} objects)
+	 */
+	@Override
+	public void executeAll(Collection<? extends Runnable> requests) {
+		int pending = this.pending.addAndGet(requests.size());
+		recordDepth(pending, queued.addAndGet(requests.size()));
+		StealingWorker current = currentWorker();
+		for (Runnable r : requests) {
+			StealingWorker worker = current != null ? current : workers[Math.floorMod(next.getAndIncrement(), workers.length)];
+			worker.push(new QueuedTask(r));
+		}
+		if (idle.get() > 0) {
+			synchronized (idleLock) {
+				idleLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Waits for all pending work to be finished.
+	 *
+	 * @throws InterruptedException if interrupted
+	 */
+	@Override
+	public void finish() throws InterruptedException {
+		synchronized (pendingLock) {
+			while (pending.get() > 0) {
+				pendingLock.wait();
+			}
+		}
+	}
+
+	/**
+	 * Asks the queue to shutdown. Any unprocessed work will not be finished, but threads in-progress
+	 * will not be interrupted.
+	 */
+	@Override
+	public void shutdown() {
+		// safe to do unsynchronized due to volatile keyword
+		shutdown = true;
+
+		synchronized (idleLock) {
+			idleLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Returns the number of worker threads being used by the work queue.
+	 *
+	 * @return number of worker threads
+	 */
+	@Override
+	public int size() {
+		return workers.length;
+	}
+
+	/**
+	 * Copies out how busy the queue has been so far.
+	 *
+	 * @return statistics of the work run by this queue
+	 */
+	@Override
+	public WorkQueueStatistics statistics() {
+		long[] busy = new long[workers.length];
+		for (int i = 0; i < workers.length; i++) {
+			busy[i] = workers[i].busy;
+		}
+		return statistics(pending.get(), queued.get(), busy);
+	}
+
+	/**
+	 * Safely decrements the shared pending variable, and wakes up any threads
+	 * waiting for work to be completed.
+	 */
+	@Override
+	public void decrementPending() {
+		if (pending.decrementAndGet() == 0) {
+			synchronized (pendingLock) {
+				pendingLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Finds the worker of this queue running the current thread
+	 *
+	 * @return the current worker or {@code null} if the current thread is not one
+	 */
+	private StealingWorker currentWorker() {
+		Thread current = Thread.currentThread();
+		if (current instanceof StealingWorker) {
+			StealingWorker worker = (StealingWorker) current;
+			if (worker.owner() == this) {
+				return worker;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Runs work from its own deque, newest first, and steals the oldest work from
+	 * other workers once its own deque is empty. Waits when there is no work
+	 * anywhere until work is added or a shutdown is requested.
+	 */
+	private class StealingWorker extends Thread {
+		/** work added to this worker, guarded by itself */
+		private final ArrayDeque<QueuedTask> deque = new ArrayDeque<>();
+
+		/** time spent running work in nanoseconds, only written by this worker */
+		private volatile long busy;
+
+		/**
+		 * Gets the queue this worker belongs to
+		 *
+		 * @return the work stealing queue running this worker
+		 */
+		private WorkStealingQueue owner() {
+			return WorkStealingQueue.this;
+		}
+
+		/**
+		 * Adds work to the newest end of the deque
+		 *
+		 * @param r work to add
+		 */
+		private void push(QueuedTask r) {
+			synchronized (deque) {
+				deque.addLast(r);
+			}
+		}
+
+		/**
+		 * Takes the newest work from the deque
+		 *
+		 * @return the newest work or {@code null} if the deque is empty
+		 */
+		private QueuedTask pop() {
+			synchronized (deque) {
+				return deque.pollLast();
+			}
+		}
+
+		/**
+		 * Takes the oldest work from the deque, used by other workers
+		 *
+		 * @return the oldest work or {@code null} if the deque is empty
+		 */
+		private QueuedTask steal() {
+			synchronized (deque) {
+				return deque.pollFirst();
+			}
+		}
+
+		/**
+		 * Finds work, first in its own deque and then in the other deques starting
+		 * from a random worker so thieves spread out
+		 *
+		 * @return work to run or {@code null} if there is none anywhere
+		 */
+		private QueuedTask findWork() {
+			QueuedTask r = pop();
+			int start = ThreadLocalRandom.current().nextInt(workers.length);
+			for (int i = 0; r == null && i < workers.length; i++) {
+				StealingWorker victim = workers[(start + i) % workers.length];
+				if (victim != this) {
+					r = victim.steal();
+				}
+			}
+			if (r != null) {
+				queued.decrementAndGet();
+			}
+			return r;
+		}
+
+		/**
+		 * Waits until work is added somewhere or a shutdown is requested
+		 */
+		private void waitForWork() {
+			synchronized (idleLock) {
+				idle.incrementAndGet();
+				try {
+					// checked after counting as idle, so work added meanwhile wakes this up
+					while (queued.get() == 0 && !shutdown) {
+						idleLock.wait();
+					}
+				} catch (InterruptedException ex) {
+					log.warn("Warning: Work queue interrupted.");
+					Thread.currentThread().interrupt();
+				} finally {
+					idle.decrementAndGet();
+				}
+			}
+		}
+
+		/**
+		 * execute runnable task
+		 * @param r is a task to run
+		 */
+		private void executeRunnable(QueuedTask r) {
+			busy += runTask(r);
+		}
+
+		@Override
+		public void run() {
+			while (!shutdown) {
+				QueuedTask r = findWork();
+				if (r == null) {
+					waitForWork();
+				}
+				else {
+					executeRunnable(r);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,235 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@link FileManifest} class.
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class FileManifestTest {
+
+  /** SHA-256 of the text "abc". */
+  private static final String ABC_HASH = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+  /** Directory for the files of a test, deleted afterwards. */
+  private Path directory;
+
+  /**
+   * Creates an empty directory before each test.
+   *
+   * @throws IOException if an IO error occurs
+   */
+  @BeforeEach
+  public void createDirectory() throws IOException {
+    directory = Files.createTempDirectory("manifest");
+  }
+
+  /**
+   * Deletes the directory after each test.
+   *
+   * @throws IOException if an IO error occurs
+   */
+  @AfterEach
+  public void deleteDirectory() throws IOException {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  /**
+   * Tests of reading and writing manifests.
+   */
+  @Nested
+  public class ParseTests {
+
+    /**
+     * Tests that the manifest is saved next to the index.
+     */
+    @Test
+    public void testPathOf() {
+      Path index = directory.resolve("index.json");
+      Assertions.assertEquals(directory.resolve("index.json.manifest"), FileManifest.pathOf(index));
+    }
+
+    /**
+     * Tests that a missing manifest reads as an empty one.
+     *
+     * @throws IOException if an IO error occurs
+     */
+    @Test
+    public void testMissing() throws IOException {
+      FileManifest manifest = FileManifest.read(directory.resolve("missing.manifest"));
+      Assertions.assertEquals(0, manifest.size());
+      Assertions.assertNull(manifest.get("anything"));
+    }
+
+    /**
+     * Tests that every field survives writing and reading back, including
+     * locations with spaces, tabs and characters that are not ASCII.
+     *
+     * @throws IOException if an IO error occurs
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+      FileManifest manifest = new FileManifest();
+      List<String> locations = List.of("input/simple/hello.txt", "input/with space.txt", "input/tab\there.txt", "input/\u00fcber.txt");
+      for (int i = 0; i < locations.size(); i++) {
+        manifest.put(locations.get(i), new FileManifest.Entry(100L + i, 1585000000000L + i, ABC_HASH, 10 + i));
+      }
+      Path path = directory.resolve("index.json.manifest");
+      manifest.write(path);
+
+      FileManifest read = FileManifest.read(path);
+      Assertions.assertEquals(locations.size(), read.size());
+      Assertions.assertIterableEquals(manifest.locations(), read.locations());
+      for (int i = 0; i < locations.size(); i++) {
+        FileManifest.Entry entry = read.get(locations.get(i));
+        Assertions.assertNotNull(entry, locations.get(i));
+        Assertions.assertEquals(10 + i, entry.getWords());
+        Assertions.assertEquals(ABC_HASH, entry.getHash());
+      }
+    }
+
+    /**
+     * Tests that a line with missing fields is rejected.
+     *
+     * @throws IOException if an IO error occurs
+     */
+    @Test
+    public void testMissingFields() throws IOException {
+      Path path = directory.resolve("short.manifest");
+      Files.writeString(path, ABC_HASH + "\t3\t0\tinput/a.txt\n", StandardCharsets.UTF_8);
+      Assertions.assertThrows(IOException.class, () -> FileManifest.read(path));
+    }
+
+    /**
+     * Tests that a line with a field that is not a number is rejected.
+     *
+     * @throws IOException if an IO error occurs
+     */
+    @Test
+    public void testBadNumber() throws IOException {
+      Path path = directory.resolve("number.manifest");
+      Files.writeString(path, ABC_HASH + "\tthree\t0\t1\tinput/a.txt\n", StandardCharsets.UTF_8);
+      Assertions.assertThrows(IOException.class, () -> FileManifest.read(path));
+    }
+
+    /**
+     * Tests that the locations are unmodifiable and sorted.
+     */
+    @Test
+    public void testLocations() {
+      FileManifest manifest = new FileManifest();
+      manifest.put("b", new FileManifest.Entry(1, 1, ABC_HASH, 1));
+      manifest.put("a", new FileManifest.Entry(1, 1, ABC_HASH, 1));
+      manifest.put("b", new FileManifest.Entry(2, 2, ABC_HASH, 2));
+      Assertions.assertEquals(2, manifest.size());
+      Assertions.assertIterableEquals(List.of("a", "b"), manifest.locations());
+      Assertions.assertEquals(2, manifest.get("b").getWords());
+      Assertions.assertThrows(UnsupportedOperationException.class, () -> manifest.locations().remove("a"));
+    }
+  }
+
+  /**
+   * Tests of comparing files against their entries.
+   */
+  @Nested
+  public class EntryTests {
+
+    /** A file with the text "abc". */
+    private Path file;
+
+    /**
+     * Creates the file before each test.
+     *
+     * @throws IOException if an IO error occurs
+     */
+    @BeforeEach
+    public void createFile() throws IOException {
+      file = directory.resolve("abc.txt");
+      Files.writeString(file, "abc", StandardCharsets.UTF_8);
+      Files.setLastModifiedTime(file, FileTime.fromMillis(1585000000000L));
+    }
+
+    /**
+     * Gets the attributes of the file.
+     *
+     * @return the attributes
+     * @throws IOException if an IO error occurs
+     */
+    private BasicFileAttributes attributes() throws IOException {
+      return Files.readAttributes(file, BasicFileAttributes.class);
+    }
+
+    /**
+     * Tests that the hash is the SHA-256 of the contents.
+     *
+     * @throws IOException if an IO error occurs
+     */
+    @Test
+    public void testHash() throws IOException {
+      Assertions.assertEquals(ABC_HASH, FileManifest.hash(file));
+      Assertions.assertEquals(ABC_HASH, FileManifest.Entry.of(file, attributes(), 1).getHash());
+    }
+
+    /**
+     * Tests that an untouched file is the same without reading it.
+     *
+     * @throws IOException if an IO error occurs
+     */
+    @Test
+    public void testUnmodified() throws IOException {
+      FileManifest.Entry entry = FileManifest.Entry.of(file, attributes(), 1);
+      Assertions.assertTrue(entry.isUnmodified(attributes()));
+      Assertions.assertTrue(entry.isSame(file, attributes()));
+    }
+
+    /**
+     * Tests that a file touched without changing is still the same, and that
+     * touching the entry makes it unmodified again.
+     *
+     * @throws IOException if an IO error occurs
+     */
+    @Test
+    public void testTouched() throws IOException {
+      FileManifest.Entry entry = FileManifest.Entry.of(file, attributes(), 1);
+      Files.setLastModifiedTime(file, FileTime.fromMillis(1586000000000L));
+      Assertions.assertFalse(entry.isUnmodified(attributes()));
+      Assertions.assertTrue(entry.isSame(file, attributes()));
+      FileManifest.Entry touched = entry.touch(attributes());
+      Assertions.assertTrue(touched.isUnmodified(attributes()));
+      Assertions.assertEquals(entry.getHash(), touched.getHash());
+    }
+
+    /**
+     * Tests that a file changed to something else of the same size, or of a
+     * different size, is not the same.
+     *
+     * @throws IOException if an IO error occurs
+     */
+    @Test
+    public void testChanged() throws IOException {
+      FileManifest.Entry entry = FileManifest.Entry.of(file, attributes(), 1);
+      Files.writeString(file, "abd", StandardCharsets.UTF_8);
+      Assertions.assertFalse(entry.isSame(file, attributes()));
+      Files.writeString(file, "abcd", StandardCharsets.UTF_8);
+      Assertions.assertFalse(entry.isSame(file, attributes()));
+    }
+  }
+}
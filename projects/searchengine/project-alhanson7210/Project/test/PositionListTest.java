@@ -0,0 +1,292 @@
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@link PositionList} class.
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class PositionListTest {
+
+  /** Placeholder for the list being tested. */
+  private PositionList list;
+
+  /**
+   * Creates an empty list before each test.
+   */
+  @BeforeEach
+  public void createEmpty() {
+    list = new PositionList();
+  }
+
+  /**
+   * Tests of a list filled with plain int positions.
+   */
+  @Nested
+  public class PlainTests {
+
+    /**
+     * Tests that an empty list has no positions.
+     */
+    @Test
+    public void testEmpty() {
+      Assertions.assertEquals(0, list.size());
+      Assertions.assertFalse(list.containsPosition(1));
+      Assertions.assertArrayEquals(new int[0], list.toIntArray());
+      Assertions.assertThrows(NoSuchElementException.class, () -> list.first());
+      Assertions.assertThrows(NoSuchElementException.class, () -> list.last());
+    }
+
+    /**
+     * Tests that positions appended in order are kept in order.
+     */
+    @Test
+    public void testAppend() {
+      for (int position = 1; position <= 100; position += 3) {
+        Assertions.assertTrue(list.add(position));
+      }
+      Assertions.assertEquals(34, list.size());
+      Assertions.assertEquals(1, list.first());
+      Assertions.assertEquals(100, list.last());
+      Assertions.assertEquals(4, list.getPosition(1));
+      Assertions.assertTrue(list.containsPosition(97));
+      Assertions.assertFalse(list.containsPosition(98));
+    }
+
+    /**
+     * Tests that the list grows past its starting capacity.
+     */
+    @Test
+    public void testGrow() {
+      PositionList small = new PositionList(1);
+      for (int position = 1; position <= 1000; position++) {
+        small.add(position);
+      }
+      Assertions.assertEquals(1000, small.size());
+      Assertions.assertEquals(1000, small.last());
+      Assertions.assertEquals(500, small.getPosition(499));
+    }
+
+    /**
+     * Tests that duplicate positions are not added.
+     */
+    @Test
+    public void testDuplicates() {
+      list.add(5);
+      list.add(9);
+      Assertions.assertFalse(list.add(9));
+      Assertions.assertFalse(list.add(5));
+      Assertions.assertArrayEquals(new int[] { 5, 9 }, list.toIntArray());
+    }
+
+    /**
+     * Tests that positions added out of order are inserted where they belong.
+     */
+    @Test
+    public void testOutOfOrder() {
+      list.add(10);
+      list.add(30);
+      Assertions.assertTrue(list.add(20));
+      Assertions.assertTrue(list.add(1));
+      Assertions.assertArrayEquals(new int[] { 1, 10, 20, 30 }, list.toIntArray());
+      Assertions.assertEquals(1, list.first());
+      Assertions.assertEquals(30, list.last());
+    }
+
+    /**
+     * Tests that another list is added in order, whether it comes after this
+     * one or overlaps it.
+     */
+    @Test
+    public void testAddAll() {
+      PositionList after = new PositionList();
+      after.add(7);
+      after.add(8);
+      list.add(1);
+      list.add(6);
+      Assertions.assertTrue(list.addAll(after));
+      Assertions.assertArrayEquals(new int[] { 1, 6, 7, 8 }, list.toIntArray());
+
+      PositionList overlap = new PositionList();
+      overlap.add(2);
+      overlap.add(8);
+      Assertions.assertTrue(list.addAll(overlap));
+      Assertions.assertFalse(list.addAll(overlap));
+      Assertions.assertArrayEquals(new int[] { 1, 2, 6, 7, 8 }, list.toIntArray());
+    }
+
+    /**
+     * Tests that the list still works as a collection of boxed positions.
+     */
+    @Test
+    public void testBoxed() {
+      Assertions.assertTrue(list.addAll(List.of(3, 1, 2)));
+      Assertions.assertTrue(list.contains(2));
+      Assertions.assertFalse(list.contains("2"));
+      Assertions.assertIterableEquals(List.of(1, 2, 3), list);
+      Assertions.assertThrows(NullPointerException.class, () -> list.add((Integer) null));
+    }
+
+    /**
+     * Tests that looking up a position outside of the list fails.
+     */
+    @Test
+    public void testOutOfBounds() {
+      list.add(1);
+      Assertions.assertThrows(IndexOutOfBoundsException.class, () -> list.getPosition(1));
+      Assertions.assertThrows(IndexOutOfBoundsException.class, () -> list.getPosition(-1));
+    }
+
+    /**
+     * Tests that a copy does not change with the original.
+     */
+    @Test
+    public void testCopy() {
+      list.add(1);
+      list.add(2);
+      PositionList copy = new PositionList(list);
+      list.add(3);
+      Assertions.assertArrayEquals(new int[] { 1, 2 }, copy.toIntArray());
+      Assertions.assertTrue(copy.add(4));
+      Assertions.assertArrayEquals(new int[] { 1, 2, 3 }, list.toIntArray());
+    }
+  }
+
+  /**
+   * Tests of a list compressed with the gap encoding.
+   */
+  @Nested
+  public class CompressedTests {
+
+    /** Positions whose gaps need one to five encoded bytes. */
+    private final int[] positions = { 1, 127, 128, 255, 16383, 16384, 2097152, 268435456, Integer.MAX_VALUE };
+
+    /**
+     * Fills the list with the positions and compresses it before each test.
+     */
+    @BeforeEach
+    public void createCompressed() {
+      for (int position : positions) {
+        list.add(position);
+      }
+      list.compress();
+    }
+
+    /**
+     * Tests that compressing keeps every position.
+     */
+    @Test
+    public void testRoundTrip() {
+      Assertions.assertTrue(list.isCompressed());
+      Assertions.assertEquals(positions.length, list.size());
+      Assertions.assertArrayEquals(positions, list.toIntArray());
+      Assertions.assertEquals(1, list.first());
+      Assertions.assertEquals(Integer.MAX_VALUE, list.last());
+      Assertions.assertEquals(16384, list.getPosition(5));
+    }
+
+    /**
+     * Tests that every way of reading the positions decodes the same values.
+     */
+    @Test
+    public void testDecode() {
+      int[] seen = new int[positions.length];
+      int[] next = { 0 };
+      list.forEachPosition(position -> seen[next[0]++] = position);
+      Assertions.assertArrayEquals(positions, seen);
+      for (int position : positions) {
+        Assertions.assertTrue(list.containsPosition(position));
+        Assertions.assertTrue(list.contains(position));
+      }
+      for (int missing : new int[] { 0, 2, 126, 129, 16382, 16385, Integer.MAX_VALUE - 1 }) {
+        Assertions.assertFalse(list.containsPosition(missing), String.valueOf(missing));
+      }
+    }
+
+    /**
+     * Tests that a long compressed list is copied in its encoding and looked up
+     * by index.
+     */
+    @Test
+    public void testCopy() {
+      PositionList dense = new PositionList();
+      for (int position = 1; position <= 1000; position++) {
+        dense.add(position);
+      }
+      dense.compress();
+      PositionList copy = new PositionList(dense);
+      Assertions.assertTrue(copy.isCompressed());
+      Assertions.assertEquals(1000, copy.size());
+      Assertions.assertEquals(1000, copy.last());
+      Assertions.assertEquals(500, copy.getPosition(499));
+    }
+
+    /**
+     * Tests that positions appended after compressing stay compressed.
+     */
+    @Test
+    public void testAppend() {
+      list.compress();
+      Assertions.assertFalse(list.add(Integer.MAX_VALUE));
+      Assertions.assertTrue(list.isCompressed());
+
+      PositionList appended = new PositionList();
+      appended.add(3);
+      appended.compress();
+      Assertions.assertTrue(appended.add(300));
+      Assertions.assertTrue(appended.add(301));
+      Assertions.assertTrue(appended.isCompressed());
+      Assertions.assertArrayEquals(new int[] { 3, 300, 301 }, appended.toIntArray());
+    }
+
+    /**
+     * Tests that adding a position out of order switches back to a plain array
+     * and keeps the positions sorted.
+     */
+    @Test
+    public void testInflate() {
+      Assertions.assertFalse(list.add(16383));
+      Assertions.assertTrue(list.add(200));
+      Assertions.assertFalse(list.isCompressed());
+      Assertions.assertEquals(positions.length + 1, list.size());
+      Assertions.assertArrayEquals(new int[] { 1, 127, 128, 200, 255, 16383, 16384, 2097152, 268435456, Integer.MAX_VALUE }, list.toIntArray());
+
+      list.compress();
+      Assertions.assertTrue(list.isCompressed());
+      Assertions.assertEquals(200, list.getPosition(3));
+    }
+
+    /**
+     * Tests that a compressed list can be added to another list.
+     */
+    @Test
+    public void testAddAll() {
+      PositionList other = new PositionList();
+      other.add(2);
+      Assertions.assertTrue(other.addAll(list));
+      Assertions.assertEquals(positions.length + 1, other.size());
+      Assertions.assertEquals(2, other.getPosition(1));
+      Assertions.assertEquals(Integer.MAX_VALUE, other.last());
+    }
+
+    /**
+     * Tests that an empty list can be compressed and then appended to.
+     */
+    @Test
+    public void testEmpty() {
+      PositionList empty = new PositionList();
+      empty.compress();
+      Assertions.assertTrue(empty.isCompressed());
+      Assertions.assertEquals(0, empty.size());
+      Assertions.assertArrayEquals(new int[0], empty.toIntArray());
+      Assertions.assertTrue(empty.add(42));
+      Assertions.assertArrayEquals(new int[] { 42 }, empty.toIntArray());
+    }
+  }
+}
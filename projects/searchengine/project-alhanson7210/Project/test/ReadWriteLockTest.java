@@ -0,0 +1,289 @@
+import java.time.Duration;
+import java.util.ConcurrentModificationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the reentrant reads, fairness, timed locking and statistics of the
+ * {@link ReadWriteLock} class. Threads that have to block are checked with
+ * timed attempts instead of sleeps, so a broken lock fails a test instead of
+ * hanging it.
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class ReadWriteLockTest {
+
+  /** How long a timed attempt that is expected to fail waits, in milliseconds. */
+  public static final long ATTEMPT = 100;
+
+  /** Timeout for every test. */
+  public static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+  /**
+   * Starts a thread that waits for the write lock, then waits until the lock
+   * counts it as a waiting writer.
+   *
+   * @param lock the lock to write to
+   * @param release set to let the writer unlock once it gets the lock
+   * @return the writer thread
+   * @throws InterruptedException if interrupted
+   */
+  private static Thread startWaitingWriter(ReadWriteLock lock, AtomicBoolean release) throws InterruptedException {
+    Thread writer = new Thread(() -> {
+      lock.writeLock().lock();
+      try {
+        while (!release.get()) {
+          Thread.onSpinWait();
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+    });
+    writer.start();
+    while (lock.waitingWriters() == 0) {
+      Thread.sleep(1);
+    }
+    return writer;
+  }
+
+  /**
+   * Tries to take the read lock from another thread.
+   *
+   * @param lock the lock to read from
+   * @return {@code true} if the other thread got the read lock
+   * @throws InterruptedException if interrupted
+   */
+  private static boolean tryReadFromOtherThread(ReadWriteLock lock) throws InterruptedException {
+    AtomicBoolean acquired = new AtomicBoolean(false);
+    Thread reader = new Thread(() -> {
+      try {
+        if (lock.readLock().tryLock(ATTEMPT, TimeUnit.MILLISECONDS)) {
+          acquired.set(true);
+          lock.readLock().unlock();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    reader.start();
+    reader.join();
+    return acquired.get();
+  }
+
+  /**
+   * Tests of reentrant reads.
+   */
+  @Nested
+  public class ReentrantTests {
+
+    /**
+     * Tests that a reader can take the read lock again and has to release it
+     * as many times.
+     */
+    @Test
+    public void testReadTwice() {
+      Assertions.assertTimeoutPreemptively(TIMEOUT, () -> {
+        ReadWriteLock lock = new ReadWriteLock();
+        lock.readLock().lock();
+        lock.readLock().lock();
+        Assertions.assertEquals(2, lock.readers());
+        lock.readLock().unlock();
+        Assertions.assertEquals(1, lock.readers());
+        lock.readLock().unlock();
+        Assertions.assertEquals(0, lock.readers());
+        Assertions.assertThrows(ConcurrentModificationException.class, () -> lock.readLock().unlock());
+      });
+    }
+
+    /**
+     * Tests that a reader of a fair lock can take the read lock again while a
+     * writer is waiting, which would otherwise deadlock.
+     */
+    @Test
+    public void testReadAgainWithWaitingWriter() {
+      Assertions.assertTimeoutPreemptively(TIMEOUT, () -> {
+        ReadWriteLock lock = new ReadWriteLock(true);
+        AtomicBoolean release = new AtomicBoolean(true);
+        lock.readLock().lock();
+        Thread writer = startWaitingWriter(lock, release);
+        Assertions.assertTrue(lock.readLock().tryLock(ATTEMPT, TimeUnit.MILLISECONDS));
+        Assertions.assertEquals(0, lock.writers());
+        lock.readLock().unlock();
+        lock.readLock().unlock();
+        writer.join();
+        Assertions.assertEquals(1, lock.writeStatistics().getAcquisitions());
+      });
+    }
+
+    /**
+     * Tests that the writer can also take the read lock.
+     */
+    @Test
+    public void testWriterReads() {
+      Assertions.assertTimeoutPreemptively(TIMEOUT, () -> {
+        ReadWriteLock lock = new ReadWriteLock(true);
+        lock.writeLock().lock();
+        Assertions.assertTrue(lock.readLock().tryLock(ATTEMPT, TimeUnit.MILLISECONDS));
+        Assertions.assertFalse(tryReadFromOtherThread(lock));
+        lock.readLock().unlock();
+        lock.writeLock().unlock();
+        Assertions.assertTrue(tryReadFromOtherThread(lock));
+      });
+    }
+  }
+
+  /**
+   * Tests of fair and unfair locks.
+   */
+  @Nested
+  public class FairnessTests {
+
+    /**
+     * Tests that a new reader of a fair lock waits behind a waiting writer.
+     */
+    @Test
+    public void testFairReaderWaits() {
+      Assertions.assertTimeoutPreemptively(TIMEOUT, () -> {
+        ReadWriteLock lock = new ReadWriteLock(true);
+        Assertions.assertTrue(lock.isFair());
+        AtomicBoolean release = new AtomicBoolean(false);
+        lock.readLock().lock();
+        Thread writer = startWaitingWriter(lock, release);
+        Assertions.assertFalse(tryReadFromOtherThread(lock));
+        lock.readLock().unlock();
+        //the writer gets in before any new reader
+        while (lock.writers() == 0) {
+          Thread.sleep(1);
+        }
+        Assertions.assertFalse(tryReadFromOtherThread(lock));
+        release.set(true);
+        writer.join();
+        Assertions.assertTrue(tryReadFromOtherThread(lock));
+        Assertions.assertEquals(2, lock.readStatistics().getTimeouts());
+      });
+    }
+
+    /**
+     * Tests that a new reader of an unfair lock goes ahead of a waiting writer.
+     */
+    @Test
+    public void testUnfairReaderBarges() {
+      Assertions.assertTimeoutPreemptively(TIMEOUT, () -> {
+        ReadWriteLock lock = new ReadWriteLock();
+        Assertions.assertFalse(lock.isFair());
+        AtomicBoolean release = new AtomicBoolean(true);
+        lock.readLock().lock();
+        Thread writer = startWaitingWriter(lock, release);
+        Assertions.assertTrue(tryReadFromOtherThread(lock));
+        lock.readLock().unlock();
+        writer.join();
+      });
+    }
+
+    /**
+     * Tests that readers held back by a writer that gave up get in.
+     */
+    @Test
+    public void testWriterGivesUp() {
+      Assertions.assertTimeoutPreemptively(TIMEOUT, () -> {
+        ReadWriteLock lock = new ReadWriteLock(true);
+        lock.readLock().lock();
+        AtomicBoolean gaveUp = new AtomicBoolean(false);
+        Thread writer = new Thread(() -> {
+          try {
+            gaveUp.set(!lock.writeLock().tryLock(ATTEMPT, TimeUnit.MILLISECONDS));
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+        writer.start();
+        writer.join();
+        Assertions.assertTrue(gaveUp.get());
+        Assertions.assertEquals(0, lock.waitingWriters());
+        Assertions.assertTrue(tryReadFromOtherThread(lock));
+        lock.readLock().unlock();
+        Assertions.assertEquals(1, lock.writeStatistics().getTimeouts());
+      });
+    }
+  }
+
+  /**
+   * Tests of the write lock, optimistic reads and statistics.
+   */
+  @Nested
+  public class WriteTests {
+
+    /**
+     * Tests that only the writer can release the write lock.
+     */
+    @Test
+    public void testWrongThreadUnlocks() {
+      Assertions.assertTimeoutPreemptively(TIMEOUT, () -> {
+        ReadWriteLock lock = new ReadWriteLock();
+        Assertions.assertThrows(ConcurrentModificationException.class, () -> lock.writeLock().unlock());
+        lock.writeLock().lock();
+        AtomicBoolean thrown = new AtomicBoolean(false);
+        Thread other = new Thread(() -> {
+          try {
+            lock.writeLock().unlock();
+          } catch (ConcurrentModificationException e) {
+            thrown.set(true);
+          }
+        });
+        other.start();
+        other.join();
+        Assertions.assertTrue(thrown.get());
+        Assertions.assertEquals(1, lock.writers());
+        lock.writeLock().unlock();
+      });
+    }
+
+    /**
+     * Tests that an optimistic read is only valid if no writer came in.
+     */
+    @Test
+    public void testOptimisticRead() {
+      ReadWriteLock lock = new ReadWriteLock();
+      long stamp = lock.tryOptimisticRead();
+      Assertions.assertNotEquals(ReadWriteLock.NO_STAMP, stamp);
+      Assertions.assertTrue(lock.validate(stamp));
+      lock.writeLock().lock();
+      Assertions.assertEquals(ReadWriteLock.NO_STAMP, lock.tryOptimisticRead());
+      Assertions.assertFalse(lock.validate(ReadWriteLock.NO_STAMP));
+      lock.writeLock().unlock();
+      Assertions.assertFalse(lock.validate(stamp));
+      Assertions.assertEquals(42, lock.optimisticRead(() -> 42));
+    }
+
+    /**
+     * Tests that acquisitions are counted for each mode.
+     */
+    @Test
+    public void testStatistics() {
+      ReadWriteLock lock = new ReadWriteLock();
+      for (int i = 0; i < 3; i++) {
+        lock.readLock().lock();
+        lock.readLock().unlock();
+      }
+      lock.writeLock().lock();
+      lock.writeLock().unlock();
+
+      LockStatistics read = lock.readStatistics();
+      LockStatistics write = lock.writeStatistics();
+      Assertions.assertEquals("read", read.getMode());
+      Assertions.assertEquals("write", write.getMode());
+      Assertions.assertEquals(3, read.getAcquisitions());
+      Assertions.assertEquals(1, write.getAcquisitions());
+      Assertions.assertEquals(0, read.getTimeouts());
+
+      LockStatistics both = read.plus(new ReadWriteLock().readStatistics()).plus(read);
+      Assertions.assertEquals(6, both.getAcquisitions());
+      Assertions.assertEquals(read.getLongestHold(TimeUnit.NANOSECONDS), both.getLongestHold(TimeUnit.NANOSECONDS));
+    }
+  }
+}
@@ -0,0 +1,188 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@link ShardedWordIndex} class.
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class ShardedWordIndexTest {
+
+  /** Number of distinct stems in every document, spread over every shard. */
+  private static final int STEMS = 64;
+
+  /**
+   * Creates a single document index with every stem once and one stem unique
+   * to the document.
+   *
+   * @param location the location of the document
+   * @return the document index
+   */
+  private static WordIndex createDocument(String location) {
+    WordIndex document = new WordIndex();
+    int position = 1;
+    for (int stem = 0; stem < STEMS - 1; stem++) {
+      document.add("stem" + stem, location, position++);
+    }
+    document.add("only" + location, location, position);
+    document.addFileCount(location, position);
+    return document;
+  }
+
+  /**
+   * Formats search results so they can be compared.
+   *
+   * @param results the search results
+   * @return the location, count and score of every result
+   */
+  private static List<String> format(List<ComparableSearchResult> results) {
+    List<String> formatted = new ArrayList<>();
+    for (ComparableSearchResult result : results) {
+      formatted.add(result.getWhere() + " " + result.getCount() + " " + result.getScore());
+    }
+    return formatted;
+  }
+
+  /**
+   * Tests of a sharded index used by a single thread.
+   */
+  @Nested
+  public class SingleThreadTests {
+
+    /**
+     * Tests that the number of shards is rounded up to a power of two.
+     */
+    @Test
+    public void testShards() {
+      Assertions.assertEquals(1, new ShardedWordIndex(0).numShards());
+      Assertions.assertEquals(1, new ShardedWordIndex(1).numShards());
+      Assertions.assertEquals(8, new ShardedWordIndex(5).numShards());
+      Assertions.assertEquals(16, new ShardedWordIndex(16).numShards());
+      Assertions.assertEquals(ShardedWordIndex.DEFAULT_SHARDS, new ShardedWordIndex().numShards());
+    }
+
+    /**
+     * Tests that a sharded index finds the same results as a plain one.
+     */
+    @Test
+    public void testSameResults() {
+      WordIndex plain = new WordIndex();
+      ShardedWordIndex sharded = new ShardedWordIndex(4);
+      for (int i = 0; i < 20; i++) {
+        plain.merge(createDocument("doc" + i));
+        sharded.merge(createDocument("doc" + i));
+        //every other document is missing a stem so the scores differ
+        if (i % 2 == 0) {
+          plain.add("even", "doc" + i, STEMS + 1);
+          sharded.add("even", "doc" + i, STEMS + 1);
+        }
+      }
+      Assertions.assertIterableEquals(plain.getElements(), sharded.getElements());
+      Assertions.assertEquals(plain.numDocuments(), sharded.numDocuments());
+      for (List<String> query : List.of(List.of("stem1"), List.of("even", "only"), List.of("onlydoc3", "stem2"), List.of("missing"))) {
+        Assertions.assertEquals(format(plain.exactSearch(query)), format(sharded.exactSearch(query)), query.toString());
+        Assertions.assertEquals(format(plain.partialSearch(query)), format(sharded.partialSearch(query)), query.toString());
+      }
+    }
+
+    /**
+     * Tests that a position added on its own can be found right away.
+     */
+    @Test
+    public void testAdd() {
+      ShardedWordIndex sharded = new ShardedWordIndex(4);
+      Assertions.assertTrue(sharded.add("hello", "first", 1));
+      Assertions.assertEquals(1, sharded.exactSearch(List.of("hello")).size());
+      Assertions.assertTrue(sharded.add("hello", "second", 1));
+      Assertions.assertEquals(2, sharded.exactSearch(List.of("hello")).size());
+    }
+
+    /**
+     * Tests that removed documents are no longer found.
+     */
+    @Test
+    public void testRemove() {
+      ShardedWordIndex sharded = new ShardedWordIndex(4);
+      sharded.merge(createDocument("kept"));
+      sharded.merge(createDocument("removed"));
+      Assertions.assertTrue(sharded.remove("removed"));
+      List<ComparableSearchResult> results = sharded.partialSearch(List.of("stem", "only"));
+      Assertions.assertEquals(1, results.size());
+      Assertions.assertEquals("kept", results.get(0).getWhere());
+    }
+  }
+
+  /**
+   * Tests of searches running while documents are merged.
+   */
+  @Nested
+  public class WatermarkTests {
+
+    /**
+     * Tests that searches never see part of a document. Each document has a
+     * stem in every shard, so a search that saw only some of its shards would
+     * count fewer than all of them.
+     */
+    @Test
+    public void testNoPartialDocuments() {
+      Assertions.assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+        ShardedWordIndex sharded = new ShardedWordIndex(16);
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicInteger partial = new AtomicInteger(0);
+        AtomicInteger searches = new AtomicInteger(0);
+
+        List<Thread> searchers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+          Thread searcher = new Thread(() -> {
+            while (!done.get()) {
+              for (ComparableSearchResult result : sharded.partialSearch(List.of("stem", "only"))) {
+                if (result.getCount() != STEMS) {
+                  partial.incrementAndGet();
+                }
+              }
+              for (ComparableSearchResult result : sharded.snapshot().partialSearch(List.of("stem", "only"))) {
+                if (result.getCount() != STEMS) {
+                  partial.incrementAndGet();
+                }
+              }
+              searches.incrementAndGet();
+            }
+          });
+          searchers.add(searcher);
+          searcher.start();
+        }
+
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+          int writer = i;
+          Thread thread = new Thread(() -> {
+            for (int document = 0; document < 100; document++) {
+              sharded.merge(createDocument("doc" + writer + "-" + document));
+            }
+          });
+          writers.add(thread);
+          thread.start();
+        }
+        for (Thread writer : writers) {
+          writer.join();
+        }
+        done.set(true);
+        for (Thread searcher : searchers) {
+          searcher.join();
+        }
+
+        Assertions.assertEquals(0, partial.get(), "documents seen in part");
+        Assertions.assertTrue(searches.get() > 0);
+        Assertions.assertEquals(400, sharded.partialSearch(List.of("only")).size());
+      });
+    }
+  }
+}
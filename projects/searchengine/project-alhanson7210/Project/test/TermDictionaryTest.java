@@ -0,0 +1,231 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@link TermDictionary} class against a sorted list of the same
+ * stems.
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class TermDictionaryTest {
+
+  /**
+   * Tests of dictionaries that are empty or built from bad input.
+   */
+  @Nested
+  public class EdgeTests {
+
+    /**
+     * Tests that an empty dictionary finds nothing.
+     */
+    @Test
+    public void testEmpty() {
+      TermDictionary empty = new TermDictionary(List.of());
+      Assertions.assertEquals(0, empty.size());
+      Assertions.assertEquals(-1, empty.indexOf("apple"));
+      Assertions.assertEquals(0, empty.lowerBound("apple"));
+      Assertions.assertFalse(empty.iterator().hasNext());
+      Assertions.assertThrows(NoSuchElementException.class, () -> empty.iterator().next());
+      Assertions.assertThrows(IndexOutOfBoundsException.class, () -> empty.get(0));
+    }
+
+    /**
+     * Tests that stems out of order or repeated are rejected.
+     */
+    @Test
+    public void testUnsorted() {
+      Assertions.assertThrows(IllegalArgumentException.class, () -> new TermDictionary(List.of("b", "a")));
+      Assertions.assertThrows(IllegalArgumentException.class, () -> new TermDictionary(List.of("a", "a")));
+    }
+
+    /**
+     * Tests a dictionary with a single stem.
+     */
+    @Test
+    public void testSingle() {
+      TermDictionary single = new TermDictionary(List.of("single"));
+      Assertions.assertEquals(0, single.indexOf("single"));
+      Assertions.assertEquals(-1, single.indexOf("a"));
+      Assertions.assertEquals(-2, single.indexOf("z"));
+      Assertions.assertEquals(0, single.lowerBound("sin"));
+      Assertions.assertEquals(1, single.lowerBound("singles"));
+      Assertions.assertFalse(single.contains(null));
+      Assertions.assertFalse(single.contains(1));
+    }
+  }
+
+  /**
+   * Tests of a dictionary spanning many blocks.
+   */
+  @Nested
+  public class LookupTests {
+
+    /** The stems in sorted order. */
+    private List<String> expected;
+
+    /** The dictionary being tested. */
+    private TermDictionary dictionary;
+
+    /**
+     * Builds a dictionary of random stems sharing prefixes, with a few stems that
+     * are prefixes of others and a few that are not ASCII.
+     */
+    @BeforeEach
+    public void createDictionary() {
+      Random random = new Random(212);
+      TreeSet<String> stems = new TreeSet<>();
+      String letters = "abcde\u00e9";
+      while (stems.size() < 1000) {
+        int length = 1 + random.nextInt(8);
+        StringBuilder stem = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+          stem.append(letters.charAt(random.nextInt(letters.length())));
+        }
+        stems.add(stem.toString());
+      }
+      stems.add("\u00fcber");
+      stems.add("\u65e5\u672c");
+      expected = new ArrayList<>(stems);
+      dictionary = new TermDictionary(stems);
+    }
+
+    /**
+     * Tests that every stem is decoded by ordinal and by iterating.
+     */
+    @Test
+    public void testDecode() {
+      Assertions.assertEquals(expected.size(), dictionary.size());
+      for (int ordinal = 0; ordinal < expected.size(); ordinal++) {
+        Assertions.assertEquals(expected.get(ordinal), dictionary.get(ordinal));
+      }
+      Assertions.assertIterableEquals(expected, dictionary);
+      Assertions.assertThrows(IndexOutOfBoundsException.class, () -> dictionary.get(expected.size()));
+      Assertions.assertThrows(IndexOutOfBoundsException.class, () -> dictionary.get(-1));
+    }
+
+    /**
+     * Tests that every stem is found at its ordinal, including the heads of the
+     * blocks.
+     */
+    @Test
+    public void testIndexOf() {
+      for (int ordinal = 0; ordinal < expected.size(); ordinal++) {
+        Assertions.assertEquals(ordinal, dictionary.indexOf(expected.get(ordinal)), expected.get(ordinal));
+        Assertions.assertTrue(dictionary.contains(expected.get(ordinal)));
+      }
+    }
+
+    /**
+     * Tests that a missing stem gives the same insertion point as a binary search.
+     */
+    @Test
+    public void testMissing() {
+      for (String missing : List.of("", "0", "aaaaaaaaa", "abz", "e", "ee", "\u00e9z", "zzz", "\u00fc", "\u65e5", "\u65e5\u672c\u8a9e")) {
+        Assertions.assertEquals(Collections.binarySearch(expected, missing), dictionary.indexOf(missing), missing);
+      }
+      for (String stem : expected) {
+        String missing = stem + "z";
+        Assertions.assertEquals(Collections.binarySearch(expected, missing), dictionary.indexOf(missing), missing);
+      }
+      Assertions.assertEquals(-1, dictionary.indexOf(null));
+    }
+
+    /**
+     * Tests that the stems starting with a prefix follow its lower bound.
+     */
+    @Test
+    public void testPrefixes() {
+      for (String prefix : List.of("", "a", "ab", "d\u00e9", "\u00e9e", "\u00e9", "z", "\u00fc")) {
+        List<String> matches = new ArrayList<>();
+        Iterator<String> iterator = dictionary.iterator(dictionary.lowerBound(prefix));
+        while (iterator.hasNext()) {
+          String stem = iterator.next();
+          if (!stem.startsWith(prefix)) {
+            break;
+          }
+          matches.add(stem);
+        }
+        List<String> starting = new ArrayList<>();
+        for (String stem : expected) {
+          if (stem.startsWith(prefix)) {
+            starting.add(stem);
+          }
+        }
+        Assertions.assertEquals(starting, matches, prefix);
+      }
+      Assertions.assertEquals(expected.size(), dictionary.lowerBound("\u65e5\u672c\u8a9e"));
+      Assertions.assertFalse(dictionary.iterator(expected.size()).hasNext());
+    }
+
+    /**
+     * Tests that front coding stores less than the stems themselves.
+     */
+    @Test
+    public void testEncodedSize() {
+      int bytes = 0;
+      for (String stem : expected) {
+        bytes += stem.getBytes(StandardCharsets.UTF_8).length;
+      }
+      Assertions.assertTrue(dictionary.encodedSize() < bytes, dictionary.encodedSize() + " >= " + bytes);
+    }
+
+    /**
+     * Tests that a frozen index looks its stems up in the dictionary the same
+     * way the index it was frozen from does.
+     */
+    @Test
+    public void testFrozenIndex() {
+      WordIndex live = createIndex();
+      FrozenWordIndex frozen = createIndex().freeze();
+
+      Assertions.assertIterableEquals(live.getElements(), frozen.getElements());
+      for (String query : List.of("a", "ab", "\u00e9", "\u00fc", "zzz")) {
+        Assertions.assertEquals(toString(live.partialSearch(List.of(query))), toString(frozen.partialSearch(List.of(query))), query);
+      }
+      List<String> exact = List.of(expected.get(0), expected.get(500), "zzz");
+      Assertions.assertEquals(toString(live.exactSearch(exact)), toString(frozen.exactSearch(exact)));
+    }
+
+    /**
+     * Creates an index with every stem, each in one of two documents.
+     *
+     * @return the index
+     */
+    private WordIndex createIndex() {
+      WordIndex index = new WordIndex();
+      int position = 1;
+      for (String stem : expected) {
+        index.add(stem, stem.length() % 2 == 0 ? "even" : "odd", position++);
+      }
+      index.addFileCount("even", position);
+      index.addFileCount("odd", position);
+      return index;
+    }
+
+    /**
+     * Formats search results so they can be compared.
+     *
+     * @param results the search results
+     * @return the location, count and score of every result
+     */
+    private List<String> toString(List<ComparableSearchResult> results) {
+      List<String> formatted = new ArrayList<>();
+      for (ComparableSearchResult result : results) {
+        formatted.add(result.getWhere() + " " + result.getCount() + " " + result.getScore());
+      }
+      return formatted;
+    }
+  }
+}
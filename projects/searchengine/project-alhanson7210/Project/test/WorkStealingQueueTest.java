@@ -0,0 +1,183 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@link WorkStealingQueue} class.
+ *
+ * @author Alex L Hanson
+ * @version Spring 2020
+ */
+public class WorkStealingQueueTest {
+
+  /** Number of workers in the queue being tested. */
+  public static final int THREADS = 4;
+
+  /** Timeout for every test. */
+  public static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+  /** The queue being tested. */
+  private WorkStealingQueue queue;
+
+  /**
+   * Starts a queue before each test.
+   */
+  @BeforeEach
+  public void createQueue() {
+    queue = new WorkStealingQueue(THREADS);
+  }
+
+  /**
+   * Shuts the queue down after each test.
+   */
+  @AfterEach
+  public void shutdownQueue() {
+    queue.shutdown();
+  }
+
+  /**
+   * Adds work that counts how many times each task ran, and spawns two more
+   * tasks from inside the worker until the depth runs out.
+   *
+   * @param runs how many times each task ran
+   * @param task the number of this task, the root is 1
+   * @param depth how many more levels of tasks to spawn
+   */
+  private void spawn(AtomicIntegerArray runs, int task, int depth) {
+    queue.execute(() -> {
+      runs.incrementAndGet(task);
+      if (depth > 0) {
+        spawn(runs, 2 * task, depth - 1);
+        spawn(runs, 2 * task + 1, depth - 1);
+      }
+    });
+  }
+
+  /**
+   * Tests that the queue has the number of workers asked for, and at least one.
+   */
+  @Test
+  public void testSize() {
+    Assertions.assertEquals(THREADS, queue.size());
+    WorkStealingQueue single = new WorkStealingQueue(0);
+    Assertions.assertEquals(1, single.size());
+    single.shutdown();
+  }
+
+  /**
+   * Tests that every task added from outside the workers runs exactly once
+   * before finish returns.
+   */
+  @Test
+  public void testExecute() {
+    Assertions.assertTimeoutPreemptively(TIMEOUT, () -> {
+      AtomicIntegerArray runs = new AtomicIntegerArray(10000);
+      for (int i = 0; i < runs.length(); i++) {
+        int task = i;
+        queue.execute(() -> runs.incrementAndGet(task));
+      }
+      queue.finish();
+      for (int i = 0; i < runs.length(); i++) {
+        Assertions.assertEquals(1, runs.get(i), "task " + i);
+      }
+      WorkQueueStatistics statistics = queue.statistics();
+      Assertions.assertEquals(0, statistics.getPending());
+      Assertions.assertEquals(0, statistics.getQueued());
+      Assertions.assertEquals(runs.length(), statistics.getCompleted());
+    });
+  }
+
+  /**
+   * Tests that every task added at once runs exactly once.
+   */
+  @Test
+  public void testExecuteAll() {
+    Assertions.assertTimeoutPreemptively(TIMEOUT, () -> {
+      AtomicIntegerArray runs = new AtomicIntegerArray(1000);
+      List<Runnable> tasks = new ArrayList<>();
+      for (int i = 0; i < runs.length(); i++) {
+        int task = i;
+        tasks.add(() -> runs.incrementAndGet(task));
+      }
+      queue.executeAll(tasks);
+      queue.finish();
+      for (int i = 0; i < runs.length(); i++) {
+        Assertions.assertEquals(1, runs.get(i), "task " + i);
+      }
+    });
+  }
+
+  /**
+   * Tests that work added by running tasks runs exactly once, and that finish
+   * waits for it too.
+   */
+  @Test
+  public void testNestedWork() {
+    Assertions.assertTimeoutPreemptively(TIMEOUT, () -> {
+      int depth = 12;
+      AtomicIntegerArray runs = new AtomicIntegerArray(1 << (depth + 1));
+      spawn(runs, 1, depth);
+      queue.finish();
+      Assertions.assertEquals(0, runs.get(0));
+      for (int i = 1; i < runs.length(); i++) {
+        Assertions.assertEquals(1, runs.get(i), "task " + i);
+      }
+    });
+  }
+
+  /**
+   * Tests that work added by a single task, which all lands on the deque of
+   * the worker running it, is stolen by the other workers.
+   */
+  @Test
+  public void testStealing() {
+    Assertions.assertTimeoutPreemptively(TIMEOUT, () -> {
+      Set<Thread> workers = ConcurrentHashMap.newKeySet();
+      queue.execute(() -> {
+        for (int i = 0; i < 64; i++) {
+          queue.execute(() -> {
+            workers.add(Thread.currentThread());
+            long end = System.nanoTime() + 2000000;
+            while (System.nanoTime() < end) {
+              Thread.onSpinWait();
+            }
+          });
+        }
+      });
+      queue.finish();
+      Assertions.assertTrue(workers.size() > 1, "only " + workers.size() + " worker ran the work");
+    });
+  }
+
+  /**
+   * Tests that a task that throws does not stop the worker or keep finish
+   * waiting.
+   */
+  @Test
+  public void testFailures() {
+    Assertions.assertTimeoutPreemptively(TIMEOUT, () -> {
+      AtomicInteger runs = new AtomicInteger(0);
+      for (int i = 0; i < 100; i++) {
+        int task = i;
+        queue.execute(() -> {
+          runs.incrementAndGet();
+          if (task % 2 == 0) {
+            throw new IllegalStateException("task " + task);
+          }
+        });
+      }
+      queue.finish();
+      Assertions.assertEquals(100, runs.get());
+      Assertions.assertEquals(50, queue.statistics().getFailures());
+    });
+  }
+}